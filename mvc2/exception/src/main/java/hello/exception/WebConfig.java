@@ -1,41 +1,135 @@
 package hello.exception;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hello.exception.exhandler.ErrorResultHttpMessageConverter;
 import hello.exception.filter.LogFilter;
 import hello.exception.interceptor.LogInterceptor;
+import hello.exception.interceptor.MetricsInterceptor;
+import hello.exception.interceptor.ResilienceInterceptor;
+import hello.exception.log.AsyncRequestLogger;
+import hello.exception.log.RequestLogPolicy;
+import hello.exception.metrics.HandlerMetricsRegistry;
+import hello.exception.resilience.AdaptiveConcurrencyLimit;
+import hello.exception.resilience.CircuitBreaker;
+import hello.exception.resilience.HandlerGuard;
+import hello.exception.resilience.HandlerGuardRegistry;
+import hello.exception.resolver.ErrorRenderingResolver;
+import hello.exception.resolver.ErrorResponseWriter;
 import hello.exception.resolver.MyHandlerExceptionResolver;
+import hello.exception.resolver.ServiceUnavailableResolver;
 import hello.exception.resolver.UserHandlerExceptionResolver;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.event.Level;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.servlet.error.ErrorAttributes;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.HandlerExceptionResolver;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.annotation.ResponseStatusExceptionResolver;
+import org.springframework.web.servlet.mvc.support.DefaultHandlerExceptionResolver;
 
 import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 @Configuration
+@RequiredArgsConstructor
 public class WebConfig implements WebMvcConfigurer {
 
+    private final ObjectMapper objectMapper; //스프링 부트가 등록한 ObjectMapper
+    private final ErrorAttributes errorAttributes; //BasicErrorController 가 쓰는 것과 같은 빈
+    private final ServerProperties serverProperties;
+
+    //false 면 예전처럼 리졸버가 sendError 하고 톰캣이 /error 로 다시 디스패치한다. (ErrorRenderingBenchmark 비교용)
+    @Value("${error.single-pass:true}")
+    private boolean singlePassError;
+
+    @Bean(destroyMethod = "close")
+    public AsyncRequestLogger requestLogger() {
+        //경로별 요청 로그 레벨, 샘플링 (RequestLogPolicy 참고)
+        RequestLogPolicy policy = new RequestLogPolicy(Level.INFO, 1)
+                .off("/css/**")
+                .off("*.ico");
+        return new AsyncRequestLogger(policy, 8192);
+    }
+
+    @Bean
+    public HandlerMetricsRegistry handlerMetricsRegistry() {
+        return new HandlerMetricsRegistry();
+    }
+
+    @Bean
+    public HandlerGuardRegistry handlerGuardRegistry() {
+        //10초 동안 20건 이상 중 절반 넘게 실패하면 5초 동안 막는다.
+        //동시 처리 한도는 100에서 시작해서, 최근 응답 시간 평균이 30초 평균의 2배를 넘는지 보고 10~500 사이에서 조절한다.
+        return new HandlerGuardRegistry(name -> new HandlerGuard(name,
+                new CircuitBreaker(Duration.ofSeconds(10), 10, 20, 0.5, Duration.ofSeconds(5)),
+                new AdaptiveConcurrencyLimit(100, 10, 500, 2.0, Duration.ofSeconds(30))));
+    }
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
-        registry.addInterceptor(new LogInterceptor())
+        registry.addInterceptor(new MetricsInterceptor(handlerMetricsRegistry()))
+                .order(0)
+                .addPathPatterns("/**")
+                .excludePathPatterns("/css/**", "*.ico", "/error", "/error-page/**");
+
+        registry.addInterceptor(new LogInterceptor(requestLogger()))
                 .order(1)
                 .addPathPatterns("/**")
                 .excludePathPatterns("/css/**", "*.ico", "/error", "/error-page/**");//오류 페이지 경로
+
+        //거절한 요청도 메트릭, 로그에 남도록 그 뒤에 둔다.
+        registry.addInterceptor(new ResilienceInterceptor(handlerGuardRegistry()))
+                .order(2)
+                .addPathPatterns("/api/members/*", "/api2/members/*", "/api3/members/*");
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        //ErrorResult 는 Jackson 보다 먼저 미리 인코딩한 바이트로 쓴다.
+        converters.add(0, new ErrorResultHttpMessageConverter());
     }
 
     @Override
     public void extendHandlerExceptionResolvers(List<HandlerExceptionResolver> resolvers) {
-        resolvers.add(new MyHandlerExceptionResolver());
-        resolvers.add(new UserHandlerExceptionResolver());
+        resolvers.add(0, new ServiceUnavailableResolver());
+
+        ErrorResponseWriter errorResponseWriter = new ErrorResponseWriter(objectMapper);
+        if (!singlePassError) {
+            resolvers.add(new MyHandlerExceptionResolver());
+            resolvers.add(new UserHandlerExceptionResolver(errorResponseWriter));
+            return;
+        }
+
+        //sendError 로 끝나는 리졸버들은 ErrorRenderingResolver 안에서 부르고, 응답은 ErrorRenderingResolver 가 바로 만든다.
+        List<HandlerExceptionResolver> sendErrorResolvers = new ArrayList<>();
+        for (Iterator<HandlerExceptionResolver> it = resolvers.iterator(); it.hasNext(); ) {
+            HandlerExceptionResolver resolver = it.next();
+            if (resolver instanceof ResponseStatusExceptionResolver || resolver instanceof DefaultHandlerExceptionResolver) {
+                sendErrorResolvers.add(resolver);
+                it.remove();
+            }
+        }
+        sendErrorResolvers.add(new MyHandlerExceptionResolver());
+
+        resolvers.add(new UserHandlerExceptionResolver(errorResponseWriter)); //직접 응답한다.
+        resolvers.add(new ErrorRenderingResolver(sendErrorResolvers, errorAttributes, serverProperties.getError(),
+                errorResponseWriter));
     }
 
     //    @Bean
     public FilterRegistrationBean logFilter() {
         FilterRegistrationBean<Filter> filterRegistrationBean = new FilterRegistrationBean<>();
-        filterRegistrationBean.setFilter(new LogFilter());
+        filterRegistrationBean.setFilter(new LogFilter(requestLogger()));
         filterRegistrationBean.setOrder(1);
         filterRegistrationBean.addUrlPatterns("/*");
         filterRegistrationBean.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ERROR);
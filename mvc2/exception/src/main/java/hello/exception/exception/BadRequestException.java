@@ -4,5 +4,5 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(code = HttpStatus.BAD_REQUEST, reason = "error.bad")
-public class BadRequestException extends RuntimeException {
+public class BadRequestException extends BusinessException {
 }
@@ -0,0 +1,28 @@
+package hello.exception.exception;
+
+/**
+ * 잘못된 입력처럼 예상한 오류
+ *
+ * 어디서 던졌는지 이미 알고 있으므로 스택 트레이스를 만들지 않는다. 예외를 만드는 비용은 대부분 fillInStackTrace()다.
+ * 디버깅할 때는 -Dbusiness-exception.stack-trace=true 로 켤 수 있다.
+ */
+public abstract class BusinessException extends RuntimeException {
+
+    private static final boolean STACK_TRACE = Boolean.getBoolean("business-exception.stack-trace");
+
+    protected BusinessException() {
+        this(null, null);
+    }
+
+    protected BusinessException(String message) {
+        this(message, null);
+    }
+
+    protected BusinessException(String message, Throwable cause) {
+        super(message, cause, true, STACK_TRACE);
+    }
+
+    protected BusinessException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
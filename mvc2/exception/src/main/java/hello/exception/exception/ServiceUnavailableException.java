@@ -0,0 +1,28 @@
+package hello.exception.exception;
+
+/**
+ * 서킷이 열렸거나 동시 처리 한도를 넘어서 요청을 처리하지 않고 거절했다. (ResilienceInterceptor)
+ */
+public class ServiceUnavailableException extends BusinessException {
+
+    public enum Reason {
+        CIRCUIT_OPEN, OVERLOADED
+    }
+
+    private final Reason reason;
+    private final long retryAfterSeconds;
+
+    public ServiceUnavailableException(Reason reason, long retryAfterSeconds) {
+        super(reason.name());
+        this.reason = reason;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
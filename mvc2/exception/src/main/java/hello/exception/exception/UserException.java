@@ -1,6 +1,6 @@
 package hello.exception.exception;
 
-public class UserException extends RuntimeException {
+public class UserException extends BusinessException {
 
     public UserException() {
         super();
@@ -15,7 +15,7 @@ public class UserException extends RuntimeException {
     }
 
     public UserException(Throwable cause) {
-        super(cause);
+        super(cause == null ? null : cause.toString(), cause);
     }
 
     protected UserException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
@@ -0,0 +1,148 @@
+package hello.exception.exhandler;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ErrorResult 를 JSON으로 쓴다. Jackson(MappingJackson2HttpMessageConverter)보다 앞에 둔다.
+ *
+ * 오류 코드는 몇 가지뿐이므로 코드마다 {"code":"...","message":" 까지를 바이트로 만들어 두고,
+ * 응답할 때는 메시지만 이스케이프해서 붙인다. 메시지도 같으면 본문 전체를 재사용한다.
+ * 결과는 Jackson 으로 쓴 것과 같다.
+ */
+public class ErrorResultHttpMessageConverter extends AbstractHttpMessageConverter<ErrorResult> {
+
+    private static final int MAX_CACHED_BODIES = 256;
+    private static final byte[] NULL_CODE_PREFIX = "{\"code\":null,\"message\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NULL_MESSAGE_SUFFIX = "null}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = "\"}".getBytes(StandardCharsets.UTF_8);
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    //code -> {"code":"code","message":  (code 가 null 이면 NULL_CODE_PREFIX)
+    private final ConcurrentHashMap<String, byte[]> prefixes = new ConcurrentHashMap<>();
+    //[code, message] -> 본문 전체. 예외 메시지가 고정된 문구일 때 대부분 여기서 끝난다.
+    //null 과 문자열 "null" 이 같은 키가 되지 않도록 문자열을 이어 붙이지 않고 목록을 키로 쓴다.
+    private final ConcurrentHashMap<List<String>, byte[]> bodies = new ConcurrentHashMap<>();
+
+    public ErrorResultHttpMessageConverter() {
+        super(StandardCharsets.UTF_8, MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ErrorResult.class == clazz;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected ErrorResult readInternal(Class<? extends ErrorResult> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("ErrorResult 는 응답에만 씁니다.", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(ErrorResult errorResult, MediaType contentType) {
+        return (long) encode(errorResult).length;
+    }
+
+    @Override
+    protected void writeInternal(ErrorResult errorResult, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream body = outputMessage.getBody();
+        body.write(encode(errorResult));
+    }
+
+    /**
+     * 컨버터를 거치지 않고 응답을 직접 쓰는 곳(HandlerExceptionResolver)에서도 쓴다.
+     */
+    public byte[] encode(ErrorResult errorResult) {
+        String code = errorResult.getCode();
+        String message = errorResult.getMessage();
+        List<String> key = Arrays.asList(code, message);
+        byte[] cached = bodies.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        byte[] prefix = code == null ? NULL_CODE_PREFIX : prefixes.computeIfAbsent(code, c ->
+                ("{\"code\":\"" + escape(c) + "\",\"message\":").getBytes(StandardCharsets.UTF_8));
+        byte[] encoded;
+        if (message == null) {
+            encoded = concat(prefix, NULL_MESSAGE_SUFFIX);
+        } else {
+            encoded = concat(prefix, ("\"" + escape(message)).getBytes(StandardCharsets.UTF_8), SUFFIX);
+        }
+        if (bodies.size() < MAX_CACHED_BODIES) {
+            bodies.putIfAbsent(key, encoded);
+        }
+        return encoded;
+    }
+
+    //JSON 문자열 안에 들어갈 값. 제어 문자, 따옴표, 역슬래시만 이스케이프한다.
+    //Jackson 기본 설정과 같게 \b \t \n \f \r 은 짧게, 나머지 제어 문자는 \\u00XX(대문자 16진수)로 쓴다.
+    static String escape(String value) {
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                if (sb != null) {
+                    sb.append(c);
+                }
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(value.length() + 16).append(value, 0, i);
+            }
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else {
+                switch (c) {
+                    case '\b':
+                        sb.append("\\b");
+                        break;
+                    case '\f':
+                        sb.append("\\f");
+                        break;
+                    case '\n':
+                        sb.append("\\n");
+                        break;
+                    case '\r':
+                        sb.append("\\r");
+                        break;
+                    case '\t':
+                        sb.append("\\t");
+                        break;
+                    default:
+                        sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+                }
+            }
+        }
+        return sb == null ? value : sb.toString(); //대부분 이스케이프할 문자가 없어서 그대로 쓴다.
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] result = new byte[length];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+}
@@ -2,6 +2,7 @@ package hello.exception.exhandler.advice;
 
 import hello.exception.exception.UserException;
 import hello.exception.exhandler.ErrorResult;
+import hello.exception.log.ErrorLogThrottle;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -9,20 +10,25 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.time.Duration;
+
 @Slf4j
 @RestControllerAdvice(basePackages = "hello.exception.api")
 public class ExControllerAdvice {
 
+    //같은 타입의 예외는 10초에 한 번만 스택 트레이스를 남긴다.
+    private final ErrorLogThrottle errorLog = new ErrorLogThrottle(1, Duration.ofSeconds(10));
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(IllegalArgumentException.class)
     public ErrorResult illegalExHandler(IllegalArgumentException e) {
-        log.error("[exceptionHandler] ex", e);
+        errorLog.error(log, "[exceptionHandler] ex", e);
         return new ErrorResult("BAD", e.getMessage());
     }
 
     @ExceptionHandler
     public ResponseEntity<ErrorResult> userExHandler(UserException e) {
-        log.error("[exceptionHandler] ex", e);
+        errorLog.error(log, "[exceptionHandler] ex", e);
         ErrorResult errorResult = new ErrorResult("USER-EX", e.getMessage());
         return new ResponseEntity(errorResult, HttpStatus.BAD_REQUEST);
     }
@@ -30,7 +36,7 @@ public class ExControllerAdvice {
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     @ExceptionHandler
     public ErrorResult exHandler(Exception e) {
-        log.error("[exceptionHandler] ex", e);
+        errorLog.error(log, "[exceptionHandler] ex", e);
         return new ErrorResult("EX", "내부 오류");
     }
 
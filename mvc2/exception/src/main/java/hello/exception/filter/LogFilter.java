@@ -1,15 +1,22 @@
 package hello.exception.filter;
 
+import hello.exception.interceptor.LogInterceptor;
+import hello.exception.log.AsyncRequestLogger;
+import hello.exception.log.RequestIds;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.UUID;
 
 @Slf4j
+@RequiredArgsConstructor
 public class LogFilter implements Filter {
 
+    private final AsyncRequestLogger requestLogger;
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
         log.info("log filter init");
@@ -18,18 +25,23 @@ public class LogFilter implements Filter {
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
         HttpServletRequest httpRequest = (HttpServletRequest) request;
-        String requestURI = httpRequest.getRequestURI();
 
-        String uuid = UUID.randomUUID().toString();
+        //오류 페이지 요청(ERROR)은 원래 요청의 속성을 그대로 보므로 같은 ID로 이어진다.
+        String logId = (String) request.getAttribute(LogInterceptor.LOG_ID);
+        if (logId == null) {
+            logId = RequestIds.next();
+            request.setAttribute(LogInterceptor.LOG_ID, logId);
+        }
 
+        AsyncRequestLogger.Context context = requestLogger.begin(log, logId, httpRequest, null);
+        Exception failure = null;
         try {
-            log.info("REQUEST  [{}][{}][{}]", uuid, request.getDispatcherType(), requestURI);
             chain.doFilter(request, response);
         } catch (Exception e) {
-            log.info("EXCEPTION {}", e.getMessage());
+            failure = e;
             throw e;
         } finally {
-            log.info("RESPONSE [{}][{}][{}]", uuid, request.getDispatcherType(), requestURI);
+            requestLogger.end(context, httpRequest, (HttpServletResponse) response, null, failure);
         }
 
     }
@@ -38,4 +50,4 @@ public class LogFilter implements Filter {
     public void destroy() {
         log.info("log filter destroy");
     }
-}
\ No newline at end of file
+}
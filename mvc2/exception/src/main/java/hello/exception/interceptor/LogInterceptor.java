@@ -1,42 +1,45 @@
 package hello.exception.interceptor;
 
+import hello.exception.log.AsyncRequestLogger;
+import hello.exception.log.RequestIds;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.servlet.HandlerInterceptor;
-import org.springframework.web.servlet.ModelAndView;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.UUID;
 
+/**
+ * 요청 로그. 로그는 AsyncRequestLogger 가 별도 스레드에서 남긴다.
+ */
 @Slf4j
+@RequiredArgsConstructor
 public class LogInterceptor implements HandlerInterceptor {
 
     public static final String LOG_ID = "logId";
+    private static final String LOG_CONTEXT = LogInterceptor.class.getName() + ".context";
+
+    private final AsyncRequestLogger requestLogger;
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
 
-        String requestURI = request.getRequestURI();
-
-        String uuid = UUID.randomUUID().toString();
-        request.setAttribute(LOG_ID, uuid);
+        //LogFilter 가 먼저 만들었으면 같은 ID를 쓴다.
+        String logId = (String) request.getAttribute(LOG_ID);
+        if (logId == null) {
+            logId = RequestIds.next();
+            request.setAttribute(LOG_ID, logId);
+        }
 
-        log.info("REQUEST  [{}][{}][{}][{}]", uuid, request.getDispatcherType(), requestURI, handler);
+        request.setAttribute(LOG_CONTEXT, requestLogger.begin(log, logId, request, handler));
         return true;
     }
 
-    @Override
-    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) throws Exception {
-        log.info("postHandle [{}]", modelAndView);
-    }
-
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
-        String requestURI = request.getRequestURI();
-        String logId = (String)request.getAttribute(LOG_ID);
-        log.info("RESPONSE [{}][{}][{}]", logId, request.getDispatcherType(), requestURI);
-        if (ex != null) {
-            log.error("afterCompletion error!!", ex);
+        AsyncRequestLogger.Context context = (AsyncRequestLogger.Context) request.getAttribute(LOG_CONTEXT);
+        if (context != null) {
+            requestLogger.end(context, request, response, handler, ex);
         }
     }
 }
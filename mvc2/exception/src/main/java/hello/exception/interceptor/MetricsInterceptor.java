@@ -0,0 +1,42 @@
+package hello.exception.interceptor;
+
+import hello.exception.metrics.HandlerMetrics;
+import hello.exception.metrics.HandlerMetricsRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 핸들러별 응답 시간과 상태 코드를 HandlerMetricsRegistry 에 기록한다.
+ */
+@RequiredArgsConstructor
+public class MetricsInterceptor implements HandlerInterceptor {
+
+    private static final String METRICS = MetricsInterceptor.class.getName() + ".metrics";
+    private static final String START = MetricsInterceptor.class.getName() + ".start";
+
+    private final HandlerMetricsRegistry registry;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        HandlerMetrics metrics = registry.get(handler);
+        metrics.start();
+        request.setAttribute(METRICS, metrics);
+        request.setAttribute(START, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
+        HandlerMetrics metrics = (HandlerMetrics) request.getAttribute(METRICS);
+        if (metrics == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - (Long) request.getAttribute(START);
+        //처리되지 않은 예외는 이후에 500으로 응답한다.
+        int status = ex != null && response.getStatus() < 400 ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+        metrics.end(status, elapsed);
+    }
+}
@@ -0,0 +1,62 @@
+package hello.exception.interceptor;
+
+import hello.exception.exception.ServiceUnavailableException;
+import hello.exception.resilience.CircuitBreaker;
+import hello.exception.resilience.HandlerGuard;
+import hello.exception.resilience.HandlerGuardRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 서킷이 열렸거나 동시 처리 한도를 넘으면 핸들러를 부르지 않고 ServiceUnavailableException 을 던진다.
+ * 응답은 ServiceUnavailableResolver 가 만든다.
+ *
+ * 끝난 요청은 5xx 나 처리되지 않은 예외를 실패로 서킷 브레이커에 기록하고, 응답 시간을 동시 처리 한도에 알린다.
+ */
+@RequiredArgsConstructor
+public class ResilienceInterceptor implements HandlerInterceptor {
+
+    private static final String GUARD = ResilienceInterceptor.class.getName() + ".guard";
+    private static final String PERMIT = ResilienceInterceptor.class.getName() + ".permit";
+    private static final String START = ResilienceInterceptor.class.getName() + ".start";
+
+    private final HandlerGuardRegistry registry;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        HandlerGuard guard = registry.get(handler);
+        CircuitBreaker circuitBreaker = guard.getCircuitBreaker();
+
+        CircuitBreaker.Permit permit = circuitBreaker.allowRequest();
+        if (permit == CircuitBreaker.Permit.REJECTED) {
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(circuitBreaker.remainingOpenNanos() + 999_999_999));
+            throw new ServiceUnavailableException(ServiceUnavailableException.Reason.CIRCUIT_OPEN, retryAfter);
+        }
+        if (!guard.getConcurrencyLimit().tryAcquire()) {
+            circuitBreaker.cancel(permit);
+            throw new ServiceUnavailableException(ServiceUnavailableException.Reason.OVERLOADED, 1);
+        }
+
+        request.setAttribute(GUARD, guard);
+        request.setAttribute(PERMIT, permit);
+        request.setAttribute(START, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
+        HandlerGuard guard = (HandlerGuard) request.getAttribute(GUARD);
+        if (guard == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - (Long) request.getAttribute(START);
+        guard.getConcurrencyLimit().release(elapsed);
+
+        boolean failure = ex != null || response.getStatus() >= 500;
+        guard.getCircuitBreaker().record((CircuitBreaker.Permit) request.getAttribute(PERMIT), failure);
+    }
+}
@@ -0,0 +1,257 @@
+package hello.exception.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 요청 로그를 모아서 전용 스레드 하나가 쓴다.
+ *
+ * 요청 스레드는 미리 만들어 둔 링 버퍼 칸에 값만 채우고 바로 돌아간다. 문자열 만들기(handler.toString() 포함)와
+ * 실제 로그 출력은 모두 request-log-writer 스레드에서 한다. 버퍼가 가득 차면 기다리지 않고 버리고 수만 센다.
+ *
+ * 여러 요청 스레드가 CAS로 칸 번호를 받고(claimed), 칸을 채운 뒤 published 에 그 번호를 쓴다.
+ * writer 는 번호 순서대로 published 가 자기 번호가 된 칸만 읽는다.
+ * 읽을 칸이 없으면 잠깐 돌다가 park 하고, publish 가 writer 가 잠든 것을 보면 깨운다.
+ */
+public class AsyncRequestLogger implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncRequestLogger.class);
+    private static final int IDLE_SPINS = 100; //park 하기 전에 돌아 보는 횟수
+
+    private final RequestLogPolicy policy;
+    private final Slot[] ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(); //다음에 줄 칸 번호
+    private volatile long consumed; //writer 가 다 쓴 칸 수
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean parked; //writer 가 잠들었으면 true
+
+    /**
+     * @param capacity 링 버퍼 칸 수. 2의 거듭제곱
+     */
+    public AsyncRequestLogger(RequestLogPolicy policy, int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity 는 2의 거듭제곱이어야 합니다. capacity=" + capacity);
+        }
+        this.policy = policy;
+        this.ring = new Slot[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Slot(i - capacity);
+        }
+        this.writer = new Thread(this::drain, "request-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 요청을 시작할 때 부른다. 요청 로그를 남길지는 여기서 한 번 정한다.
+     * @param logger 로그를 남길 로거. 보통 부르는 쪽 클래스의 로거
+     */
+    public Context begin(Logger logger, String requestId, HttpServletRequest request, Object handler) {
+        String requestURI = request.getRequestURI();
+        Level level = enabled(logger, policy.match(requestURI).sample());
+        Context context = new Context(logger, requestId, requestURI, level);
+        if (level == Level.DEBUG) {
+            publish(logger, Level.DEBUG, Phase.REQUEST, requestId, request.getDispatcherType(), requestURI, handler, 0, 0, null);
+        }
+        return context;
+    }
+
+    /**
+     * 요청이 끝났을 때 부른다. 예외로 끝났거나 5xx 면 샘플링과 상관없이 남긴다.
+     */
+    public void end(Context context, HttpServletRequest request, HttpServletResponse response, Object handler, Throwable ex) {
+        int status = response.getStatus();
+        Level level = ex != null ? Level.ERROR : status >= 500 ? Level.WARN : context.level;
+        if (level == null) {
+            return;
+        }
+        publish(context.logger, level, Phase.RESPONSE, context.requestId, request.getDispatcherType(), context.requestURI,
+                handler, status, System.nanoTime() - context.startNanos, ex);
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    //로거 설정에서 꺼진 레벨이면 버퍼에 넣지도 않는다.
+    private static Level enabled(Logger logger, Level level) {
+        if (level == Level.DEBUG && !logger.isDebugEnabled()) {
+            return null;
+        }
+        if (level == Level.INFO && !logger.isInfoEnabled()) {
+            return null;
+        }
+        return level;
+    }
+
+    private void publish(Logger logger, Level level, Phase phase, String requestId, DispatcherType dispatcherType,
+                         String requestURI, Object handler, int status, long elapsedNanos, Throwable ex) {
+        if (!running) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= ring.length) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = ring[(int) sequence & mask];
+        slot.logger = logger;
+        slot.level = level;
+        slot.phase = phase;
+        slot.requestId = requestId;
+        slot.dispatcherType = dispatcherType;
+        slot.requestURI = requestURI;
+        slot.handler = handler;
+        slot.status = status;
+        slot.elapsedNanos = elapsedNanos;
+        slot.ex = ex;
+        slot.published = sequence; //volatile 쓰기. 위의 값들이 writer 에 보인다.
+        if (parked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void drain() {
+        long next = 0;
+        long reportedDropped = 0;
+        int idleSpins = 0;
+        while (true) {
+            Slot slot = ring[(int) next & mask];
+            if (slot.published != next) {
+                if (!running && next == claimed.get()) {
+                    break;
+                }
+                long droppedNow = dropped.get();
+                if (droppedNow != reportedDropped) {
+                    log.warn("request log buffer full, dropped={}", droppedNow - reportedDropped);
+                    reportedDropped = droppedNow;
+                }
+                if (idleSpins < IDLE_SPINS) {
+                    idleSpins++;
+                    Thread.onSpinWait();
+                    continue;
+                }
+                //parked 를 먼저 쓰고 칸을 다시 본다. publish 는 published 를 쓰고 parked 를 읽으므로 둘 중 하나는 상대를 본다.
+                parked = true;
+                if (slot.published != next && running) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+                continue;
+            }
+            idleSpins = 0;
+            try {
+                write(slot);
+            } catch (RuntimeException e) {
+                log.warn("request log write failed", e);
+            }
+            slot.clear();
+            consumed = next + 1;
+            next++;
+        }
+    }
+
+    private static void write(Slot slot) {
+        Logger logger = slot.logger;
+        if (slot.phase == Phase.REQUEST) {
+            logger.debug("REQUEST  [{}][{}][{}][{}]", slot.requestId, slot.dispatcherType, slot.requestURI, slot.handler);
+            return;
+        }
+        long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(slot.elapsedNanos);
+        switch (slot.level) {
+            case ERROR:
+                logger.error("RESPONSE [{}][{}][{}][{}] status={} {}us", slot.requestId, slot.dispatcherType,
+                        slot.requestURI, slot.handler, slot.status, elapsedMicros, slot.ex);
+                break;
+            case WARN:
+                logger.warn("RESPONSE [{}][{}][{}][{}] status={} {}us", slot.requestId, slot.dispatcherType,
+                        slot.requestURI, slot.handler, slot.status, elapsedMicros);
+                break;
+            case DEBUG:
+                logger.debug("RESPONSE [{}][{}][{}][{}] status={} {}us", slot.requestId, slot.dispatcherType,
+                        slot.requestURI, slot.handler, slot.status, elapsedMicros);
+                break;
+            default:
+                logger.info("RESPONSE [{}][{}][{}][{}] status={} {}us", slot.requestId, slot.dispatcherType,
+                        slot.requestURI, slot.handler, slot.status, elapsedMicros);
+        }
+    }
+
+    private enum Phase {
+        REQUEST, RESPONSE
+    }
+
+    /**
+     * begin() 에서 end() 까지 들고 다니는 요청 정보
+     */
+    public static final class Context {
+
+        private final Logger logger;
+        private final String requestId;
+        private final String requestURI;
+        private final Level level; //샘플링에서 빠졌으면 null
+        private final long startNanos = System.nanoTime();
+
+        private Context(Logger logger, String requestId, String requestURI, Level level) {
+            this.logger = logger;
+            this.requestId = requestId;
+            this.requestURI = requestURI;
+            this.level = level;
+        }
+
+        public String getRequestId() {
+            return requestId;
+        }
+    }
+
+    private static final class Slot {
+
+        private volatile long published;
+        private Logger logger;
+        private Level level;
+        private Phase phase;
+        private String requestId;
+        private DispatcherType dispatcherType;
+        private String requestURI;
+        private Object handler;
+        private int status;
+        private long elapsedNanos;
+        private Throwable ex;
+
+        Slot(long published) {
+            this.published = published;
+        }
+
+        //요청 객체, 예외를 붙잡아 두지 않는다.
+        void clear() {
+            logger = null;
+            requestId = null;
+            requestURI = null;
+            handler = null;
+            ex = null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package hello.exception.log;
+
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 오류 로그를 예외 타입별로 window 동안 limit 번까지만 남긴다.
+ *
+ * 같은 잘못된 요청이 계속 들어오면 같은 스택 트레이스가 수없이 찍히고 그 비용이 요청 처리보다 커진다.
+ * 넘친 로그는 세어 두었다가 다음에 남기는 로그에 생략한 건수를 붙인다.
+ */
+public class ErrorLogThrottle {
+
+    private final int limit;
+    private final long windowNanos;
+    private final ConcurrentHashMap<Class<?>, Window> windows = new ConcurrentHashMap<>();
+
+    public ErrorLogThrottle(int limit, Duration window) {
+        this.limit = limit;
+        this.windowNanos = window.toNanos();
+    }
+
+    public void error(Logger log, String message, Throwable e) {
+        Window window = windows.get(e.getClass());
+        if (window == null) {
+            window = windows.computeIfAbsent(e.getClass(), type -> new Window());
+        }
+        if (!window.tryAcquire(System.nanoTime())) {
+            window.suppressed.increment();
+            return;
+        }
+        long suppressed = window.suppressed.sumThenReset();
+        if (suppressed > 0) {
+            log.error(message + " (같은 예외 {}건 생략)", suppressed, e);
+        } else {
+            log.error(message, e);
+        }
+    }
+
+    private class Window {
+
+        private final AtomicLong start = new AtomicLong(System.nanoTime());
+        private final AtomicInteger count = new AtomicInteger();
+        private final LongAdder suppressed = new LongAdder();
+
+        boolean tryAcquire(long now) {
+            long current = start.get();
+            if (now - current >= windowNanos && start.compareAndSet(current, now)) {
+                count.set(0);
+            }
+            return count.get() < limit && count.incrementAndGet() <= limit;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package hello.exception.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 요청 ID
+ *
+ * UUID.randomUUID()는 SecureRandom을 쓰기 때문에 느리고, 여러 스레드가 동시에 부르면 서로 기다린다.
+ * 여기서는 서버가 뜬 시각 뒤에 1씩 늘어나는 번호를 붙인다. 서버 안에서도, 재시작한 뒤에도 겹치지 않는다.
+ * 스레드마다 번호를 BLOCK 개씩 미리 받아 두므로 공유 카운터는 BLOCK 번에 한 번만 건드린다.
+ */
+public final class RequestIds {
+
+    private static final int BLOCK = 1024;
+    private static final String PREFIX = Long.toString(System.currentTimeMillis(), 36) + "-";
+    private static final AtomicLong nextBlock = new AtomicLong();
+    //{다음 번호, 이 블록의 끝}
+    private static final ThreadLocal<long[]> range = ThreadLocal.withInitial(() -> new long[2]);
+
+    private RequestIds() {
+    }
+
+    public static String next() {
+        long[] current = range.get();
+        if (current[0] == current[1]) {
+            current[0] = nextBlock.getAndAdd(BLOCK);
+            current[1] = current[0] + BLOCK;
+        }
+        return PREFIX + Long.toString(current[0]++, 36);
+    }
+}
@@ -0,0 +1,92 @@
+package hello.exception.log;
+
+import org.slf4j.event.Level;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 경로별 요청 로그 레벨과 샘플링
+ *
+ * <pre>
+ * new RequestLogPolicy(Level.INFO, 1)
+ *         .off("/css/**")
+ *         .rule("/api/**", Level.INFO, 10)     //10개 중 1개만 남긴다.
+ *         .rule("/error-page/**", Level.DEBUG, 1) //요청 시작 로그도 남긴다.
+ * </pre>
+ * 패턴은 "/경로/**"(앞부분), "*.확장자"(끝부분), 그 외는 정확히 같은 경로다. 여러 패턴이 맞으면 긴 패턴을 쓴다.
+ * INFO는 응답 로그 한 줄, DEBUG는 요청 로그까지 남긴다. 예외로 끝난 요청과 5xx 응답은 레벨, 샘플링과 상관없이 남긴다.
+ */
+public class RequestLogPolicy {
+
+    private final Rule defaultRule;
+    private final List<Rule> rules = new ArrayList<>();
+
+    public RequestLogPolicy(Level level, int sampleEvery) {
+        this.defaultRule = new Rule("/**", level, sampleEvery);
+    }
+
+    public RequestLogPolicy rule(String pattern, Level level, int sampleEvery) {
+        rules.add(new Rule(pattern, level, sampleEvery));
+        rules.sort(Comparator.comparingInt((Rule rule) -> rule.pattern.length()).reversed());
+        return this;
+    }
+
+    public RequestLogPolicy off(String pattern) {
+        return rule(pattern, null, 1);
+    }
+
+    public Rule match(String uri) {
+        for (Rule rule : rules) {
+            if (rule.matches(uri)) {
+                return rule;
+            }
+        }
+        return defaultRule;
+    }
+
+    public static final class Rule {
+
+        private final String pattern;
+        private final String prefix; //"/경로/**"
+        private final String suffix; //"*.확장자"
+        private final Level level; //null 이면 남기지 않는다.
+        private final int sampleEvery;
+
+        private Rule(String pattern, Level level, int sampleEvery) {
+            if (sampleEvery < 1) {
+                throw new IllegalArgumentException("sampleEvery 는 1 이상이어야 합니다. sampleEvery=" + sampleEvery);
+            }
+            this.pattern = pattern;
+            this.prefix = pattern.endsWith("/**") ? pattern.substring(0, pattern.length() - 3) : null;
+            this.suffix = pattern.startsWith("*") ? pattern.substring(1) : null;
+            this.level = level;
+            this.sampleEvery = sampleEvery;
+        }
+
+        private boolean matches(String uri) {
+            if (prefix != null) {
+                return uri.startsWith(prefix) && (uri.length() == prefix.length() || uri.charAt(prefix.length()) == '/');
+            }
+            if (suffix != null) {
+                return uri.endsWith(suffix);
+            }
+            return uri.equals(pattern);
+        }
+
+        /**
+         * 이번 요청을 남길 레벨. 남기지 않으면 null
+         */
+        public Level sample() {
+            if (level == null) {
+                return null;
+            }
+            if (sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0) {
+                return level;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package hello.exception.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 핸들러 하나의 응답 시간, 처리 중인 요청 수, 상태 코드별 응답 수
+ */
+public class HandlerMetrics {
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder inFlight = new LongAdder();
+    private final AtomicLongArray statusCounts = new AtomicLongArray(600); //상태 코드 -> 응답 수
+
+    public HandlerMetrics(String name) {
+        this.name = name;
+    }
+
+    public void start() {
+        inFlight.increment();
+    }
+
+    public void end(int status, long elapsedNanos) {
+        inFlight.decrement();
+        latency.record(elapsedNanos / 1000);
+        if (status >= 100 && status < 600) {
+            statusCounts.incrementAndGet(status);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    public LatencyHistogram.Snapshot latency() {
+        return latency.snapshot();
+    }
+
+    public Map<Integer, Long> statusCounts() {
+        Map<Integer, Long> result = new LinkedHashMap<>();
+        for (int status = 100; status < 600; status++) {
+            long count = statusCounts.get(status);
+            if (count > 0) {
+                result.put(status, count);
+            }
+        }
+        return result;
+    }
+}
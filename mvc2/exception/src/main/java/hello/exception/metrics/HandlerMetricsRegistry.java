@@ -0,0 +1,41 @@
+package hello.exception.metrics;
+
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 핸들러별 HandlerMetrics
+ *
+ * 요청 URI 가 아니라 매핑된 핸들러 메서드로 구분한다. /api/members/1, /api/members/2 가 한 항목이 되므로
+ * 항목 수는 컨트롤러 메서드 수를 넘지 않는다.
+ */
+public class HandlerMetricsRegistry {
+
+    //HandlerMethod 는 요청마다 새로 만들어질 수 있으므로 Method 로 찾는다. 컨트롤러가 아닌 핸들러는 클래스로 찾는다.
+    private final ConcurrentHashMap<Object, HandlerMetrics> metrics = new ConcurrentHashMap<>();
+
+    public HandlerMetrics get(Object handler) {
+        Object key = handler instanceof HandlerMethod ? ((HandlerMethod) handler).getMethod() : handler.getClass();
+        HandlerMetrics found = metrics.get(key);
+        if (found != null) {
+            return found;
+        }
+        return metrics.computeIfAbsent(key, k -> new HandlerMetrics(name(handler)));
+    }
+
+    public Collection<HandlerMetrics> getAll() {
+        return new ArrayList<>(metrics.values());
+    }
+
+    private static String name(Object handler) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod handlerMethod = (HandlerMethod) handler;
+            return handlerMethod.getBeanType().getSimpleName() + "#" + handlerMethod.getMethod().getName();
+        }
+        return handler.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,118 @@
+package hello.exception.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 응답 시간 히스토그램 (HdrHistogram 과 같은 로그-선형 구간)
+ *
+ * 0 ~ 63us 는 1us 단위, 그 위는 2의 거듭제곱 구간마다 32칸으로 나눠서 상대 오차가 3%를 넘지 않는다.
+ * 기록은 칸 하나를 원자적으로 더하기만 하고 락을 잡지 않는다. 읽을 때는 칸을 복사해서 계산하므로
+ * 기록 중인 값이 일부만 보일 수 있지만 통계로 쓰기에는 충분하다.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_BITS = 6; //0~63 은 값 그대로
+    private static final int SUB_BUCKETS = 1 << (LINEAR_BITS - 1); //2의 거듭제곱 구간 하나를 나누는 칸 수
+    private static final int MAX_EXPONENT = 37; //2^38us ≈ 76시간. 넘으면 마지막 칸
+    private static final int BUCKETS = (1 << LINEAR_BITS) + (MAX_EXPONENT - LINEAR_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        counts.incrementAndGet(index(micros));
+        totalCount.increment();
+        totalMicros.add(micros);
+        long currentMax = max.get();
+        while (micros > currentMax && !max.compareAndSet(currentMax, micros)) {
+            currentMax = max.get();
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalMicros.sum(), max.get());
+    }
+
+    static int index(long value) {
+        if (value < (1 << LINEAR_BITS)) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - LINEAR_BITS + 1;
+        return (1 << LINEAR_BITS) + (exponent - LINEAR_BITS) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    //칸에 들어가는 가장 큰 값
+    static long highestValue(int index) {
+        if (index < (1 << LINEAR_BITS)) {
+            return index;
+        }
+        int offset = index - (1 << LINEAR_BITS);
+        int exponent = LINEAR_BITS + offset / SUB_BUCKETS;
+        int shift = exponent - LINEAR_BITS + 1;
+        long sub = SUB_BUCKETS + offset % SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long totalMicros;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long totalMicros, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.totalMicros = totalMicros;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) totalMicros / count;
+        }
+
+        /**
+         * @param percentile 0 ~ 100
+         * @return 이 비율의 요청이 이 값(us) 이하로 끝났다. 기록이 없으면 0
+         */
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package hello.exception.metrics;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 핸들러별 응답 시간 백분위(us), 처리 중인 요청 수, 상태 코드별 응답 수
+ */
+@RestController
+@RequiredArgsConstructor
+public class MetricsController {
+
+    private final HandlerMetricsRegistry registry;
+
+    @GetMapping("/internal/metrics")
+    public List<HandlerMetricsDto> metrics() {
+        List<HandlerMetricsDto> result = new ArrayList<>();
+        for (HandlerMetrics metrics : registry.getAll()) {
+            result.add(new HandlerMetricsDto(metrics));
+        }
+        result.sort(Comparator.comparing(HandlerMetricsDto::getHandler));
+        return result;
+    }
+
+    @Data
+    static class HandlerMetricsDto {
+        private String handler;
+        private long count;
+        private long inFlight;
+        private double meanMicros;
+        private long p50Micros;
+        private long p99Micros;
+        private long p999Micros;
+        private long maxMicros;
+        private Map<Integer, Long> statuses;
+
+        HandlerMetricsDto(HandlerMetrics metrics) {
+            LatencyHistogram.Snapshot latency = metrics.latency();
+            this.handler = metrics.getName();
+            this.count = latency.getCount();
+            this.inFlight = metrics.getInFlight();
+            this.meanMicros = latency.getMean();
+            this.p50Micros = latency.percentile(50);
+            this.p99Micros = latency.percentile(99);
+            this.p999Micros = latency.percentile(99.9);
+            this.maxMicros = latency.getMax();
+            this.statuses = metrics.statusCounts();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package hello.exception.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 핸들러 하나가 동시에 처리하는 요청 수 한도. 응답 시간을 보고 한도를 조절한다. (gradient)
+ *
+ * 최근 응답 시간의 지수 이동 평균(shortRtt, 응답 10개 정도)과 오래 본 평균(longRtt, baselineWindow)을 비교한다.
+ * shortRtt 가 longRtt 의 tolerance 배를 넘으면 줄 서 있다는 뜻이므로 그 비율(최대 절반)만큼 한도를 줄이고,
+ * 아니면 sqrt(한도) 만큼 늘린다. 새 한도는 그대로 쓰지 않고 20%만 반영한다.
+ * 응답 하나가 튀어도 평균끼리 비교하므로 한도가 크게 흔들리지 않는다.
+ * longRtt 는 느리게 따라가고, shortRtt 보다 크면(부하가 빠진 뒤) 빠르게 내려온다. 처음 응답 10개의 평균에서 시작한다.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final int SHORT_WINDOW = 10;
+    private static final double SHORT_ALPHA = 2.0 / (SHORT_WINDOW + 1);
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final long baselineWindowNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    //아래는 this 로 잠그고 바꾼다.
+    private double estimatedLimit;
+    private double shortRtt;
+    private double longRtt;
+    private long lastSample;
+    private int warmup;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, Duration baselineWindow) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.baselineWindowNanos = baselineWindow.toNanos();
+        this.estimatedLimit = initialLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * @return 한도를 넘으면 false. true 면 끝날 때 release() 를 불러야 한다.
+     */
+    public boolean tryAcquire() {
+        if (inFlight.incrementAndGet() > limit) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public void release(long rttNanos) {
+        release(rttNanos, System.nanoTime());
+    }
+
+    void release(long rttNanos, long now) {
+        int current = inFlight.getAndDecrement();
+        update(rttNanos, now, current);
+    }
+
+    private synchronized void update(long rttNanos, long now, int current) {
+        //처음 응답 10개는 평균만 잡고 한도는 그대로 둔다.
+        if (warmup < SHORT_WINDOW) {
+            warmup++;
+            shortRtt += (rttNanos - shortRtt) / warmup;
+            longRtt = shortRtt;
+            lastSample = now;
+            return;
+        }
+        shortRtt += (rttNanos - shortRtt) * SHORT_ALPHA;
+        //오래 본 평균은 시간으로 가중한다. 요청이 몰려도 baselineWindow 보다 빨리 따라가지 않는다.
+        double longAlpha = 1 - Math.exp(-(double) Math.max(0, now - lastSample) / baselineWindowNanos);
+        lastSample = now;
+        longRtt = shortRtt < longRtt ? longRtt + (shortRtt - longRtt) * SHORT_ALPHA : longRtt + (shortRtt - longRtt) * longAlpha;
+
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * longRtt / shortRtt));
+        //느려지지 않았는데 한도의 절반도 안 쓰고 있으면 늘려도 확인할 수 없으므로 그대로 둔다.
+        if (gradient == 1.0 && current * 2 < estimatedLimit) {
+            return;
+        }
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+        limit = (int) estimatedLimit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
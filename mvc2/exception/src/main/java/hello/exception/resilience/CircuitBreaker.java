@@ -0,0 +1,162 @@
+package hello.exception.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 핸들러 하나의 서킷 브레이커
+ *
+ * 최근 window 동안의 응답을 시간 칸(bucket) 링에 센다. 칸마다 [칸 번호, 전체, 실패] 세 값을 AtomicLongArray 에 두고,
+ * 시간이 지나 같은 자리에 새 칸 번호가 오면 그 자리를 0부터 다시 센다.
+ * 요청이 minimumRequests 이상이고 실패 비율이 failureRatio 이상이면 열린다(OPEN). 열린 동안은 요청을 바로 거절하고,
+ * openDuration 이 지나면 요청 하나만 흘려 보내(HALF_OPEN) 성공하면 닫고 실패하면 다시 연다.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * allowRequest() 결과. PROBE 는 반열림 상태에서 확인용으로 보낸 요청이다.
+     */
+    public enum Permit {
+        REJECTED, NORMAL, PROBE
+    }
+
+    private static final int EPOCH = 0;
+    private static final int TOTAL = 1;
+    private static final int FAILURES = 2;
+    private static final int FIELDS = 3;
+
+    private final int buckets;
+    private final long bucketNanos;
+    private final int minimumRequests;
+    private final double failureRatio;
+    private final long openNanos;
+
+    private final AtomicLongArray ring;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private volatile long openedAt;
+    private final AtomicBoolean probing = new AtomicBoolean();
+
+    /**
+     * @param window       실패 비율을 보는 기간
+     * @param buckets      window 를 나누는 칸 수. 많을수록 오래된 응답이 촘촘하게 빠진다.
+     * @param openDuration 열린 뒤 다시 확인할 때까지 기다리는 시간
+     */
+    public CircuitBreaker(Duration window, int buckets, int minimumRequests, double failureRatio, Duration openDuration) {
+        this.buckets = buckets;
+        this.bucketNanos = window.toNanos() / buckets;
+        this.minimumRequests = minimumRequests;
+        this.failureRatio = failureRatio;
+        this.openNanos = openDuration.toNanos();
+        this.ring = new AtomicLongArray(buckets * FIELDS);
+        for (int i = 0; i < buckets; i++) {
+            ring.set(i * FIELDS + EPOCH, Long.MIN_VALUE);
+        }
+    }
+
+    public Permit allowRequest() {
+        return allowRequest(System.nanoTime());
+    }
+
+    Permit allowRequest(long now) {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return Permit.NORMAL;
+        }
+        if (current == State.OPEN) {
+            if (now - openedAt < openNanos) {
+                return Permit.REJECTED;
+            }
+            state.compareAndSet(State.OPEN, State.HALF_OPEN);
+        }
+        //반열림: 확인용 요청은 한 번에 하나만
+        return probing.compareAndSet(false, true) ? Permit.PROBE : Permit.REJECTED;
+    }
+
+    public void record(Permit permit, boolean failure) {
+        record(permit, failure, System.nanoTime());
+    }
+
+    void record(Permit permit, boolean failure, long now) {
+        if (permit == Permit.PROBE) {
+            if (failure) {
+                open(now);
+            } else {
+                reset();
+                state.set(State.CLOSED);
+            }
+            probing.set(false);
+            return;
+        }
+
+        long epoch = Math.floorDiv(now, bucketNanos);
+        int base = (int) Math.floorMod(epoch, (long) buckets) * FIELDS;
+        long bucketEpoch = ring.get(base + EPOCH);
+        if (bucketEpoch < epoch && ring.compareAndSet(base + EPOCH, bucketEpoch, epoch)) {
+            //칸을 비우는 사이에 들어온 몇 건은 빠질 수 있다. 비율을 보는 데는 문제없다.
+            ring.set(base + TOTAL, 0);
+            ring.set(base + FAILURES, 0);
+        }
+        ring.incrementAndGet(base + TOTAL);
+        if (failure) {
+            ring.incrementAndGet(base + FAILURES);
+            if (state.get() == State.CLOSED && tripped(epoch)) {
+                open(now);
+            }
+        }
+    }
+
+    /**
+     * 허락받은 요청을 보내지 않았을 때. 확인용 요청이었으면 다음 요청이 다시 확인한다.
+     */
+    public void cancel(Permit permit) {
+        if (permit == Permit.PROBE) {
+            probing.set(false);
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * 열려 있으면 다시 확인할 때까지 남은 시간(나노초), 아니면 0
+     */
+    public long remainingOpenNanos() {
+        if (state.get() != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openNanos - (System.nanoTime() - openedAt));
+    }
+
+    //실패가 났을 때만 window 전체를 더해 본다.
+    private boolean tripped(long epoch) {
+        long total = 0;
+        long failures = 0;
+        for (int i = 0; i < buckets; i++) {
+            int base = i * FIELDS;
+            if (ring.get(base + EPOCH) > epoch - buckets) {
+                total += ring.get(base + TOTAL);
+                failures += ring.get(base + FAILURES);
+            }
+        }
+        return total >= minimumRequests && failures >= total * failureRatio;
+    }
+
+    private void open(long now) {
+        openedAt = now;
+        state.set(State.OPEN);
+    }
+
+    private void reset() {
+        for (int i = 0; i < buckets; i++) {
+            ring.set(i * FIELDS + TOTAL, 0);
+            ring.set(i * FIELDS + FAILURES, 0);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package hello.exception.resilience;
+
+/**
+ * 핸들러 하나의 서킷 브레이커와 동시 처리 한도
+ */
+public class HandlerGuard {
+
+    private final String name;
+    private final CircuitBreaker circuitBreaker;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+
+    public HandlerGuard(String name, CircuitBreaker circuitBreaker, AdaptiveConcurrencyLimit concurrencyLimit) {
+        this.name = name;
+        this.circuitBreaker = circuitBreaker;
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public AdaptiveConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+}
@@ -0,0 +1,45 @@
+package hello.exception.resilience;
+
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 핸들러별 HandlerGuard. HandlerMetricsRegistry 처럼 핸들러 메서드로 구분한다.
+ */
+public class HandlerGuardRegistry {
+
+    private final ConcurrentHashMap<Object, HandlerGuard> guards = new ConcurrentHashMap<>();
+    private final Function<String, HandlerGuard> factory;
+
+    /**
+     * @param factory 핸들러 이름으로 새 HandlerGuard 를 만든다.
+     */
+    public HandlerGuardRegistry(Function<String, HandlerGuard> factory) {
+        this.factory = factory;
+    }
+
+    public HandlerGuard get(Object handler) {
+        Object key = handler instanceof HandlerMethod ? ((HandlerMethod) handler).getMethod() : handler.getClass();
+        HandlerGuard found = guards.get(key);
+        if (found != null) {
+            return found;
+        }
+        return guards.computeIfAbsent(key, k -> factory.apply(name(handler)));
+    }
+
+    public Collection<HandlerGuard> getAll() {
+        return new ArrayList<>(guards.values());
+    }
+
+    private static String name(Object handler) {
+        if (handler instanceof HandlerMethod) {
+            HandlerMethod handlerMethod = (HandlerMethod) handler;
+            return handlerMethod.getBeanType().getSimpleName() + "#" + handlerMethod.getMethod().getName();
+        }
+        return handler.getClass().getSimpleName();
+    }
+}
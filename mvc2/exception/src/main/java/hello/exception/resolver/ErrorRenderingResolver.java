@@ -0,0 +1,217 @@
+package hello.exception.resolver;
+
+import hello.exception.log.ErrorLogThrottle;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.web.ErrorProperties;
+import org.springframework.boot.web.error.ErrorAttributeOptions;
+import org.springframework.boot.web.error.ErrorAttributeOptions.Include;
+import org.springframework.boot.web.servlet.error.ErrorAttributes;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 예외를 오류 화면(HTML)이나 JSON 으로 바로 응답한다.
+ *
+ * 기본 리졸버들(ResponseStatusExceptionResolver 등)은 response.sendError() 만 하고 끝나서,
+ * 톰캣이 /error 로 한 번 더 디스패치해야 응답이 만들어진다. (필터, 인터셉터, 뷰 찾기를 다시 거친다)
+ * 여기서는 그 리졸버들을 감싸서 sendError 로 정한 상태 코드와 메시지만 받아 두고, 같은 디스패치 안에서 응답을 만든다.
+ * 아무 리졸버도 처리하지 않은 예외는 500 으로 응답한다.
+ *
+ * 응답 내용은 BasicErrorController 와 같다. 톰캣이 오류 디스패치 때 넣는 요청 속성(상태 코드, 메시지, 경로)을 넣고
+ * ErrorAttributes 로 만든 값을 화면 모델과 JSON 본문에 그대로 쓴다. server.error.include-* 설정도 같은 방식으로 따른다.
+ *
+ * 화면은 스프링 부트와 같은 규칙으로 error/404 -> error/4xx 순서로 찾는다. Accept 가 text/html 을 원할 때만 화면,
+ * 아니면 JSON 이다. (BasicErrorController 와 같다)
+ */
+@Slf4j
+public class ErrorRenderingResolver implements HandlerExceptionResolver {
+
+    private static final String NO_VIEW = "";
+
+    private final List<HandlerExceptionResolver> sendErrorResolvers;
+    private final ErrorAttributes errorAttributes;
+    private final ErrorProperties errorProperties;
+    private final ErrorResponseWriter errorResponseWriter;
+    private final ErrorLogThrottle errorLog = new ErrorLogThrottle(1, Duration.ofSeconds(10));
+    //상태 코드 -> 뷰 이름. 템플릿이 없으면 NO_VIEW
+    private final Map<Integer, String> viewNames = new ConcurrentHashMap<>();
+
+    /**
+     * @param sendErrorResolvers 상태 코드를 정하는 리졸버들. 순서대로 물어본다.
+     * @param errorProperties server.error 설정 (ServerProperties.getError())
+     */
+    public ErrorRenderingResolver(List<HandlerExceptionResolver> sendErrorResolvers, ErrorAttributes errorAttributes,
+                                  ErrorProperties errorProperties, ErrorResponseWriter errorResponseWriter) {
+        this.sendErrorResolvers = sendErrorResolvers;
+        this.errorAttributes = errorAttributes;
+        this.errorProperties = errorProperties;
+        this.errorResponseWriter = errorResponseWriter;
+    }
+
+    @Override
+    public ModelAndView resolveException(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (response.isCommitted()) {
+            return null;
+        }
+
+        SendErrorCapture capture = new SendErrorCapture(response);
+        for (HandlerExceptionResolver resolver : sendErrorResolvers) {
+            ModelAndView mav = resolver.resolveException(request, capture, handler, ex);
+            if (mav != null) {
+                if (capture.status == 0) {
+                    return mav; //sendError 없이 직접 응답했다.
+                }
+                break;
+            }
+        }
+
+        int status = capture.status != 0 ? capture.status : HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        if (status >= 500) {
+            errorLog.error(log, "[errorRendering] ex", ex);
+        }
+        try {
+            return render(request, response, status, errorAttributes(request, status, capture.message));
+        } catch (IOException e) {
+            log.error("resolver ex", e);
+            return null;
+        }
+    }
+
+    private ModelAndView render(HttpServletRequest request, HttpServletResponse response,
+                                int status, Map<String, Object> model) throws IOException {
+        HttpStatus httpStatus = HttpStatus.resolve(status);
+
+        String viewName = ErrorResponseWriter.prefersJson(request.getHeader("Accept"), true) ? NO_VIEW : viewName(status);
+        if (!viewName.isEmpty()) {
+            response.setStatus(status);
+            ModelAndView mav = new ModelAndView(viewName, model);
+            if (httpStatus != null) {
+                mav.setStatus(httpStatus);
+            }
+            return mav;
+        }
+
+        errorResponseWriter.write(response, status, model);
+        return new ModelAndView();
+    }
+
+    //톰캣이 /error 로 디스패치할 때처럼 요청 속성을 넣고 ErrorAttributes 를 부른다. 예외는 DefaultErrorAttributes 가 이미 받아 두었다.
+    private Map<String, Object> errorAttributes(HttpServletRequest request, int status, String sendErrorMessage) {
+        request.setAttribute(RequestDispatcher.ERROR_STATUS_CODE, status);
+        request.setAttribute(RequestDispatcher.ERROR_REQUEST_URI, request.getRequestURI());
+        if (sendErrorMessage != null) {
+            request.setAttribute(RequestDispatcher.ERROR_MESSAGE, sendErrorMessage);
+        }
+        try {
+            return Collections.unmodifiableMap(
+                    errorAttributes.getErrorAttributes(new ServletWebRequest(request), errorAttributeOptions(request)));
+        } finally {
+            request.removeAttribute(RequestDispatcher.ERROR_STATUS_CODE);
+            request.removeAttribute(RequestDispatcher.ERROR_REQUEST_URI);
+            request.removeAttribute(RequestDispatcher.ERROR_MESSAGE);
+        }
+    }
+
+    //BasicErrorController.getErrorAttributeOptions() 와 같다.
+    private ErrorAttributeOptions errorAttributeOptions(HttpServletRequest request) {
+        ErrorAttributeOptions options = ErrorAttributeOptions.defaults();
+        if (errorProperties.isIncludeException()) {
+            options = options.including(Include.EXCEPTION);
+        }
+        if (includeStackTrace(request)) {
+            options = options.including(Include.STACK_TRACE);
+        }
+        if (include(errorProperties.getIncludeMessage(), request, "message")) {
+            options = options.including(Include.MESSAGE);
+        }
+        if (include(errorProperties.getIncludeBindingErrors(), request, "errors")) {
+            options = options.including(Include.BINDING_ERRORS);
+        }
+        return options;
+    }
+
+    private boolean includeStackTrace(HttpServletRequest request) {
+        switch (errorProperties.getIncludeStacktrace()) {
+            case ALWAYS:
+                return true;
+            case ON_PARAM:
+                return parameter(request, "trace");
+            default:
+                return false;
+        }
+    }
+
+    private static boolean include(ErrorProperties.IncludeAttribute include, HttpServletRequest request, String parameterName) {
+        switch (include) {
+            case ALWAYS:
+                return true;
+            case ON_PARAM:
+                return parameter(request, parameterName);
+            default:
+                return false;
+        }
+    }
+
+    //?trace, ?trace=true 는 켜고 ?trace=false 는 끈다.
+    private static boolean parameter(HttpServletRequest request, String name) {
+        String value = request.getParameter(name);
+        return value != null && !"false".equalsIgnoreCase(value);
+    }
+
+    //error/404 -> error/4xx. 템플릿이 있는지는 상태 코드마다 한 번만 확인한다.
+    private String viewName(int status) {
+        String viewName = viewNames.get(status);
+        if (viewName == null) {
+            viewName = viewNames.computeIfAbsent(status, s -> {
+                if (templateExists("error/" + s)) {
+                    return "error/" + s;
+                }
+                String series = "error/" + (s / 100) + "xx";
+                return templateExists(series) ? series : NO_VIEW;
+            });
+        }
+        return viewName;
+    }
+
+    private static boolean templateExists(String viewName) {
+        return new ClassPathResource("templates/" + viewName + ".html").exists();
+    }
+
+    /**
+     * sendError 를 톰캣에 넘기지 않고 상태 코드와 메시지만 기록한다.
+     */
+    private static class SendErrorCapture extends HttpServletResponseWrapper {
+
+        private int status;
+        private String message;
+
+        SendErrorCapture(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void sendError(int sc) {
+            this.status = sc;
+        }
+
+        @Override
+        public void sendError(int sc, String msg) {
+            this.status = sc;
+            this.message = msg;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package hello.exception.resolver;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import hello.exception.exhandler.ErrorResult;
+import org.springframework.http.MediaType;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * HandlerExceptionResolver 에서 ErrorResult 나 오류 속성(ErrorAttributes)을 JSON으로 응답한다.
+ *
+ * 애플리케이션이 쓰는 ObjectMapper(스프링 부트가 등록한 빈)로 ObjectWriter 를 한 번 만들어 두고,
+ * 문자열을 거치지 않고 응답 OutputStream 에 바로 쓴다.
+ */
+public class ErrorResponseWriter {
+
+    private final ObjectWriter errorResultWriter;
+    private final ObjectWriter errorAttributesWriter;
+
+    public ErrorResponseWriter(ObjectMapper objectMapper) {
+        //응답 스트림은 서블릿 컨테이너가 닫는다.
+        this.errorResultWriter = objectMapper.writerFor(ErrorResult.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.errorAttributesWriter = objectMapper.writerFor(Map.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    public void write(HttpServletResponse response, int status, ErrorResult errorResult) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        errorResultWriter.writeValue(response.getOutputStream(), errorResult);
+    }
+
+    /**
+     * BasicErrorController 의 JSON 응답과 같은 본문
+     */
+    public void write(HttpServletResponse response, int status, Map<String, Object> errorAttributes) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        errorAttributesWriter.writeValue(response.getOutputStream(), errorAttributes);
+    }
+
+    /**
+     * Accept 헤더로 JSON 과 HTML 중 무엇을 응답할지 정한다.
+     *
+     * 타입마다 가장 구체적으로 맞는 범위(application/json, application/*, 모든 타입 순)의 q 값을 비교한다.
+     * q 값이 같으면 더 구체적으로 적힌 쪽, 그것도 같으면(헤더가 없거나 모든 타입만 적혔을 때 등) whenEqual 이다.
+     * MediaType.parseMediaTypes() 처럼 목록을 만들지 않고 헤더를 한 번 훑는다.
+     */
+    public static boolean prefersJson(String accept, boolean whenEqual) {
+        if (accept == null) {
+            return whenEqual;
+        }
+        int jsonQuality = 0;
+        int jsonSpecificity = 0;
+        int htmlQuality = 0;
+        int htmlSpecificity = 0;
+
+        int length = accept.length();
+        int start = 0;
+        while (start < length) {
+            int end = accept.indexOf(',', start);
+            if (end < 0) {
+                end = length;
+            }
+            int paramStart = accept.indexOf(';', start);
+            if (paramStart < 0 || paramStart > end) {
+                paramStart = end;
+            }
+            int typeStart = skipWhitespace(accept, start, paramStart);
+            int slash = accept.indexOf('/', typeStart);
+            if (slash > typeStart && slash < paramStart) {
+                int subtypeEnd = trimWhitespace(accept, slash + 1, paramStart);
+                int json = specificity(accept, typeStart, slash, subtypeEnd, "application", "json");
+                int html = specificity(accept, typeStart, slash, subtypeEnd, "text", "html");
+                if (json > jsonSpecificity || html > htmlSpecificity) {
+                    int quality = quality(accept, paramStart, end);
+                    if (json > jsonSpecificity) {
+                        jsonSpecificity = json;
+                        jsonQuality = quality;
+                    }
+                    if (html > htmlSpecificity) {
+                        htmlSpecificity = html;
+                        htmlQuality = quality;
+                    }
+                }
+            }
+            start = end + 1;
+        }
+
+        if (jsonQuality != htmlQuality) {
+            return jsonQuality > htmlQuality;
+        }
+        if (jsonQuality == 0 || jsonSpecificity == htmlSpecificity) {
+            return whenEqual;
+        }
+        return jsonSpecificity > htmlSpecificity;
+    }
+
+    //범위가 type/subtype 에 맞으면 3(정확히), 2(type/*), 1(*/*). 안 맞으면 0
+    private static int specificity(String accept, int typeStart, int slash, int subtypeEnd, String type, String subtype) {
+        int subtypeStart = slash + 1;
+        boolean wildcardSubtype = subtypeEnd - subtypeStart == 1 && accept.charAt(subtypeStart) == '*';
+        if (slash - typeStart == 1 && accept.charAt(typeStart) == '*') {
+            return wildcardSubtype ? 1 : 0;
+        }
+        if (slash - typeStart != type.length() || !accept.regionMatches(true, typeStart, type, 0, type.length())) {
+            return 0;
+        }
+        if (wildcardSubtype) {
+            return 2;
+        }
+        boolean exact = subtypeEnd - subtypeStart == subtype.length()
+                && accept.regionMatches(true, subtypeStart, subtype, 0, subtype.length());
+        return exact ? 3 : 0;
+    }
+
+    //;q=0.8 을 천분율(800)로. 없거나 형식이 틀리면 1000
+    private static int quality(String accept, int paramStart, int end) {
+        int i = paramStart;
+        while (i < end) {
+            i = skipWhitespace(accept, i + 1, end);
+            if (i + 1 < end && (accept.charAt(i) == 'q' || accept.charAt(i) == 'Q') && accept.charAt(i + 1) == '=') {
+                return parseQuality(accept, i + 2, trimWhitespace(accept, i + 2, nextParam(accept, i, end)));
+            }
+            i = nextParam(accept, i, end);
+        }
+        return 1000;
+    }
+
+    private static int parseQuality(String accept, int start, int end) {
+        if (start >= end || (accept.charAt(start) != '0' && accept.charAt(start) != '1')) {
+            return 1000;
+        }
+        int value = (accept.charAt(start) - '0') * 1000;
+        if (start + 1 < end && accept.charAt(start + 1) == '.') {
+            int scale = 100;
+            for (int i = start + 2; i < end && scale > 0; i++, scale /= 10) {
+                char c = accept.charAt(i);
+                if (c < '0' || c > '9') {
+                    return 1000;
+                }
+                value += (c - '0') * scale;
+            }
+        }
+        return Math.min(value, 1000);
+    }
+
+    private static int nextParam(String accept, int from, int end) {
+        int semicolon = accept.indexOf(';', from);
+        return semicolon < 0 || semicolon > end ? end : semicolon;
+    }
+
+    private static int skipWhitespace(String accept, int from, int end) {
+        while (from < end && accept.charAt(from) == ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimWhitespace(String accept, int start, int end) {
+        while (end > start && accept.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+}
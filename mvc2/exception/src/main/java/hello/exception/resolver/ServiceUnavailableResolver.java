@@ -0,0 +1,54 @@
+package hello.exception.resolver;
+
+import hello.exception.exception.ServiceUnavailableException;
+import hello.exception.exception.ServiceUnavailableException.Reason;
+import hello.exception.exhandler.ErrorResult;
+import hello.exception.exhandler.ErrorResultHttpMessageConverter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * ResilienceInterceptor 가 거절한 요청에 503 과 ErrorResult 를 응답한다.
+ *
+ * 부하가 몰릴 때 부르는 곳이므로 본문은 미리 인코딩해 둔 바이트를 그대로 쓴다.
+ * ExControllerAdvice 의 @ExceptionHandler 가 먼저 잡지 않도록 리졸버 맨 앞에 둔다.
+ */
+@Slf4j
+public class ServiceUnavailableResolver implements HandlerExceptionResolver {
+
+    private final Map<Reason, byte[]> bodies = new EnumMap<>(Reason.class);
+
+    public ServiceUnavailableResolver() {
+        ErrorResultHttpMessageConverter converter = new ErrorResultHttpMessageConverter();
+        bodies.put(Reason.CIRCUIT_OPEN, converter.encode(new ErrorResult(Reason.CIRCUIT_OPEN.name(), "잠시 후 다시 시도해 주세요.")));
+        bodies.put(Reason.OVERLOADED, converter.encode(new ErrorResult(Reason.OVERLOADED.name(), "요청이 많아 처리하지 못했습니다.")));
+    }
+
+    @Override
+    public ModelAndView resolveException(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!(ex instanceof ServiceUnavailableException)) {
+            return null;
+        }
+        ServiceUnavailableException e = (ServiceUnavailableException) ex;
+        byte[] body = bodies.get(e.getReason());
+        try {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+            return new ModelAndView();
+        } catch (IOException ioe) {
+            log.error("resolver ex", ioe);
+        }
+        return null;
+    }
+}
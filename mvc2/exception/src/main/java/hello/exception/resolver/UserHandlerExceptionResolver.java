@@ -1,7 +1,8 @@
 package hello.exception.resolver;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import hello.exception.exception.UserException;
+import hello.exception.exhandler.ErrorResult;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.servlet.HandlerExceptionResolver;
 import org.springframework.web.servlet.ModelAndView;
@@ -9,13 +10,12 @@ import org.springframework.web.servlet.ModelAndView;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 @Slf4j
+@RequiredArgsConstructor
 public class UserHandlerExceptionResolver implements HandlerExceptionResolver {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ErrorResponseWriter errorResponseWriter;
 
     @Override
     public ModelAndView resolveException(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
@@ -27,15 +27,9 @@ public class UserHandlerExceptionResolver implements HandlerExceptionResolver {
                 String acceptHeader = request.getHeader("accept");
                 response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
 
-                if ("application/json".equals(acceptHeader)) {
-                    Map<String, Object> errorResult = new HashMap<>();
-                    errorResult.put("ex", ex.getClass());
-                    errorResult.put("message", ex.getMessage());
-                    String result = objectMapper.writeValueAsString(errorResult);
-
-                    response.setContentType("application/json");
-                    response.setCharacterEncoding("utf-8");
-                    response.getWriter().write(result);
+                if (ErrorResponseWriter.prefersJson(acceptHeader, false)) {
+                    ErrorResult errorResult = new ErrorResult("USER-EX", ex.getMessage());
+                    errorResponseWriter.write(response, HttpServletResponse.SC_BAD_REQUEST, errorResult);
                     return new ModelAndView();
                 } else {
                     // TEXT/HTML
@@ -0,0 +1,152 @@
+package hello.exception.log;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AsyncRequestLoggerTest {
+
+    Logger logger = (Logger) LoggerFactory.getLogger("request-log-test." + UUID.randomUUID());
+    RecordingAppender appender = new RecordingAppender();
+
+    @BeforeEach
+    void beforeEach() {
+        logger.setLevel(ch.qos.logback.classic.Level.INFO);
+        logger.setAdditive(false);
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void afterEach() {
+        appender.release.countDown();
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    void writesInOrder() throws InterruptedException {
+        //given
+        AsyncRequestLogger requestLogger = new AsyncRequestLogger(new RequestLogPolicy(Level.INFO, 1), 128);
+
+        //when
+        for (int i = 0; i < 100; i++) {
+            log(requestLogger, "/items/" + i);
+        }
+        requestLogger.close();
+
+        //then
+        assertThat(appender.messages).hasSize(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(appender.messages.get(i)).contains("[/items/" + i + "]");
+        }
+        assertThat(requestLogger.getDropped()).isZero();
+    }
+
+    @Test
+    void wakesUpWhenIdle() throws InterruptedException {
+        //given writer 가 할 일이 없어 잠든 뒤
+        AsyncRequestLogger requestLogger = new AsyncRequestLogger(new RequestLogPolicy(Level.INFO, 1), 8);
+        Thread.sleep(100);
+
+        //when then close 하지 않아도 publish 가 깨워서 쓴다.
+        appender.block(1);
+        log(requestLogger, "/items/1");
+        assertThat(appender.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        appender.release.countDown();
+        requestLogger.close();
+    }
+
+    @Test
+    void dropsWhenFull() throws InterruptedException {
+        //given writer 가 첫 로그를 쓰다 멈춘다.
+        AsyncRequestLogger requestLogger = new AsyncRequestLogger(new RequestLogPolicy(Level.INFO, 1), 4);
+        appender.block(1);
+        log(requestLogger, "/items/0");
+        appender.entered.await(5, TimeUnit.SECONDS);
+
+        //when 첫 칸은 아직 다 쓰지 않았으므로 3칸만 더 받는다.
+        for (int i = 1; i <= 6; i++) {
+            log(requestLogger, "/items/" + i);
+        }
+
+        //then 기다리지 않고 버린다.
+        assertThat(requestLogger.getDropped()).isEqualTo(3);
+
+        //close 는 받은 것을 모두 쓰고 끝난다.
+        appender.release.countDown();
+        requestLogger.close();
+        assertThat(appender.messages).hasSize(4);
+        assertThat(appender.messages.get(3)).contains("[/items/3]");
+    }
+
+    @Test
+    void closeFlushesPending() throws InterruptedException {
+        //given writer 가 멈춘 동안 쌓인 로그
+        AsyncRequestLogger requestLogger = new AsyncRequestLogger(new RequestLogPolicy(Level.INFO, 1), 64);
+        appender.block(1);
+        for (int i = 0; i < 50; i++) {
+            log(requestLogger, "/items/" + i);
+        }
+        appender.entered.await(5, TimeUnit.SECONDS);
+
+        //when
+        appender.release.countDown();
+        requestLogger.close();
+
+        //then 모두 쓴 뒤 돌아오고, 그 뒤 로그는 받지 않는다.
+        assertThat(appender.messages).hasSize(50);
+        log(requestLogger, "/items/50");
+        assertThat(appender.messages).hasSize(50);
+        assertThat(requestLogger.getDropped()).isZero();
+    }
+
+    private void log(AsyncRequestLogger requestLogger, String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AsyncRequestLogger.Context context = requestLogger.begin(logger, "id", request, "handler");
+        requestLogger.end(context, request, response, "handler", null);
+    }
+
+    /**
+     * 로그 메시지를 모은다. block(n) 이면 n번째 로그에서 release 될 때까지 writer 를 붙잡는다.
+     */
+    static class RecordingAppender extends AppenderBase<ILoggingEvent> {
+
+        final List<String> messages = new CopyOnWriteArrayList<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        private volatile int blockAt;
+
+        void block(int count) {
+            blockAt = count;
+        }
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            messages.add(event.getFormattedMessage());
+            if (messages.size() == blockAt) {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
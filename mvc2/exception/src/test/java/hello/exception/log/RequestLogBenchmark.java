@@ -0,0 +1,111 @@
+package hello.exception.log;
+
+import ch.qos.logback.classic.Logger;
+import hello.exception.api.ApiExceptionController;
+import hello.exception.interceptor.LogInterceptor;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 요청 로그 처리량 비교. 테스트가 아니므로 main 을 직접 실행한다. (인자: 스레드 수, 측정 초)
+ *
+ * 같은 API(/api/members/{id})를 MockMvc로 여러 스레드에서 부르고 초당 요청 수를 잰다.
+ * - off: 로그 인터셉터 없음
+ * - sync: 예전 LogInterceptor 처럼 UUID를 만들고 요청 스레드에서 바로 로그를 남긴다.
+ * - async: LogInterceptor + AsyncRequestLogger
+ */
+public class RequestLogBenchmark {
+
+    private static final String URL = "/api/members/spring";
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        //logback 기본 설정은 DEBUG 라서 MockMvc 로그가 섞인다.
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.INFO);
+
+        run("off", mockMvc(null), threads, seconds);
+        run("sync", mockMvc(new SyncLogInterceptor()), threads, seconds);
+        try (AsyncRequestLogger requestLogger = new AsyncRequestLogger(new RequestLogPolicy(Level.INFO, 1), 8192)) {
+            run("async", mockMvc(new LogInterceptor(requestLogger)), threads, seconds);
+            System.out.println("async dropped=" + requestLogger.getDropped());
+        }
+    }
+
+    private static MockMvc mockMvc(HandlerInterceptor interceptor) {
+        if (interceptor == null) {
+            return MockMvcBuilders.standaloneSetup(new ApiExceptionController()).build();
+        }
+        return MockMvcBuilders.standaloneSetup(new ApiExceptionController()).addInterceptors(interceptor).build();
+    }
+
+    private static void run(String name, MockMvc mockMvc, int threads, int seconds) throws Exception {
+        measure(mockMvc, threads, 1); //워밍업
+        long count = measure(mockMvc, threads, seconds);
+        System.out.printf("%-5s threads=%d %,d req/s%n", name, threads, count / seconds);
+    }
+
+    private static long measure(MockMvc mockMvc, int threads, int seconds) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        LongAdder count = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    mockMvc.perform(get(URL)).andExpect(status().isOk());
+                    count.increment();
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return count.sum();
+    }
+
+    /**
+     * 바꾸기 전 LogInterceptor
+     */
+    static class SyncLogInterceptor implements HandlerInterceptor {
+
+        private static final org.slf4j.Logger log = LoggerFactory.getLogger(SyncLogInterceptor.class);
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            String uuid = UUID.randomUUID().toString();
+            request.setAttribute(LogInterceptor.LOG_ID, uuid);
+            log.info("REQUEST  [{}][{}][{}][{}]", uuid, request.getDispatcherType(), request.getRequestURI(), handler);
+            return true;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+            String logId = (String) request.getAttribute(LogInterceptor.LOG_ID);
+            log.info("RESPONSE [{}][{}][{}]", logId, request.getDispatcherType(), request.getRequestURI());
+        }
+    }
+}
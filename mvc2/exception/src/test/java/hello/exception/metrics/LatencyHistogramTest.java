@@ -0,0 +1,36 @@
+package hello.exception.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketErrorIsBounded() {
+        for (long value = 0; value < 10_000_000; value = value * 11 / 10 + 1) {
+            long highest = LatencyHistogram.highestValue(LatencyHistogram.index(value));
+            assertThat(highest).isGreaterThanOrEqualTo(value);
+            //칸 너비는 값의 1/32 이하
+            assertThat(highest - value).isLessThanOrEqualTo(value / 32);
+        }
+    }
+
+    @Test
+    void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        histogram.record(1_000_000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(1001);
+        assertThat(snapshot.getMax()).isEqualTo(1_000_000);
+        assertThat(snapshot.percentile(50)).isGreaterThanOrEqualTo(501);
+        assertThat(snapshot.percentile(50)).isLessThanOrEqualTo(501 + 501 / 32);
+        assertThat(snapshot.percentile(99)).isGreaterThanOrEqualTo(991);
+        assertThat(snapshot.percentile(99)).isLessThanOrEqualTo(991 + 991 / 32);
+        assertThat(snapshot.percentile(100)).isEqualTo(1_000_000);
+    }
+}
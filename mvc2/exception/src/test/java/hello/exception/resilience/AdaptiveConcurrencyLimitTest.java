@@ -0,0 +1,101 @@
+package hello.exception.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    //100에서 시작해서 10~200, 30초 평균의 2배를 넘으면 줄인다.
+    private final AdaptiveConcurrencyLimit concurrencyLimit =
+            new AdaptiveConcurrencyLimit(100, 10, 200, 2.0, Duration.ofSeconds(30));
+    private final Random random = new Random(1);
+    private long now = 100_000 * MS;
+
+    @Test
+    void steadyLoadKeepsLimit() {
+        //when 10~24ms 로 흔들리는 응답. 최솟값(10ms)의 2배를 넘는 응답이 섞여 있지만 평균은 그대로다.
+        for (int round = 0; round < 100; round++) {
+            saturate(10 * MS + random.nextInt(15) * MS);
+        }
+
+        //then 줄지 않고 최대까지 늘어난다.
+        assertThat(concurrencyLimit.getLimit()).isEqualTo(200);
+    }
+
+    @Test
+    void latencySpikeDecreasesLimit() {
+        //given
+        for (int round = 0; round < 100; round++) {
+            saturate(10 * MS);
+        }
+        int before = concurrencyLimit.getLimit();
+
+        //when 응답이 10배 느려진다.
+        saturate(100 * MS);
+
+        //then 줄이되 최소 한도 밑으로는 내려가지 않는다.
+        assertThat(concurrencyLimit.getLimit()).isLessThan(before / 2);
+        for (int round = 0; round < 10; round++) {
+            saturate(100 * MS);
+        }
+        assertThat(concurrencyLimit.getLimit()).isGreaterThanOrEqualTo(10);
+    }
+
+    @Test
+    void recoversAfterSpike() {
+        //given 느린 응답으로 최소 한도까지 내려간 뒤
+        for (int round = 0; round < 10; round++) {
+            saturate(10 * MS);
+        }
+        for (int round = 0; round < 20; round++) {
+            saturate(100 * MS);
+        }
+        assertThat(concurrencyLimit.getLimit()).isLessThan(20);
+
+        //when 응답 시간이 돌아오면
+        for (int round = 0; round < 20; round++) {
+            saturate(10 * MS);
+        }
+
+        //then 다시 늘어난다.
+        assertThat(concurrencyLimit.getLimit()).isGreaterThanOrEqualTo(100);
+    }
+
+    @Test
+    void idleDoesNotIncrease() {
+        //given
+        for (int round = 0; round < 10; round++) {
+            saturate(10 * MS);
+        }
+        int before = concurrencyLimit.getLimit();
+
+        //when 한 번에 하나씩만 처리한다.
+        for (int i = 0; i < 1000; i++) {
+            concurrencyLimit.tryAcquire();
+            concurrencyLimit.release(10 * MS, now);
+            now += MS;
+        }
+
+        //then 쓰지 않는 한도는 늘리지 않는다.
+        assertThat(concurrencyLimit.getLimit()).isEqualTo(before);
+    }
+
+    //한도까지 받은 뒤 모두 rtt 로 끝낸다. 한 번에 rtt 만큼 시간이 지난다.
+    private void saturate(long rttNanos) {
+        int acquired = 0;
+        while (concurrencyLimit.tryAcquire()) {
+            acquired++;
+        }
+        now += rttNanos;
+        for (int i = 0; i < acquired; i++) {
+            concurrencyLimit.release(rttNanos, now);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package hello.exception.resilience;
+
+import hello.exception.resilience.CircuitBreaker.Permit;
+import hello.exception.resilience.CircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    //10초(1초 칸 10개) 동안 10건 이상 중 절반이 실패하면 5초 동안 연다.
+    private final CircuitBreaker circuitBreaker =
+            new CircuitBreaker(Duration.ofSeconds(10), 10, 10, 0.5, Duration.ofSeconds(5));
+
+    @Test
+    void opensWhenFailureRatioExceeded() {
+        long now = 100 * SECOND;
+        for (int i = 0; i < 5; i++) {
+            circuitBreaker.record(Permit.NORMAL, false, now);
+        }
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.record(Permit.NORMAL, true, now);
+        }
+        //9건: 아직 최소 요청 수가 안 된다.
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+
+        circuitBreaker.record(Permit.NORMAL, true, now);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.OPEN);
+        assertThat(circuitBreaker.allowRequest(now + SECOND)).isEqualTo(Permit.REJECTED);
+    }
+
+    @Test
+    void oldBucketsLeaveWindow() {
+        long now = 100 * SECOND;
+        for (int i = 0; i < 9; i++) {
+            circuitBreaker.record(Permit.NORMAL, true, now);
+        }
+        //10초가 지나면 앞의 실패는 빠진다.
+        circuitBreaker.record(Permit.NORMAL, true, now + 10 * SECOND);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void halfOpenLetsOneProbeThrough() {
+        long now = 100 * SECOND;
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.record(Permit.NORMAL, true, now);
+        }
+        assertThat(circuitBreaker.getState()).isEqualTo(State.OPEN);
+
+        long later = now + 5 * SECOND;
+        assertThat(circuitBreaker.allowRequest(later)).isEqualTo(Permit.PROBE);
+        assertThat(circuitBreaker.allowRequest(later)).isEqualTo(Permit.REJECTED);
+
+        //확인 요청이 실패하면 다시 연다.
+        circuitBreaker.record(Permit.PROBE, true, later);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.OPEN);
+        assertThat(circuitBreaker.allowRequest(later + SECOND)).isEqualTo(Permit.REJECTED);
+
+        //성공하면 닫고 이전 실패는 잊는다.
+        later += 5 * SECOND;
+        assertThat(circuitBreaker.allowRequest(later)).isEqualTo(Permit.PROBE);
+        circuitBreaker.record(Permit.PROBE, false, later);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+        circuitBreaker.record(Permit.NORMAL, true, later);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+    }
+}
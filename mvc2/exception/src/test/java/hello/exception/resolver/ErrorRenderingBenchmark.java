@@ -0,0 +1,108 @@
+package hello.exception.resolver;
+
+import hello.exception.ExceptionApplication;
+import hello.exception.metrics.LatencyHistogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 오류 응답 비교. 테스트가 아니므로 main 을 직접 실행한다. (인자: 스레드 수, 측정 초)
+ *
+ * 예외가 나는 /error-ex 를 HTML, JSON 으로 각각 불러서 지연 시간과 요청당 할당량을 잰다.
+ * MockMvc 는 sendError 후 /error 디스패치를 하지 않으므로 톰캣을 직접 띄운다.
+ * - redispatch: 예전처럼 sendError 하고 톰캣이 /error(BasicErrorController)로 다시 디스패치 (error.single-pass=false)
+ * - single-pass: ErrorRenderingResolver 가 같은 디스패치에서 응답
+ *
+ * 할당량은 JVM 전체 스레드 합계라서 클라이언트 몫도 들어 있다. 두 방식에서 같으므로 차이만 본다.
+ * 로그 비용은 빼고 보기 위해 로그는 끈다.
+ */
+public class ErrorRenderingBenchmark {
+
+    private static final String URL = "/error-ex";
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        for (boolean singlePass : new boolean[]{false, true}) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(ExceptionApplication.class)
+                    .properties("server.port=0", "logging.level.root=OFF", "error.single-pass=" + singlePass)
+                    .run();
+            try {
+                String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                String name = singlePass ? "single-pass" : "redispatch";
+                run(name + " html", baseUrl, "text/html", threads, seconds);
+                run(name + " json", baseUrl, "application/json", threads, seconds);
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private static void run(String name, String baseUrl, String accept, int threads, int seconds) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + URL)).header("Accept", accept).build();
+
+        measure(client, request, threads, 1, new LatencyHistogram()); //워밍업
+        LatencyHistogram histogram = new LatencyHistogram();
+        long allocatedBefore = allocatedBytes();
+        measure(client, request, threads, seconds, histogram);
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        System.out.printf("%-16s threads=%d %,d req/s p50=%dus p99=%dus %,d B/req%n", name, threads,
+                snapshot.getCount() / seconds, snapshot.percentile(50), snapshot.percentile(99),
+                allocated / Math.max(1, snapshot.getCount()));
+    }
+
+    private static void measure(HttpClient client, HttpRequest request, int threads, int seconds,
+                                LatencyHistogram histogram) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                    if (response.statusCode() != 500) {
+                        throw new IllegalStateException("status=" + response.statusCode());
+                    }
+                    histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    //살아 있는 모든 스레드가 지금까지 할당한 바이트 합계
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long sum = 0;
+        for (long allocated : threadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+            if (allocated > 0) {
+                sum += allocated;
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,114 @@
+package hello.exception.resolver;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import hello.exception.ExceptionApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * ErrorRenderingResolver 가 /error 로 다시 디스패치할 때(BasicErrorController)와 같은 응답을 만드는지 비교한다.
+ * MockMvc 는 sendError 후 /error 디스패치를 하지 않으므로 error.single-pass 를 끄고 켠 톰캣을 각각 띄운다.
+ */
+class ErrorRenderingResolverTest {
+
+    private static final List<String> URLS = List.of(
+            "/error-ex", //아무 리졸버도 처리하지 않은 500
+            "/error-ex?trace", //include-stacktrace=on_param
+            "/api/response-status-ex1", //@ResponseStatus reason
+            "/api/response-status-ex2", //ResponseStatusException 404
+            "/api/default-handler-ex?data=qqq", //DefaultHandlerExceptionResolver 400
+            "/api/members/bad"); //MyHandlerExceptionResolver 400
+
+    private static final HttpClient client = HttpClient.newHttpClient();
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static ConfigurableApplicationContext redispatch;
+    private static ConfigurableApplicationContext singlePass;
+
+    @BeforeAll
+    static void beforeAll() {
+        redispatch = start(false);
+        singlePass = start(true);
+    }
+
+    @AfterAll
+    static void afterAll() {
+        redispatch.close();
+        singlePass.close();
+    }
+
+    @Test
+    void jsonSameAsBasicErrorController() throws Exception {
+        for (String url : URLS) {
+            HttpResponse<String> expected = get(redispatch, url, "application/json");
+            HttpResponse<String> actual = get(singlePass, url, "application/json");
+
+            assertThat(actual.statusCode()).as(url).isEqualTo(expected.statusCode());
+            assertThat(actual.headers().firstValue("Content-Type")).as(url)
+                    .isEqualTo(expected.headers().firstValue("Content-Type"));
+            assertThat(json(actual)).as(url).isEqualTo(json(expected));
+        }
+    }
+
+    @Test
+    void htmlSameAsBasicErrorController() throws Exception {
+        for (String url : URLS) {
+            HttpResponse<String> expected = get(redispatch, url, "text/html");
+            HttpResponse<String> actual = get(singlePass, url, "text/html");
+
+            assertThat(actual.statusCode()).as(url).isEqualTo(expected.statusCode());
+            assertThat(html(actual)).as(url).isEqualTo(html(expected));
+        }
+    }
+
+    @Test
+    void followsServerErrorProperties() throws Exception {
+        //include-exception=true, include-message=always 라서 500 도 예외 이름과 메시지를 보낸다.
+        Map<String, Object> body = json(get(singlePass, "/error-ex", "application/json"));
+        assertThat(body.get("exception")).isEqualTo(RuntimeException.class.getName());
+        assertThat(body.get("message")).isEqualTo("예외 발생!");
+        assertThat(body).doesNotContainKey("trace");
+
+        //include-stacktrace=on_param
+        assertThat(json(get(singlePass, "/error-ex?trace", "application/json"))).containsKey("trace");
+        assertThat(html(get(singlePass, "/error-ex?trace", "text/html"))).contains("trace: java.lang.RuntimeException");
+    }
+
+    private static ConfigurableApplicationContext start(boolean singlePass) {
+        return new SpringApplicationBuilder(ExceptionApplication.class)
+                .properties("server.port=0", "logging.level.root=OFF", "error.single-pass=" + singlePass)
+                .run();
+    }
+
+    private static HttpResponse<String> get(ConfigurableApplicationContext context, String url, String accept)
+            throws IOException, InterruptedException {
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + url)).header("Accept", accept).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    //시각은 요청마다 다르다.
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> json(HttpResponse<String> response) throws IOException {
+        Map<String, Object> body = objectMapper.readValue(response.body(), Map.class);
+        body.remove("timestamp");
+        return body;
+    }
+
+    private static String html(HttpResponse<String> response) {
+        return response.body().replaceAll("timestamp: [^<]*", "timestamp:");
+    }
+}
@@ -0,0 +1,37 @@
+package hello.exception.resolver;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ErrorResponseWriterTest {
+
+    private static final String BROWSER_ACCEPT =
+            "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8";
+
+    @Test
+    void prefersJson() {
+        //브라우저는 HTML
+        assertThat(ErrorResponseWriter.prefersJson(BROWSER_ACCEPT, true)).isFalse();
+        assertThat(ErrorResponseWriter.prefersJson("application/json", false)).isTrue();
+        assertThat(ErrorResponseWriter.prefersJson("application/json;q=0.5, text/html;q=0.9", true)).isFalse();
+
+        //q=0 은 받지 않는다는 뜻
+        assertThat(ErrorResponseWriter.prefersJson("text/html;q=0, application/json", false)).isTrue();
+
+        //q 앞에 다른 파라미터가 있어도 q 를 읽는다. 같은 q 면 더 구체적으로 적힌 쪽
+        assertThat(ErrorResponseWriter.prefersJson("text/html; charset=utf-8 ; q=0.1 , application/*", false)).isTrue();
+        assertThat(ErrorResponseWriter.prefersJson("application/*, text/html", true)).isFalse();
+    }
+
+    @Test
+    void prefersJsonWhenEqual() {
+        //헤더가 없거나, 모든 타입이거나, 둘 다 받지 않으면 whenEqual
+        assertThat(ErrorResponseWriter.prefersJson(null, true)).isTrue();
+        assertThat(ErrorResponseWriter.prefersJson(null, false)).isFalse();
+        assertThat(ErrorResponseWriter.prefersJson("*/*", true)).isTrue();
+        assertThat(ErrorResponseWriter.prefersJson("*/*", false)).isFalse();
+        assertThat(ErrorResponseWriter.prefersJson("application/json;q=0", true)).isTrue();
+        assertThat(ErrorResponseWriter.prefersJson("application/json;q=0", false)).isFalse();
+    }
+}
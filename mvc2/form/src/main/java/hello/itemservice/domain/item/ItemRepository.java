@@ -1,21 +1,31 @@
 package hello.itemservice.domain.item;
 
 import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Repository
 public class ItemRepository {
 
-    private static final Map<Long, Item> store = new HashMap<>(); //static
-    private static long sequence = 0L; //static
+    //여러 요청 스레드가 동시에 save/update 하므로 HashMap, ++sequence 대신 동시성 안전한 자료구조를 사용한다.
+    //id 순서로 페이지 조회를 하기 위해 정렬된 ConcurrentSkipListMap을 사용한다. 조회는 락 없이 동작한다.
+    private static final ConcurrentNavigableMap<Long, Item> store = new ConcurrentSkipListMap<>(); //static
+    private static final AtomicLong sequence = new AtomicLong(); //static
+    private static final ItemSearchIndex searchIndex = new ItemSearchIndex(); //static, store와 함께 유지된다.
 
     public Item save(Item item) {
-        item.setId(++sequence);
+        item.setId(sequence.incrementAndGet());
         store.put(item.getId(), item);
+        searchIndex.add(item);
         return item;
     }
 
@@ -24,25 +34,107 @@ public class ItemRepository {
     }
 
     public List<Item> findAll() {
+        //store.size()는 ConcurrentSkipListMap에서 전체를 세므로 크기를 미리 잡지 않고 한 번만 복사한다.
         return new ArrayList<>(store.values());
     }
 
+    /**
+     * cursor(상품 id) 다음 상품부터 id 순서로 최대 limit개를 조회한다. cursor가 null이면 처음부터 조회한다.
+     */
+    public List<Item> findPage(Long cursor, int limit) {
+        Collection<Item> values = cursor == null ? store.values() : store.tailMap(cursor, false).values();
+        List<Item> result = new ArrayList<>(limit);
+        for (Item item : values) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 전체 상품을 id 순서로 순회한다. findPage로 batchSize개씩 읽어오므로 전체 목록을 한 번에 메모리에 올리지 않는다.
+     */
+    public Iterable<Item> findAllInBatches(int batchSize) {
+        return () -> new Iterator<Item>() {
+            private List<Item> page = findPage(null, batchSize);
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                if (index < page.size()) {
+                    return true;
+                }
+                if (page.size() < batchSize) {
+                    return false;
+                }
+                page = findPage(page.get(page.size() - 1).getId(), batchSize);
+                index = 0;
+                return !page.isEmpty();
+            }
+
+            @Override
+            public Item next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(index++);
+            }
+        };
+    }
+
     public void update(Long itemId, Item updateParam) {
         Item findItem = findById(itemId);
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
-        findItem.setOpen(updateParam.getOpen());
-        findItem.setRegions(updateParam.getRegions());
-        findItem.setItemType(updateParam.getItemType());
-        findItem.setDeliveryCode(updateParam.getDeliveryCode());
+        if (findItem == null) {
+            return;
+        }
+        //검색 인덱스의 쓰기 잠금 안에서 수정하므로 같은 상품에 대한 동시 수정이 필드 단위로 섞이지 않는다.
+        searchIndex.update(findItem, () -> {
+            findItem.setItemName(updateParam.getItemName());
+            findItem.setPrice(updateParam.getPrice());
+            findItem.setQuantity(updateParam.getQuantity());
+            findItem.setOpen(updateParam.getOpen());
+            findItem.setRegions(updateParam.getRegions());
+            findItem.setItemType(updateParam.getItemType());
+            findItem.setDeliveryCode(updateParam.getDeliveryCode());
+        });
+    }
+
+    /**
+     * 검색 조건에 맞는 상품을 cursor(상품 id) 다음부터 id 순서로 최대 limit개 조회한다.
+     * 전체를 훑지 않고 ItemSearchIndex가 돌려준 후보만 확인한다.
+     */
+    public List<Item> findByCond(ItemSearchCond cond, Long cursor, int limit) {
+        BitSet candidates = searchIndex.search(cond);
+        String name = StringUtils.hasText(cond.getName()) ? ItemSearchIndex.normalize(cond.getName()) : null;
+
+        List<Item> result = new ArrayList<>();
+        //인덱스는 int 범위의 id만 담는다. findPage 처럼 음수 cursor는 처음부터, 더 큰 cursor는 다음 상품이 없는 것으로 본다.
+        if (cursor != null && cursor >= Integer.MAX_VALUE) {
+            return result;
+        }
+        int from = cursor == null || cursor < 0 ? 0 : (int) (cursor + 1);
+        for (int id = candidates.nextSetBit(from); id >= 0 && result.size() < limit; id = candidates.nextSetBit(id + 1)) {
+            Item item = store.get((long) id);
+            if (item != null && matchesName(item, name)) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    //긴 상품명 검색어의 후보는 3글자 조각이 모두 들어있는 상품일 뿐이므로 실제로 포함하는지 한 번 더 확인한다.
+    private boolean matchesName(Item item, String name) {
+        if (name == null) {
+            return true;
+        }
+        return item.getItemName() != null && ItemSearchIndex.normalize(item.getItemName()).contains(name);
     }
 
     public void clearStore() {
         store.clear();
+        searchIndex.clear();
     }
 
 }
@@ -0,0 +1,24 @@
+package hello.itemservice.domain.item;
+
+import lombok.Data;
+import org.springframework.util.StringUtils;
+
+/**
+ * 상품 검색 조건. /form/items?name=&minPrice=&maxPrice=&region=&itemType=&deliveryCode= 로 넘어온다.
+ * 값이 없는 조건은 검색에 사용하지 않는다.
+ */
+@Data
+public class ItemSearchCond {
+
+    private String name; //상품명 일부
+    private Integer minPrice;
+    private Integer maxPrice;
+    private String region;
+    private ItemType itemType;
+    private String deliveryCode;
+
+    public boolean isEmpty() {
+        return !StringUtils.hasText(name) && minPrice == null && maxPrice == null
+                && !StringUtils.hasText(region) && itemType == null && !StringUtils.hasText(deliveryCode);
+    }
+}
@@ -0,0 +1,223 @@
+package hello.itemservice.domain.item;
+
+import org.springframework.util.StringUtils;
+
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ItemRepository의 보조 인덱스. save/update 때마다 바뀐 상품만 갱신한다.
+ *
+ * 상품명: 1~3글자 조각(n-gram) -> 상품 id 집합. 3글자 이하 검색어는 조각 하나로 바로 찾고,
+ *        더 긴 검색어는 3글자 조각들의 교집합을 후보로 돌려준다(최종 확인은 ItemRepository가 한다).
+ * 가격: 정렬된 TreeMap(가격 -> 상품 id 집합)으로 범위 검색을 한다.
+ * 지역, 상품 종류, 배송 방식: 값 종류가 적으므로 값마다 상품 id 비트맵(BitSet)을 둔다.
+ */
+class ItemSearchIndex {
+
+    private static final int MAX_GRAM = 3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Set<Long>> nameGrams = new HashMap<>();
+    private final NavigableMap<Integer, Set<Long>> prices = new TreeMap<>();
+    private final Map<String, BitSet> regions = new HashMap<>();
+    private final Map<ItemType, BitSet> itemTypes = new EnumMap<>(ItemType.class);
+    private final Map<String, BitSet> deliveryCodes = new HashMap<>();
+    private final BitSet all = new BitSet();
+
+    void add(Item item) {
+        lock.writeLock().lock();
+        try {
+            index(item);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 인덱스에서 상품의 이전 값을 빼고, change로 상품을 수정한 뒤 새 값으로 다시 넣는다.
+     * 검색 중인 스레드가 수정 도중의 상태를 보지 않도록 전체를 쓰기 잠금 안에서 처리한다.
+     */
+    void update(Item item, Runnable change) {
+        lock.writeLock().lock();
+        try {
+            unindex(item);
+            change.run();
+            index(item);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            nameGrams.clear();
+            prices.clear();
+            regions.clear();
+            itemTypes.clear();
+            deliveryCodes.clear();
+            all.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 조건을 모두 만족할 수 있는 상품 id를 비트맵으로 돌려준다. 상품명 조건은 후보일 뿐이므로 호출한 쪽에서 확인해야 한다.
+     */
+    BitSet search(ItemSearchCond cond) {
+        lock.readLock().lock();
+        try {
+            BitSet result = (BitSet) all.clone();
+            if (StringUtils.hasText(cond.getName())) {
+                result.and(searchName(normalize(cond.getName())));
+            }
+            if (cond.getMinPrice() != null || cond.getMaxPrice() != null) {
+                int min = cond.getMinPrice() == null ? Integer.MIN_VALUE : cond.getMinPrice();
+                int max = cond.getMaxPrice() == null ? Integer.MAX_VALUE : cond.getMaxPrice();
+                result.and(min > max ? new BitSet() : union(prices.subMap(min, true, max, true).values()));
+            }
+            if (StringUtils.hasText(cond.getRegion())) {
+                result.and(regions.getOrDefault(cond.getRegion(), new BitSet()));
+            }
+            if (cond.getItemType() != null) {
+                result.and(itemTypes.getOrDefault(cond.getItemType(), new BitSet()));
+            }
+            if (StringUtils.hasText(cond.getDeliveryCode())) {
+                result.and(deliveryCodes.getOrDefault(cond.getDeliveryCode(), new BitSet()));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet searchName(String query) {
+        if (query.length() <= MAX_GRAM) {
+            return toBitSet(nameGrams.getOrDefault(query, Set.of()));
+        }
+        BitSet candidates = null;
+        for (int i = 0; i + MAX_GRAM <= query.length(); i++) {
+            BitSet ids = toBitSet(nameGrams.getOrDefault(query.substring(i, i + MAX_GRAM), Set.of()));
+            if (candidates == null) {
+                candidates = ids;
+            } else {
+                candidates.and(ids);
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    private void index(Item item) {
+        Long id = item.getId();
+        int bit = toBit(id);
+        all.set(bit);
+        if (item.getItemName() != null) {
+            for (String gram : grams(normalize(item.getItemName()))) {
+                nameGrams.computeIfAbsent(gram, k -> new HashSet<>()).add(id);
+            }
+        }
+        if (item.getPrice() != null) {
+            prices.computeIfAbsent(item.getPrice(), k -> new HashSet<>()).add(id);
+        }
+        if (item.getRegions() != null) {
+            for (String region : item.getRegions()) {
+                regions.computeIfAbsent(region, k -> new BitSet()).set(bit);
+            }
+        }
+        if (item.getItemType() != null) {
+            itemTypes.computeIfAbsent(item.getItemType(), k -> new BitSet()).set(bit);
+        }
+        if (item.getDeliveryCode() != null) {
+            deliveryCodes.computeIfAbsent(item.getDeliveryCode(), k -> new BitSet()).set(bit);
+        }
+    }
+
+    private void unindex(Item item) {
+        Long id = item.getId();
+        int bit = toBit(id);
+        if (item.getItemName() != null) {
+            for (String gram : grams(normalize(item.getItemName()))) {
+                removeFrom(nameGrams, gram, id);
+            }
+        }
+        if (item.getPrice() != null) {
+            removeFrom(prices, item.getPrice(), id);
+        }
+        if (item.getRegions() != null) {
+            for (String region : item.getRegions()) {
+                clearBit(regions, region, bit);
+            }
+        }
+        if (item.getItemType() != null) {
+            clearBit(itemTypes, item.getItemType(), bit);
+        }
+        if (item.getDeliveryCode() != null) {
+            clearBit(deliveryCodes, item.getDeliveryCode(), bit);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Long>> index, K key, Long id) {
+        Set<Long> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static <K> void clearBit(Map<K, BitSet> index, K key, int bit) {
+        BitSet bits = index.get(key);
+        if (bits != null) {
+            bits.clear(bit);
+        }
+    }
+
+    private static Set<String> grams(String name) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i < name.length(); i++) {
+            for (int n = 1; n <= MAX_GRAM && i + n <= name.length(); n++) {
+                grams.add(name.substring(i, i + n));
+            }
+        }
+        return grams;
+    }
+
+    private static BitSet union(Iterable<Set<Long>> idSets) {
+        BitSet bits = new BitSet();
+        for (Iterable<Long> ids : idSets) {
+            for (Long id : ids) {
+                bits.set(toBit(id));
+            }
+        }
+        return bits;
+    }
+
+    private static BitSet toBitSet(Set<Long> ids) {
+        BitSet bits = new BitSet();
+        for (Long id : ids) {
+            bits.set(toBit(id));
+        }
+        return bits;
+    }
+
+    private static int toBit(Long id) {
+        return Math.toIntExact(id);
+    }
+
+    static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -3,6 +3,7 @@ package hello.itemservice.web.form;
 import hello.itemservice.domain.item.DeliveryCode;
 import hello.itemservice.domain.item.Item;
 import hello.itemservice.domain.item.ItemRepository;
+import hello.itemservice.domain.item.ItemSearchCond;
 import hello.itemservice.domain.item.ItemType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -23,6 +24,9 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class FormItemController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int STREAM_BATCH_SIZE = 500;
+
     private final ItemRepository itemRepository;
 
     @ModelAttribute("regions")  //데이터셋을 넣을 이름을 한 번에 정해준다. 따라서 여러 군데에 데이터셋을 만들어 놓을 필요가 없다.자동으로 model.addAttribute해준다.
@@ -61,9 +65,28 @@ public class FormItemController {
 
 
     @GetMapping
-    public String items(Model model) {
-        List<Item> items = itemRepository.findAll();
+    public String items(@ModelAttribute("cond") ItemSearchCond cond,
+                        @RequestParam(required = false) Long cursor,
+                        @RequestParam(defaultValue = "20") int size, Model model) {
+        //한 번에 전체 목록을 담지 않고 cursor(마지막으로 본 상품 id) 다음부터 size개씩 보여준다.
+        //검색 조건이 있으면 전체를 훑지 않고 검색 인덱스로 찾는다.
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<Item> items = cond.isEmpty()
+                ? itemRepository.findPage(cursor, pageSize)
+                : itemRepository.findByCond(cond, cursor, pageSize);
         model.addAttribute("items", items);
+        model.addAttribute("size", pageSize);
+        if (items.size() == pageSize) {
+            model.addAttribute("nextCursor", items.get(items.size() - 1).getId());
+        }
+        return "form/items";
+    }
+
+    //전체 목록. 상품을 나눠 읽으면서 렌더링하고, 렌더링되는 대로 응답을 내보낸다(produce-partial-output-while-processing).
+    @GetMapping("/all")
+    public String allItems(Model model) {
+        model.addAttribute("cond", new ItemSearchCond());
+        model.addAttribute("items", itemRepository.findAllInBatches(STREAM_BATCH_SIZE));
         return "form/items";
     }
 
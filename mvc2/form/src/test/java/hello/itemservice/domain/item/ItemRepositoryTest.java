@@ -4,6 +4,10 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -46,6 +50,88 @@ class ItemRepositoryTest {
         assertThat(result).contains(item1, item2);
     }
 
+    @Test
+    void findPage() {
+        //given
+        Item item1 = itemRepository.save(new Item("item1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("item3", 30000, 30));
+
+        //when
+        List<Item> firstPage = itemRepository.findPage(null, 2);
+        List<Item> secondPage = itemRepository.findPage(firstPage.get(1).getId(), 2);
+
+        //then id 순서로 나눠서 조회된다.
+        assertThat(firstPage).containsExactly(item1, item2);
+        assertThat(secondPage).containsExactly(item3);
+        assertThat(itemRepository.findAllInBatches(2)).containsExactly(item1, item2, item3);
+    }
+
+    @Test
+    void findByCond() {
+        //given
+        Item book = new Item("Spring Book", 10000, 10);
+        book.setRegions(List.of("SEOUL", "BUSAN"));
+        book.setItemType(ItemType.BOOK);
+        book.setDeliveryCode("FAST");
+        Item food = new Item("사과 주스", 3000, 10);
+        food.setRegions(List.of("JEJU"));
+        food.setItemType(ItemType.FOOD);
+        food.setDeliveryCode("SLOW");
+        itemRepository.save(book);
+        itemRepository.save(food);
+
+        //when
+        ItemSearchCond byName = new ItemSearchCond();
+        byName.setName("ring b");
+        ItemSearchCond byPriceAndRegion = new ItemSearchCond();
+        byPriceAndRegion.setMaxPrice(5000);
+        byPriceAndRegion.setRegion("JEJU");
+        ItemSearchCond noMatch = new ItemSearchCond();
+        noMatch.setItemType(ItemType.BOOK);
+        noMatch.setDeliveryCode("SLOW");
+
+        //then
+        assertThat(itemRepository.findByCond(byName, null, 10)).containsExactly(book);
+        assertThat(itemRepository.findByCond(byPriceAndRegion, null, 10)).containsExactly(food);
+        assertThat(itemRepository.findByCond(noMatch, null, 10)).isEmpty();
+    }
+
+    @Test
+    void findByCondOutOfRangeCursor() {
+        //given
+        Item item = itemRepository.save(new Item("item1", 10000, 10));
+        ItemSearchCond all = new ItemSearchCond();
+
+        //when then 음수는 처음부터, int 범위를 넘으면 빈 목록 (findPage 와 같다)
+        assertThat(itemRepository.findByCond(all, -2L, 10)).containsExactly(item);
+        assertThat(itemRepository.findByCond(all, (long) Integer.MAX_VALUE - 1, 10)).isEmpty();
+        assertThat(itemRepository.findByCond(all, (long) Integer.MAX_VALUE, 10)).isEmpty();
+        assertThat(itemRepository.findByCond(all, Long.MAX_VALUE, 10)).isEmpty();
+        assertThat(itemRepository.findPage(Long.MAX_VALUE, 10)).isEmpty();
+    }
+
+    @Test
+    void findByCondAfterUpdate() {
+        //given
+        Item item = new Item("item1", 10000, 10);
+        item.setRegions(List.of("SEOUL"));
+        itemRepository.save(item);
+
+        //when
+        Item updateParam = new Item("item2", 20000, 30);
+        updateParam.setRegions(List.of("BUSAN"));
+        itemRepository.update(item.getId(), updateParam);
+
+        //then 수정 전 값으로는 더 이상 찾을 수 없다.
+        ItemSearchCond oldRegion = new ItemSearchCond();
+        oldRegion.setRegion("SEOUL");
+        ItemSearchCond newName = new ItemSearchCond();
+        newName.setName("item2");
+        assertThat(itemRepository.findByCond(oldRegion, null, 10)).isEmpty();
+        assertThat(itemRepository.findByCond(newName, null, 10)).containsExactly(item);
+    }
+
     @Test
     void updateItem() {
         //given
@@ -65,4 +151,33 @@ class ItemRepositoryTest {
         assertThat(findItem.getPrice()).isEqualTo(updateParam.getPrice());
         assertThat(findItem.getQuantity()).isEqualTo(updateParam.getQuantity());
     }
+
+    @Test
+    void concurrentSave() throws InterruptedException {
+        //given
+        int threadCount = 16;
+        int itemsPerThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        //when
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                try {
+                    for (int j = 0; j < itemsPerThread; j++) {
+                        itemRepository.save(new Item("item", 10000, 10));
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        //then 유실되거나 id가 중복된 상품이 없어야 한다.
+        List<Item> result = itemRepository.findAll();
+        assertThat(result).hasSize(threadCount * itemsPerThread);
+        assertThat(result).extracting(Item::getId).doesNotHaveDuplicates();
+    }
 }
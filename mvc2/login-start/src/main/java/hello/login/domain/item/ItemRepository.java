@@ -3,18 +3,20 @@ package hello.login.domain.item;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Repository
 public class ItemRepository {
 
-    private static final Map<Long, Item> store = new HashMap<>(); //static
-    private static long sequence = 0L; //static
+    //여러 요청 스레드가 동시에 save/update 하므로 HashMap, ++sequence 대신 동시성 안전한 자료구조를 사용한다.
+    private static final Map<Long, Item> store = new ConcurrentHashMap<>(); //static
+    private static final AtomicLong sequence = new AtomicLong(); //static
 
     public Item save(Item item) {
-        item.setId(++sequence);
+        item.setId(sequence.incrementAndGet());
         store.put(item.getId(), item);
         return item;
     }
@@ -24,14 +26,20 @@ public class ItemRepository {
     }
 
     public List<Item> findAll() {
-        return new ArrayList<>(store.values());
+        //ConcurrentHashMap의 values()는 락 없이 순회할 수 있다. 크기를 미리 잡아 한 번만 복사한다.
+        List<Item> result = new ArrayList<>(store.size());
+        result.addAll(store.values());
+        return result;
     }
 
     public void update(Long itemId, Item updateParam) {
-        Item findItem = findById(itemId);
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
+        //같은 상품에 대한 동시 수정이 필드 단위로 섞이지 않도록 키 단위로 원자적으로 수정한다.
+        store.computeIfPresent(itemId, (id, findItem) -> {
+            findItem.setItemName(updateParam.getItemName());
+            findItem.setPrice(updateParam.getPrice());
+            findItem.setQuantity(updateParam.getQuantity());
+            return findItem;
+        });
     }
 
     public void clearStore() {
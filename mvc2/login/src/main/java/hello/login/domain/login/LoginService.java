@@ -63,6 +63,7 @@
 package hello.login.domain.login;
 import hello.login.domain.member.Member;
 import hello.login.domain.member.MemberRepository;
+import hello.login.domain.member.PasswordHasher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -71,16 +72,19 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class LoginService {
     private final MemberRepository memberRepository;
+    private final PasswordHasher passwordHasher;
     /**
      * @return null이면 로그인 실패
      */
     public Member login(String loginId, String password) {
         log.info("서비스.loginId={}", loginId);
-        log.info("서비스.password={}", password);
 
-        return memberRepository.findByLoginId(loginId)
-                .filter(m -> m.getPassword().equals(password))
-                .orElse(null);
+        Member member = memberRepository.findByLoginId(loginId).orElse(null);
+        if (member == null) {
+            passwordHasher.matchDummy(password); //아이디가 없어도 비밀번호를 확인하는 만큼 시간을 쓴다.
+            return null;
+        }
+        return passwordHasher.matches(password, member.getPassword()) ? member : null;
     }
 }
 
@@ -0,0 +1,18 @@
+package hello.login.domain.member;
+
+/**
+ * 이미 사용 중인 loginId로 회원을 저장하려고 할 때 발생한다.
+ */
+public class DuplicateLoginIdException extends RuntimeException {
+
+    private final String loginId;
+
+    public DuplicateLoginIdException(String loginId) {
+        super("이미 사용 중인 로그인 ID입니다. loginId=" + loginId);
+        this.loginId = loginId;
+    }
+
+    public String getLoginId() {
+        return loginId;
+    }
+}
@@ -1,6 +1,7 @@
 package hello.login.domain.member;
 
 import lombok.Data;
+import lombok.ToString;
 
 import javax.validation.constraints.NotEmpty;
 
@@ -14,5 +15,6 @@ public class Member {
     @NotEmpty
     private String name; //사용자 이름
     @NotEmpty
+    @ToString.Exclude //저장 후에는 해시와 salt가 들어 있으므로 로그에 남기지 않는다.
     private String password;
 }
@@ -4,27 +4,107 @@
 
 package hello.login.domain.member;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Repository
+@RequiredArgsConstructor
 public class MemberRepository {
     //메모리에 사용할 예정
-    private static Map<Long, Member> store = new HashMap<>(); //static 사용
-    private static long sequence = 0L; //static 사용
-
+    //여러 회원이 동시에 가입할 수 있으므로 HashMap, ++sequence 대신 동시성을 지원하는 ConcurrentHashMap, AtomicLong을 사용한다.
+    private static final Map<Long, Member> store = new ConcurrentHashMap<>(); //static 사용
+    private static final Map<String, Member> loginIdIndex = new ConcurrentHashMap<>(); //loginId로 바로 찾기 위한 인덱스. 저장이 끝난 회원만 들어간다.
+    private static final Set<String> claimedLoginIds = ConcurrentHashMap.newKeySet(); //중복 확인용. 저장 중인 loginId도 들어간다.
+    private static final AtomicLong sequence = new AtomicLong(); //static 사용
+
+    private final PasswordHasher passwordHasher;
+
+    /**
+     * @throws DuplicateLoginIdException 이미 사용 중인 loginId
+     * @throws IllegalArgumentException loginId가 없음
+     */
     public Member save(Member member) {
-        member.setId(++sequence);
-        log.info("save: member={}", member);
+        checkLoginId(member);
+        String rawPassword = member.getPassword();
+        String hashedPassword = passwordHasher.hash(rawPassword); //비밀번호는 salt를 붙인 해시로만 보관한다. 오래 걸리므로 잠금 없이 먼저 계산한다.
+
+        member.setId(sequence.incrementAndGet());
+        member.setPassword(hashedPassword);
+        //add는 원자적이라서 같은 loginId로 동시에 가입해도 한 명만 성공한다.
+        if (!claimedLoginIds.add(member.getLoginId())) {
+            member.setId(null);
+            member.setPassword(rawPassword); //실패하면 폼에 다시 보여줄 수 있도록 되돌린다.
+            throw new DuplicateLoginIdException(member.getLoginId());
+        }
         store.put(member.getId(), member);
-
-        log.info("MemberRepository의 store 맵에 값이 저장됨. member={}", member);
+        loginIdIndex.put(member.getLoginId(), member);
+        log.info("save: id={}, loginId={}", member.getId(), member.getLoginId());
         return member;
     }
 
+    /**
+     * 회원을 한 번에 가입시킨다(일괄 등록). 비밀번호 해시는 여러 스레드로 나눠 계산하고, id는 한 번에 발급한다.
+     * 하나라도 loginId가 중복이면 아무도 저장하지 않는다. 모두 저장한 뒤에야 loginId로 찾을 수 있다.
+     *
+     * @throws DuplicateLoginIdException 이미 사용 중이거나 목록 안에서 중복된 loginId
+     * @throws IllegalArgumentException loginId가 없는 회원이 있음
+     */
+    public List<Member> saveAll(List<Member> members) {
+        members.forEach(MemberRepository::checkLoginId);
+        List<String> rawPasswords = members.stream().map(Member::getPassword).collect(Collectors.toList());
+        List<String> hashedPasswords = members.parallelStream()
+                .map(m -> passwordHasher.hash(m.getPassword()))
+                .collect(Collectors.toList());
+
+        long firstId = sequence.getAndAdd(members.size()) + 1;
+        int claimed = 0;
+        try {
+            for (; claimed < members.size(); claimed++) {
+                Member member = members.get(claimed);
+                member.setId(firstId + claimed);
+                member.setPassword(hashedPasswords.get(claimed));
+                if (!claimedLoginIds.add(member.getLoginId())) {
+                    throw new DuplicateLoginIdException(member.getLoginId());
+                }
+            }
+        } catch (DuplicateLoginIdException e) {
+            //이미 차지한 loginId를 돌려놓고 회원 정보도 저장 전으로 되돌린다.
+            for (int i = 0; i <= claimed; i++) {
+                Member member = members.get(i);
+                if (i < claimed) {
+                    claimedLoginIds.remove(member.getLoginId());
+                }
+                member.setId(null);
+                member.setPassword(rawPasswords.get(i));
+            }
+            throw e;
+        }
+
+        for (Member member : members) {
+            store.put(member.getId(), member);
+        }
+        //모두 저장한 뒤에 공개한다. 중간에 실패해서 되돌리는 회원이 로그인되지 않도록
+        for (Member member : members) {
+            loginIdIndex.put(member.getLoginId(), member);
+        }
+        log.info("saveAll: count={}, firstId={}", members.size(), firstId);
+        return members;
+    }
+
+    //ConcurrentHashMap은 null 키를 허용하지 않으므로 NPE 대신 잘못된 입력으로 알린다.
+    private static void checkLoginId(Member member) {
+        if (member.getLoginId() == null) {
+            throw new IllegalArgumentException("loginId가 없습니다. name=" + member.getName());
+        }
+    }
+
     public Member findById(Long id) {
         return store.get(id); //맵이기 때문에 ID를 넣으면 그에 바인딩된 객체가 반환된다.
     }
@@ -60,9 +140,15 @@ public class MemberRepository {
 
     public Optional<Member> findByLoginId(String loginId) {
 
-        return findAll().stream()
-                .filter(m -> m.getLoginId().equals(loginId))
-                .findFirst();
+        //전체 회원을 리스트로 복사해서 훑지 않고 인덱스에서 바로 찾는다.
+        if (loginId == null) {
+            return Optional.empty(); //ConcurrentHashMap은 null 키를 허용하지 않는다.
+        }
+        return Optional.ofNullable(loginIdIndex.get(loginId));
+
+//        return findAll().stream()
+//                .filter(m -> m.getLoginId().equals(loginId))
+//                .findFirst();
 
 
         // stream()을 사용해서 List를 가져온다.
@@ -82,6 +168,8 @@ public class MemberRepository {
 
     public void clearStore() {
         store.clear();
+        loginIdIndex.clear();
+        claimedLoginIds.clear();
     }
 
 
@@ -0,0 +1,84 @@
+package hello.login.domain.member;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * 비밀번호를 회원마다 다른 salt를 붙여 PBKDF2(HmacSHA256)로 해시한다.
+ * 저장 형식은 "반복횟수:salt:해시"(Base64)라서 반복 횟수 설정을 바꿔도 이전 해시를 그대로 확인할 수 있다.
+ */
+@Component
+public class PasswordHasher {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+    //없는 아이디로 로그인할 때도 같은 시간이 걸리도록 비교할 때 쓰는 해시
+    private final String dummyHash;
+
+    public PasswordHasher(@Value("${member.password.iterations:10000}") int iterations) {
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("반복 횟수는 1 이상이어야 합니다. iterations=" + iterations);
+        }
+        this.iterations = iterations;
+        this.dummyHash = hash("dummy-password");
+    }
+
+    public String hash(String rawPassword) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(rawPassword, salt, iterations);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return iterations + ":" + encoder.encodeToString(salt) + ":" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * 해시 값은 MessageDigest.isEqual로 비교한다. 앞에서부터 몇 바이트가 같은지에 따라 비교 시간이 달라지지 않는다.
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return false;
+        }
+        String[] parts = encodedPassword.split(":");
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            return MessageDigest.isEqual(expected, pbkdf2(rawPassword, salt, storedIterations));
+        } catch (IllegalArgumentException e) {
+            return false; //해시 형식이 아니다.
+        }
+    }
+
+    /**
+     * 회원이 없을 때 호출한다. 회원이 있을 때와 같은 계산을 해서 응답 시간으로 아이디 존재 여부를 알 수 없게 한다.
+     */
+    public void matchDummy(String rawPassword) {
+        matches(rawPassword == null ? "" : rawPassword, dummyHash);
+    }
+
+    private static byte[] pbkdf2(String rawPassword, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(rawPassword.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("비밀번호 해시를 만들 수 없습니다.", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
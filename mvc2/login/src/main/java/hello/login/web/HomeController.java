@@ -2,6 +2,7 @@ package hello.login.web;
 
 import hello.login.domain.member.Member;
 import hello.login.domain.member.MemberRepository;
+import hello.login.web.argumentresolver.LoginMember;
 import hello.login.web.session.SessionManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -121,7 +122,7 @@ public class HomeController {
 
 
     //servlet HTTP session 사용하기(스프링 세션 어트리뷰트 사용하기)
-    @GetMapping("/")
+//    @GetMapping("/")
     public String homeLoginV3Spring(@SessionAttribute(name = SessionConst.LOGIN_MEMBER, required = false) Member loginMember, Model model)  { //HttpServletRequest request 제거
 
 //        @SessionAttribute(name = SessionConst.LOGIN_MEMBER, required = false) Member member
@@ -147,4 +148,16 @@ public class HomeController {
     //      server.servlet.session.tracking-modes=cookie
 
 
+    //@LoginMember 사용하기. 세션 조회는 LoginMemberArgumentResolver가 하고, 컨트롤러는 회원만 받는다.
+    @GetMapping("/")
+    public String homeLoginV3ArgumentResolver(@LoginMember Member loginMember, Model model) {
+
+        //세션에 회원 데이터가 없으면 home으로 이동
+        if(loginMember == null) {
+            return "home";
+        }
+
+        model.addAttribute("member", loginMember);
+        return "loginHome"; //로그인 사용자 화면이 있는 전용 화면
+    }
 }
\ No newline at end of file
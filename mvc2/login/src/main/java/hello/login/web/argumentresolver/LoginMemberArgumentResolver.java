@@ -0,0 +1,53 @@
+package hello.login.web.argumentresolver;
+
+import hello.login.domain.member.Member;
+import hello.login.web.SessionConst;
+import hello.login.web.session.SessionManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+/**
+ * @LoginMember Member 파라미터에 로그인 회원을 넣어준다.
+ *
+ * 직접 만든 세션(SessionManager)을 먼저 보고, 없으면 서블릿 HttpSession(loginV3)을 본다.
+ * SessionManager는 조회 결과를 요청 속성에 보관하므로 인터셉터나 컨트롤러가 다시 조회해도 세션 저장소를 다시 찾지 않는다.
+ */
+@RequiredArgsConstructor
+public class LoginMemberArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final SessionManager sessionManager;
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        //파라미터 정보는 핸들러 메서드마다 한 번만 확인하고 스프링이 캐시해 둔다.
+        return parameter.hasParameterAnnotation(LoginMember.class)
+                && Member.class.isAssignableFrom(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        if (request == null) {
+            return null;
+        }
+
+        Object session = sessionManager.getSession(request);
+        if (session instanceof Member) {
+            return session;
+        }
+
+        HttpSession httpSession = request.getSession(false); //세션이 없으면 만들지 않는다.
+        if (httpSession == null) {
+            return null;
+        }
+        return httpSession.getAttribute(SessionConst.LOGIN_MEMBER);
+    }
+}
@@ -21,12 +21,29 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ItemController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int STREAM_BATCH_SIZE = 500;
+
     private final ItemRepository itemRepository;
 
     @GetMapping
-    public String items(Model model) {
-        List<Item> items = itemRepository.findAll();
+    public String items(@RequestParam(required = false) Long cursor,
+                        @RequestParam(defaultValue = "20") int size, Model model) {
+        //한 번에 전체 목록을 담지 않고 cursor(마지막으로 본 상품 id) 다음부터 size개씩 보여준다.
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<Item> items = itemRepository.findPage(cursor, pageSize);
         model.addAttribute("items", items);
+        model.addAttribute("size", pageSize);
+        if (items.size() == pageSize) {
+            model.addAttribute("nextCursor", items.get(items.size() - 1).getId());
+        }
+        return "items/items";
+    }
+
+    //전체 목록. 상품을 나눠 읽으면서 렌더링하고, 렌더링되는 대로 응답을 내보낸다(produce-partial-output-while-processing).
+    @GetMapping("/all")
+    public String allItems(Model model) {
+        model.addAttribute("items", itemRepository.findAllInBatches(STREAM_BATCH_SIZE));
         return "items/items";
     }
 
@@ -6,11 +6,13 @@ import hello.login.web.SessionConst;
 import hello.login.web.session.SessionManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
@@ -26,6 +28,7 @@ public class LoginController {
 
     private final LoginService loginService; //이 코드에서 final이 제거되면 생성자 주입이 되지 않는다. 즉, 의존성 주입이 되지 않는다. 따라서 nullPointerException이 발생한다.
     private final SessionManager sessionManager;
+    private final LoginRateLimiter loginRateLimiter;
 //
 //    public LoginController(LoginService loginService) {
 //        this.loginService = loginService;
@@ -142,12 +145,19 @@ public class LoginController {
 
 //서블릿 HTTP session
     @PostMapping("/login")
-    public String loginV3(@Valid @ModelAttribute LoginForm form, BindingResult bindingResult, HttpServletRequest request) {
+    public String loginV3(@Valid @ModelAttribute LoginForm form, BindingResult bindingResult, HttpServletRequest request, HttpServletResponse response) {
 
         if(bindingResult.hasErrors()) {
             return "login/loginForm";
         }
 
+        //시도 횟수를 넘으면 회원을 조회하지 않고 바로 돌려보낸다.
+        if (!loginRateLimiter.tryAcquire(form.getLoginId(), request.getRemoteAddr())) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            bindingResult.reject("loginThrottled", "로그인 시도가 너무 많습니다. 잠시 후 다시 시도해 주세요.");
+            return "login/loginForm";
+        }
+
         Member loginMember = loginService.login(form.getLoginId(), form.getPassword());
         log.info("login? {}", loginMember);
 
@@ -217,6 +227,12 @@ public class LoginController {
 
     }
 
+    @ResponseBody
+    @GetMapping("/login/rate-limit")
+    public LoginRateLimitMetrics rateLimitMetrics() {
+        return loginRateLimiter.getMetrics();
+    }
+
 
 
 
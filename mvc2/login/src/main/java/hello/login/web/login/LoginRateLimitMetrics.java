@@ -0,0 +1,16 @@
+package hello.login.web.login;
+
+import lombok.Data;
+
+/**
+ * LoginRateLimiter 상태. /login/rate-limit 에서 확인할 수 있다.
+ */
+@Data
+public class LoginRateLimitMetrics {
+
+    private final long allowed;
+    private final long throttled;
+    private final long evicted; //버킷 수 제한 때문에 지운 버킷 수
+    private final int loginIdEntries;
+    private final int ipEntries;
+}
@@ -0,0 +1,181 @@
+package hello.login.web.login;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 로그인 시도 제한. loginId마다, 클라이언트 IP마다 토큰 버킷을 하나씩 두고 시도할 때마다 토큰을 하나 쓴다.
+ * 토큰은 시간이 지나면 다시 채워진다. 토큰이 없으면 회원 조회나 비밀번호 확인 없이 바로 거절한다.
+ *
+ * 버킷 하나는 AtomicLong 하나(마지막 충전 시각 | 남은 토큰)라서 잠금 없이 CAS로 갱신한다.
+ * 버킷 수가 maxEntries에 닿으면 가득 찬(한동안 시도가 없던) 버킷부터 지운다. 가득 찬 버킷은 없는 버킷과 같으므로 지워도 제한이 풀리지 않는다.
+ */
+@Component
+public class LoginRateLimiter {
+
+    //토큰 1개 = 1000. 분당 충전량을 밀리초 단위로 나눠도 소수점이 버려지지 않도록 천분의 일 단위로 센다.
+    private static final long TOKEN = 1000;
+    private static final int TOKEN_BITS = 20;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long MILLIS_PER_MINUTE = 60_000;
+
+    private final Buckets loginIdBuckets;
+    private final Buckets ipBuckets;
+    private final int maxEntries;
+    private final Clock clock;
+    private final long epochMillis;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    @Autowired
+    public LoginRateLimiter(@Value("${login.rate-limit.login-id.capacity:5}") int loginIdCapacity,
+                            @Value("${login.rate-limit.login-id.refill-per-minute:5}") int loginIdRefillPerMinute,
+                            @Value("${login.rate-limit.ip.capacity:20}") int ipCapacity,
+                            @Value("${login.rate-limit.ip.refill-per-minute:20}") int ipRefillPerMinute,
+                            @Value("${login.rate-limit.max-entries:100000}") int maxEntries) {
+        this(loginIdCapacity, loginIdRefillPerMinute, ipCapacity, ipRefillPerMinute, maxEntries, Clock.systemUTC());
+    }
+
+    LoginRateLimiter(int loginIdCapacity, int loginIdRefillPerMinute, int ipCapacity, int ipRefillPerMinute,
+                     int maxEntries, Clock clock) {
+        this.loginIdBuckets = new Buckets(loginIdCapacity, loginIdRefillPerMinute);
+        this.ipBuckets = new Buckets(ipCapacity, ipRefillPerMinute);
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.epochMillis = clock.millis();
+    }
+
+    /**
+     * @return 로그인을 시도해도 되면 true. false면 회원을 조회하지 말고 거절한다.
+     */
+    public boolean tryAcquire(String loginId, String clientIp) {
+        long now = Math.max(clock.millis() - epochMillis, 0);
+        //IP를 먼저 본다. 여러 loginId를 돌려가며 시도하는 경우 loginId 버킷을 만들기 전에 막는다.
+        String ipKey = String.valueOf(clientIp);
+        boolean acquired = ipBuckets.tryAcquire(ipKey, now);
+        if (acquired && !loginIdBuckets.tryAcquire(String.valueOf(loginId), now)) {
+            //시도하지 않았으므로 IP 토큰은 돌려준다. 잠긴 loginId를 두드리는 요청이 같은 IP의 다른 사용자까지 막지 않도록
+            ipBuckets.refund(ipKey, now);
+            acquired = false;
+        }
+        if (acquired) {
+            allowed.increment();
+        } else {
+            throttled.increment();
+        }
+        return acquired;
+    }
+
+    public LoginRateLimitMetrics getMetrics() {
+        return new LoginRateLimitMetrics(allowed.sum(), throttled.sum(), evicted.sum(),
+                loginIdBuckets.map.size(), ipBuckets.map.size());
+    }
+
+    private final class Buckets {
+
+        private final Map<String, AtomicLong> map = new ConcurrentHashMap<>();
+        private final AtomicBoolean evicting = new AtomicBoolean();
+        private final long capacity; //천분의 일 토큰 단위
+        private final long refillPerMinute; //천분의 일 토큰 단위
+        private final long millisToFull;
+
+        Buckets(int capacity, int refillPerMinute) {
+            if (capacity <= 0 || capacity * TOKEN > TOKEN_MASK) {
+                throw new IllegalArgumentException("capacity는 1 ~ " + TOKEN_MASK / TOKEN + " 사이여야 합니다. capacity=" + capacity);
+            }
+            if (refillPerMinute <= 0) {
+                throw new IllegalArgumentException("refillPerMinute는 1 이상이어야 합니다. refillPerMinute=" + refillPerMinute);
+            }
+            this.capacity = capacity * TOKEN;
+            this.refillPerMinute = refillPerMinute * TOKEN;
+            this.millisToFull = (this.capacity * MILLIS_PER_MINUTE + this.refillPerMinute - 1) / this.refillPerMinute;
+        }
+
+        boolean tryAcquire(String key, long now) {
+            AtomicLong bucket = map.get(key);
+            if (bucket == null) {
+                if (map.size() >= maxEntries) {
+                    evict(now);
+                }
+                bucket = map.computeIfAbsent(key, k -> new AtomicLong(pack(now, capacity)));
+            }
+            while (true) {
+                long state = bucket.get();
+                long tokens = available(state, now);
+                if (tokens < TOKEN) {
+                    return false;
+                }
+                if (bucket.compareAndSet(state, pack(now, tokens - TOKEN))) {
+                    return true;
+                }
+                //다른 스레드가 먼저 바꿨으면 다시 읽는다.
+            }
+        }
+
+        //tryAcquire로 쓴 토큰을 하나 돌려준다. 그사이 버킷이 지워졌으면 가득 찬 것과 같으므로 그대로 둔다.
+        void refund(String key, long now) {
+            AtomicLong bucket = map.get(key);
+            if (bucket == null) {
+                return;
+            }
+            while (true) {
+                long state = bucket.get();
+                long tokens = Math.min(capacity, available(state, now) + TOKEN);
+                if (bucket.compareAndSet(state, pack(now, tokens))) {
+                    return;
+                }
+            }
+        }
+
+        private long available(long state, long now) {
+            long elapsed = now - (state >>> TOKEN_BITS);
+            long tokens = state & TOKEN_MASK;
+            if (elapsed <= 0) {
+                return tokens;
+            }
+            if (elapsed >= millisToFull) {
+                return capacity;
+            }
+            return Math.min(capacity, tokens + elapsed * refillPerMinute / MILLIS_PER_MINUTE);
+        }
+
+        //가득 찬 버킷을 먼저 지우고, 그래도 많으면 앞에서부터 지운다. 한 번에 한 스레드만 정리하고 나머지는 기다리지 않는다.
+        private void evict(long now) {
+            if (!evicting.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                for (Map.Entry<String, AtomicLong> entry : map.entrySet()) {
+                    if (available(entry.getValue().get(), now) == capacity && map.remove(entry.getKey(), entry.getValue())) {
+                        evicted.increment();
+                    }
+                }
+                int target = maxEntries - maxEntries / 10;
+                Iterator<String> keys = map.keySet().iterator();
+                while (map.size() >= target && keys.hasNext()) {
+                    if (map.remove(keys.next()) != null) {
+                        evicted.increment();
+                    }
+                }
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    //상위 44비트: epochMillis 이후 경과 시간(ms), 하위 20비트: 남은 토큰
+    private static long pack(long millis, long tokens) {
+        return (millis << TOKEN_BITS) | tokens;
+    }
+}
@@ -1,5 +1,6 @@
 package hello.login.web.member;
 
+import hello.login.domain.member.DuplicateLoginIdException;
 import hello.login.domain.member.Member;
 import hello.login.domain.member.MemberRepository;
 import lombok.RequiredArgsConstructor;
@@ -39,7 +40,13 @@ public class MemberController {
             return "members/addMemberForm";
         }
 
-        memberRepository.save(member);
+        try {
+            memberRepository.save(member);
+        } catch (DuplicateLoginIdException e) {
+            //중복 확인은 저장소가 원자적으로 하므로, 미리 조회해 보지 않고 저장에 실패했을 때 알려준다.
+            result.rejectValue("loginId", "duplicate", "이미 사용 중인 로그인 ID입니다.");
+            return "members/addMemberForm";
+        }
         return "redirect:/";
     }
 
@@ -0,0 +1,51 @@
+package hello.login.web.session;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * 프로세스 안의 맵에 세션을 보관한다. 재시작하면 세션이 사라진다.
+ */
+@Component
+public class MapSessionStore implements SessionStore {
+
+    //hashMap을 사용해도 동작하기는 한다. 하지만 여기서는 ConcurrentHashMap을 사용한다.
+    // 동시성 이슈 때문이다. 동시에 여러 요청을 처리해야 하는 경우, 여러 스레드가 접근하게 되므로, 동시성을 처리에 적합한 도구를 사용해야 한다.
+    private final Map<String, StoredSession> store = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(StoredSession session) {
+        store.put(session.getId(), session);
+    }
+
+    @Override
+    public StoredSession find(String sessionId) {
+        return store.get(sessionId);
+    }
+
+    @Override
+    public void touch(String sessionId, long lastAccessedAt) {
+        StoredSession session = store.get(sessionId);
+        if (session != null) {
+            session.setLastAccessedAt(lastAccessedAt);
+        }
+    }
+
+    @Override
+    public boolean remove(String sessionId) {
+        return store.remove(sessionId) != null;
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public void forEach(Consumer<StoredSession> action) {
+        store.values().forEach(action);
+    }
+}
@@ -0,0 +1,558 @@
+package hello.login.web.session;
+
+import hello.login.domain.member.Member;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 메모리 맵 파일에 세션을 보관한다. spring.profiles.active=file-session 으로 선택한다.
+ *
+ * 파일은 고정 크기 슬롯 배열이고 세션 id(UUID)의 해시로 슬롯을 찾는다(선형 탐사).
+ * 재시작해도 세션이 남아 있고, 같은 파일을 연 여러 JVM이 세션을 함께 쓴다.
+ *
+ * 세션 생성/제거는 파일 잠금(FileLock)으로 프로세스 사이에서도 한 번에 하나씩만 한다.
+ * 조회는 잠금 없이 하고, 슬롯마다 있는 seq 값으로 쓰는 도중의 슬롯을 읽지 않았는지 확인한다(seqlock).
+ * seq가 홀수면 누군가 그 슬롯을 쓰는 중이다.
+ *
+ * 쓰는 도중에 프로세스가 죽으면 그 슬롯의 seq가 홀수로 남는다. 파일을 열 때, 그리고 조회 중에 STALE_WRITE_NANOS 넘게
+ * 홀수인 슬롯을 만나면 파일 잠금을 잡고 그 슬롯을 삭제 표시로 바꾼다. (내용이 반만 쓰였을 수 있다)
+ *
+ * 세션 값에는 비밀번호(해시)를 저장하지 않는다. 여러 프로세스가 공유하는 파일이고 세션에는 필요 없다.
+ */
+@Slf4j
+@Primary
+@Profile("file-session")
+@Component
+public class MappedFileSessionStore implements SessionStore {
+
+    private static final int MAGIC = 0x53455353; //"SESS"
+    private static final int FORMAT_VERSION = 1;
+
+    //헤더 구조: magic(int) | formatVersion(int) | slotCount(int) | size(int)
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_SLOT_COUNT = 8;
+    private static final int HEADER_SIZE_FIELD = 12;
+
+    //슬롯 구조: seq(int) | state(int) | idMost(long) | idLeast(long) | createdAt(long) | lastAccessedAt(long) | payloadLength(int) | payload
+    private static final int SLOT_SIZE = 256;
+    private static final int SEQ = 0;
+    private static final int STATE = 4;
+    private static final int ID_MOST = 8;
+    private static final int ID_LEAST = 16;
+    private static final int CREATED_AT = 24;
+    private static final int LAST_ACCESSED_AT = 32;
+    private static final int PAYLOAD_LENGTH = 40;
+    private static final int PAYLOAD = 44;
+    private static final int MAX_PAYLOAD = SLOT_SIZE - PAYLOAD;
+
+    private static final int EMPTY = 0;
+    private static final int USED = 1;
+    private static final int DELETED = 2; //탐사가 끊기지 않도록 남겨두는 표시
+
+    //Member 필드 중 값이 있는 것 표시
+    private static final int HAS_ID = 1;
+    private static final int HAS_LOGIN_ID = 1 << 1;
+    private static final int HAS_NAME = 1 << 2;
+    private static final int HAS_PASSWORD = 1 << 3; //예전 파일에만 있다. 읽고 버린다.
+
+    //정상적인 쓰기는 수 마이크로초 안에 끝난다. 이보다 오래 seq가 홀수면 쓰던 프로세스가 죽은 것으로 본다.
+    private static final long STALE_WRITE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    //다른 프로세스와 공유하는 값은 원자적으로 읽고 쓴다. ByteBuffer 기본 바이트 순서(BIG_ENDIAN)에 맞춘다.
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    //FileLock은 JVM 단위라서 같은 JVM 안에서 같은 파일을 두 번 잠글 수 없다. JVM 안에서는 이 모니터로 먼저 줄을 세운다.
+    private static final ConcurrentHashMap<Path, Object> FILE_MONITORS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final Object monitor;
+
+    public MappedFileSessionStore(@Value("${my-session.file:./session-data/sessions.dat}") String file,
+                                  @Value("${my-session.file-slots:262144}") int slots) throws IOException {
+        if (slots <= 0 || (long) slots * SLOT_SIZE + HEADER_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("슬롯 수가 올바르지 않습니다. slots=" + slots);
+        }
+        this.file = Paths.get(file).toAbsolutePath().normalize();
+        if (this.file.getParent() != null) {
+            Files.createDirectories(this.file.getParent());
+        }
+        this.monitor = FILE_MONITORS.computeIfAbsent(this.file, key -> new Object());
+        this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            this.slotCount = openHeader(slots);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        recover();
+        log.info("[file-session] file={}, slots={}, sessions={}", this.file, slotCount, size());
+    }
+
+    //쓰다가 멈춘 슬롯을 정리하고 세션 수를 다시 센다. (addSize 전에 죽었을 수도 있다)
+    private void recover() {
+        writeLocked(() -> {
+            List<int[]> odd = new ArrayList<>(); //{slot, seq}
+            for (int slot = 0; slot < slotCount; slot++) {
+                int seq = (int) INT.getVolatile(buffer, base(slot) + SEQ);
+                if ((seq & 1) != 0) {
+                    odd.add(new int[]{slot, seq});
+                }
+            }
+            if (!odd.isEmpty()) {
+                //다른 프로세스가 지금 쓰고 있는 중일 수도 있으므로 한 번 기다려 본다.
+                sleepNanos(STALE_WRITE_NANOS);
+                for (int[] entry : odd) {
+                    if ((int) INT.getVolatile(buffer, base(entry[0]) + SEQ) == entry[1]) {
+                        freeStaleSlot(entry[0], entry[1]);
+                    }
+                }
+            }
+            recountSize();
+            return null;
+        });
+    }
+
+    //처음 만든 파일이면 헤더를 쓰고, 이미 있는 파일이면 그 파일의 슬롯 수를 따른다.
+    private int openHeader(int slots) throws IOException {
+        synchronized (monitor) {
+            try (FileLock ignored = channel.lock(0, HEADER_SIZE, false)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                header.flip();
+                if (header.remaining() < 16 || header.getInt(0) == 0) {
+                    header.clear();
+                    header.putInt(0, MAGIC).putInt(4, FORMAT_VERSION).putInt(HEADER_SLOT_COUNT, slots).putInt(HEADER_SIZE_FIELD, 0);
+                    channel.write(header, 0);
+                    channel.force(true);
+                    return slots;
+                }
+                if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) {
+                    throw new IllegalStateException("세션 파일 형식이 아닙니다. file=" + file);
+                }
+                int existing = header.getInt(HEADER_SLOT_COUNT);
+                if (existing != slots) {
+                    log.warn("[file-session] 파일의 슬롯 수({})를 사용합니다. 설정값={}", existing, slots);
+                }
+                return existing;
+            }
+        }
+    }
+
+    @Override
+    public void save(StoredSession session) {
+        UUID id = UUID.fromString(session.getId());
+        byte[] payload = encode(session.getValue());
+        writeLocked(() -> {
+            int target = -1;
+            int firstFree = -1;
+            int start = home(id);
+            for (int i = 0; i < slotCount; i++) {
+                int slot = (start + i) % slotCount;
+                int state = state(slot);
+                if (state == USED && matches(slot, id)) {
+                    target = slot;
+                    break;
+                }
+                if (state != USED && firstFree < 0) {
+                    firstFree = slot;
+                }
+                if (state == EMPTY) {
+                    break;
+                }
+            }
+            boolean added = target < 0;
+            if (added) {
+                if (firstFree < 0) {
+                    throw new IllegalStateException("세션 파일이 가득 찼습니다. slots=" + slotCount);
+                }
+                target = firstFree;
+            }
+
+            int base = base(target);
+            int seq = beginWrite(target, true);
+            buffer.putLong(base + ID_MOST, id.getMostSignificantBits());
+            buffer.putLong(base + ID_LEAST, id.getLeastSignificantBits());
+            buffer.putLong(base + CREATED_AT, session.getCreatedAt());
+            buffer.putLong(base + LAST_ACCESSED_AT, session.getLastAccessedAt());
+            buffer.putInt(base + PAYLOAD_LENGTH, payload == null ? -1 : payload.length);
+            if (payload != null) {
+                ByteBuffer slot = buffer.duplicate();
+                slot.position(base + PAYLOAD);
+                slot.put(payload);
+            }
+            buffer.putInt(base + STATE, USED);
+            endWrite(base, seq);
+
+            if (added) {
+                addSize(1);
+            }
+            return added;
+        });
+    }
+
+    @Override
+    public StoredSession find(String sessionId) {
+        UUID id = parse(sessionId);
+        if (id == null) {
+            return null;
+        }
+        int slot = locate(id);
+        if (slot < 0) {
+            return null;
+        }
+        StoredSession session = read(slot);
+        //찾은 뒤 읽기 전에 다른 세션으로 바뀌었을 수 있다.
+        return session != null && session.getId().equals(id.toString()) ? session : null;
+    }
+
+    @Override
+    public void touch(String sessionId, long lastAccessedAt) {
+        UUID id = parse(sessionId);
+        if (id == null) {
+            return;
+        }
+        int slot = locate(id);
+        if (slot < 0) {
+            return;
+        }
+        //시각 하나만 바꾸므로 파일 잠금 없이 슬롯 seq만 잡는다.
+        int base = base(slot);
+        int seq = beginWrite(slot, false);
+        if (seq < 0) {
+            return; //쓰다가 멈춘 슬롯. 정리는 조회할 때 한다.
+        }
+        if (buffer.getInt(base + STATE) == USED && matches(slot, id)) {
+            LONG.setOpaque(buffer, base + LAST_ACCESSED_AT, lastAccessedAt);
+        }
+        endWrite(base, seq);
+    }
+
+    @Override
+    public boolean remove(String sessionId) {
+        UUID id = parse(sessionId);
+        if (id == null) {
+            return false;
+        }
+        return writeLocked(() -> {
+            int slot = locate(id);
+            if (slot < 0) {
+                return false;
+            }
+            //다음 슬롯이 비어 있으면 이 슬롯을 거쳐 가는 탐사가 없으므로 삭제 표시 대신 비운다. 앞쪽의 삭제 표시도 같이 정리한다.
+            int next = (slot + 1) % slotCount;
+            int state = state(next) == EMPTY ? EMPTY : DELETED;
+            setState(slot, state);
+            if (state == EMPTY) {
+                for (int prev = (slot - 1 + slotCount) % slotCount; prev != slot && state(prev) == DELETED;
+                     prev = (prev - 1 + slotCount) % slotCount) {
+                    setState(prev, EMPTY);
+                }
+            }
+            addSize(-1);
+            return true;
+        });
+    }
+
+    @Override
+    public int size() {
+        return (int) INT.getVolatile(buffer, HEADER_SIZE_FIELD);
+    }
+
+    @Override
+    public void forEach(Consumer<StoredSession> action) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (state(slot) == USED) {
+                StoredSession session = read(slot);
+                if (session != null) {
+                    action.accept(session);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> T writeLocked(WriteAction<T> action) {
+        synchronized (monitor) {
+            try (FileLock ignored = channel.lock(0, HEADER_SIZE, false)) {
+                return action.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    //id가 있는 슬롯 번호. 없으면 -1
+    private int locate(UUID id) {
+        int start = home(id);
+        for (int i = 0; i < slotCount; i++) {
+            int slot = (start + i) % slotCount;
+            int state = state(slot);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == USED && matches(slot, id)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private StoredSession read(int slot) {
+        int base = base(slot);
+        byte[] payload = new byte[MAX_PAYLOAD];
+        long waitingSince = 0;
+        while (true) {
+            int seq = (int) INT.getAcquire(buffer, base + SEQ);
+            if ((seq & 1) != 0) {
+                if (waitingSince == 0) {
+                    waitingSince = System.nanoTime();
+                } else if (System.nanoTime() - waitingSince > STALE_WRITE_NANOS) {
+                    writeLocked(() -> {
+                        if ((int) INT.getVolatile(buffer, base + SEQ) == seq) {
+                            freeStaleSlot(slot, seq);
+                            recountSize();
+                        }
+                        return null;
+                    });
+                    return null;
+                }
+                Thread.onSpinWait();
+                continue;
+            }
+            int state = buffer.getInt(base + STATE);
+            long most = buffer.getLong(base + ID_MOST);
+            long least = buffer.getLong(base + ID_LEAST);
+            long createdAt = buffer.getLong(base + CREATED_AT);
+            long lastAccessedAt = (long) LONG.getOpaque(buffer, base + LAST_ACCESSED_AT);
+            int length = buffer.getInt(base + PAYLOAD_LENGTH);
+            if (length > 0 && length <= MAX_PAYLOAD) {
+                ByteBuffer source = buffer.duplicate();
+                source.position(base + PAYLOAD);
+                source.get(payload, 0, length);
+            }
+            VarHandle.loadLoadFence();
+            if ((int) INT.getAcquire(buffer, base + SEQ) != seq) {
+                continue; //읽는 도중에 바뀌었다.
+            }
+            if (state != USED) {
+                return null;
+            }
+            Object value = length < 0 ? null : decode(ByteBuffer.wrap(payload, 0, length));
+            return new StoredSession(new UUID(most, least).toString(), value, createdAt, lastAccessedAt);
+        }
+    }
+
+    /**
+     * 슬롯 seq를 짝수 -> 홀수로 바꿔 잡는다. 다른 프로세스가 같은 슬롯을 쓰고 있으면 기다린다.
+     * @param takeOver STALE_WRITE_NANOS 넘게 홀수면 죽은 쓰기로 보고 넘겨받는다. 파일 잠금을 잡고 슬롯 전체를 쓸 때만 쓴다.
+     * @return 잡은 seq. takeOver 가 false 인데 오래 기다렸으면 -1
+     */
+    private int beginWrite(int slot, boolean takeOver) {
+        int base = base(slot);
+        long waitingSince = 0;
+        while (true) {
+            int seq = (int) INT.getVolatile(buffer, base + SEQ);
+            if ((seq & 1) == 0) {
+                if (INT.compareAndSet(buffer, base + SEQ, seq, seq + 1)) {
+                    return seq;
+                }
+                continue;
+            }
+            if (waitingSince == 0) {
+                waitingSince = System.nanoTime();
+            } else if (System.nanoTime() - waitingSince > STALE_WRITE_NANOS) {
+                if (!takeOver) {
+                    return -1;
+                }
+                log.warn("[file-session] 쓰다가 멈춘 슬롯을 넘겨받습니다. slot={}", slot);
+                INT.compareAndSet(buffer, base + SEQ, seq, seq + 1);
+                continue;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private void endWrite(int base, int seq) {
+        INT.setRelease(buffer, base + SEQ, seq + 2);
+    }
+
+    private int state(int slot) {
+        return (int) INT.getAcquire(buffer, base(slot) + STATE);
+    }
+
+    private void setState(int slot, int state) {
+        int base = base(slot);
+        int seq = beginWrite(slot, true);
+        buffer.putInt(base + STATE, state);
+        endWrite(base, seq);
+    }
+
+    private boolean matches(int slot, UUID id) {
+        int base = base(slot);
+        return buffer.getLong(base + ID_MOST) == id.getMostSignificantBits()
+                && buffer.getLong(base + ID_LEAST) == id.getLeastSignificantBits();
+    }
+
+    //파일 잠금 안에서 부른다. 반만 쓰였을 수 있으므로 내용은 버리고 삭제 표시로 바꾼다. (탐사가 끊기지 않게)
+    private void freeStaleSlot(int slot, int seq) {
+        log.warn("[file-session] 쓰다가 멈춘 슬롯을 비웁니다. slot={}", slot);
+        int base = base(slot);
+        buffer.putInt(base + STATE, DELETED);
+        buffer.putInt(base + PAYLOAD_LENGTH, -1);
+        INT.setRelease(buffer, base + SEQ, seq + 1);
+    }
+
+    private void recountSize() {
+        int used = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (state(slot) == USED) {
+                used++;
+            }
+        }
+        INT.setVolatile(buffer, HEADER_SIZE_FIELD, used);
+    }
+
+    private void addSize(int delta) {
+        INT.getAndAdd(buffer, HEADER_SIZE_FIELD, delta);
+    }
+
+    private int home(UUID id) {
+        long hash = (id.getMostSignificantBits() ^ id.getLeastSignificantBits()) * 0x9E3779B97F4A7C15L;
+        return (int) Long.remainderUnsigned(hash >>> 16, slotCount);
+    }
+
+    private static int base(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    //쿠키 값은 사용자가 바꿀 수 있으므로 UUID가 아니면 없는 세션으로 본다.
+    private static UUID parse(String sessionId) {
+        if (sessionId == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(sessionId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Member를 필드 표시(byte) + id(long) + 문자열(길이 short + UTF-8) 순서로 직렬화한다.
+     * 자바 직렬화보다 훨씬 작고, 클래스 정보가 들어가지 않는다. 비밀번호는 넣지 않는다.
+     */
+    private static byte[] encode(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof Member)) {
+            throw new IllegalArgumentException("파일 세션 저장소에는 Member만 저장할 수 있습니다. type=" + value.getClass().getName());
+        }
+        Member member = (Member) value;
+        byte[] loginId = bytes(member.getLoginId());
+        byte[] name = bytes(member.getName());
+
+        int flags = (member.getId() != null ? HAS_ID : 0) | (loginId != null ? HAS_LOGIN_ID : 0)
+                | (name != null ? HAS_NAME : 0);
+        int length = 1 + (member.getId() != null ? 8 : 0) + length(loginId) + length(name);
+        if (length > MAX_PAYLOAD) {
+            throw new IllegalArgumentException("세션 값이 너무 큽니다. length=" + length + ", max=" + MAX_PAYLOAD);
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(length);
+        out.put((byte) flags);
+        if (member.getId() != null) {
+            out.putLong(member.getId());
+        }
+        putString(out, loginId);
+        putString(out, name);
+        return out.array();
+    }
+
+    private static Member decode(ByteBuffer in) {
+        int flags = in.get();
+        Member member = new Member();
+        if ((flags & HAS_ID) != 0) {
+            member.setId(in.getLong());
+        }
+        if ((flags & HAS_LOGIN_ID) != 0) {
+            member.setLoginId(getString(in));
+        }
+        if ((flags & HAS_NAME) != 0) {
+            member.setName(getString(in));
+        }
+        if ((flags & HAS_PASSWORD) != 0) {
+            getString(in); //예전 형식. 세션에는 비밀번호를 두지 않는다.
+        }
+        return member;
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : 2 + bytes.length;
+    }
+
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        if (bytes != null) {
+            out.putShort((short) bytes.length);
+            out.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface WriteAction<T> {
+        T run();
+    }
+}
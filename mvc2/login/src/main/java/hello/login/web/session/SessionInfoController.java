@@ -1,5 +1,6 @@
 package hello.login.web.session;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -10,8 +11,11 @@ import java.util.Date;
 
 @Slf4j
 @RestController
+@RequiredArgsConstructor
 public class SessionInfoController {
 
+    private final SessionManager sessionManager;
+
     @GetMapping("/session-info")
     public String sessionInfo(HttpServletRequest request) {
         HttpSession session = request.getSession(false); //요청에서 세션을 가져온다. false인 경우 세션을 만들지 않고 null을 반환한다.
@@ -33,6 +37,12 @@ public class SessionInfoController {
 
 
     }
+
+    //직접 만든 세션 관리자(SessionManager)의 현재 세션 수, 만료/제거 수, 정리 시간
+    @GetMapping("/session-info/metrics")
+    public SessionMetrics sessionMetrics() {
+        return sessionManager.getMetrics();
+    }
 }
 
 
@@ -1,28 +1,112 @@
 package hello.login.web.session;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.Arrays;
-import java.util.Map;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Queue;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 세션관리
+ *
+ * HttpSession처럼 마지막 요청 시각부터 maxInactiveInterval이 지나면 세션을 만료시키고(슬라이딩 만료),
+ * 계속 사용하더라도 생성 후 maxLifetime이 지나면 만료시킨다. 세션 수가 maxSessions를 넘으면
+ * 가장 오래 사용하지 않은 세션부터 제거한다.
+ *
+ * 세션은 SessionStore에 보관한다. 만료 시각과 제거 후보는 이 프로세스가 만든 세션(과 시작할 때 저장소에 있던 세션)만 관리하고,
+ * 다른 프로세스가 만든 세션은 조회할 때 만료 여부를 확인한다.
  */
-
+@Slf4j
 @Component
 public class SessionManager {
 
     public static final String SESSION_COOKIE_NAME = "MY_SESSION_ID";
-    //세션을 저장할 세션 저장소 생성
-    private Map<String, Object> sessionStore = new ConcurrentHashMap<>();
 
-    //hashMap을 사용해도 동작하기는 한다. 하지만 여기서는 ConcurrentHashMap을 사용한다.
-    // 동시성 이슈 때문이다. 동시에 여러 요청을 처리해야 하는 경우, 여러 스레드가 접근하게 되므로, 동시성을 처리에 적합한 도구를 사용해야 한다.
+    //한 요청 안에서 찾은 세션을 보관하는 요청 속성. 인터셉터, ArgumentResolver, 컨트롤러가 같은 결과를 쓴다.
+    private static final String RESOLVED_SESSION = SessionManager.class.getName() + ".RESOLVED_SESSION";
+    private static final Object NO_SESSION = new Object();
+
+    private static final long SWEEP_TICK_MILLIS = 1000;
+
+    //세션을 저장할 세션 저장소
+    private final SessionStore sessionStore;
+
+    //세션 수가 가득 찼을 때 제거할 세션을 고르는 큐. 생성 순서대로 들어 있고, 큐에 넣은 뒤 사용된 세션은 한 번 더 기회를 준다(CLOCK 방식의 근사 LRU).
+    private final Queue<EvictionCandidate> evictionQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger evictionQueueSize = new AtomicInteger();
+    //만료 시각 순서로 세션 id를 찾기 위한 타이밍 휠. 전체 세션을 훑지 않고 만료될 세션만 확인한다.
+    private final TimingWheel<String> expirationWheel;
+
+    private final long maxInactiveMillis;
+    private final long maxLifetimeMillis;
+    private final int maxSessions;
+    private final Clock clock;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder totalSweepMicros = new LongAdder();
+    private volatile long lastSweepMicros;
+
+    private ScheduledExecutorService sweeper;
+
+    public SessionManager() {
+        this(new MapSessionStore(), Duration.ofMinutes(30), Duration.ofHours(12), 100_000, Clock.systemUTC());
+    }
+
+    @Autowired
+    public SessionManager(SessionStore sessionStore,
+                          @Value("${my-session.max-inactive-seconds:1800}") long maxInactiveSeconds,
+                          @Value("${my-session.max-lifetime-seconds:43200}") long maxLifetimeSeconds,
+                          @Value("${my-session.max-sessions:100000}") int maxSessions) {
+        this(sessionStore, Duration.ofSeconds(maxInactiveSeconds), Duration.ofSeconds(maxLifetimeSeconds), maxSessions, Clock.systemUTC());
+    }
+
+    SessionManager(Duration maxInactiveInterval, Duration maxLifetime, int maxSessions, Clock clock) {
+        this(new MapSessionStore(), maxInactiveInterval, maxLifetime, maxSessions, clock);
+    }
+
+    SessionManager(SessionStore sessionStore, Duration maxInactiveInterval, Duration maxLifetime, int maxSessions, Clock clock) {
+        this.sessionStore = sessionStore;
+        this.maxInactiveMillis = maxInactiveInterval.toMillis();
+        this.maxLifetimeMillis = maxLifetime.toMillis();
+        this.maxSessions = maxSessions;
+        this.clock = clock;
+        this.expirationWheel = new TimingWheel<>(SWEEP_TICK_MILLIS, clock.millis());
+        restore();
+    }
+
+    @PostConstruct
+    public void startSweeper() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_TICK_MILLIS, SWEEP_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stopSweeper() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
 
     /**
      * 세션 생성
@@ -32,7 +116,13 @@ public class SessionManager {
 
         // 세션 ID를 생성하고 값을 세션에 저장
         String sessionId = UUID.randomUUID().toString(); //자바에서 제공. e.g. asdfaasdf-asdfasdf=-sdfasf-afsd
-        sessionStore.put(sessionId, value);
+        evictIfFull();
+
+        long now = clock.millis();
+        StoredSession session = new StoredSession(sessionId, value, now, now);
+        sessionStore.save(session);
+        track(session);
+        created.increment();
 
         //쿠키 생성
         Cookie mySessionCookie = new Cookie(SESSION_COOKIE_NAME, sessionId);
@@ -45,27 +135,42 @@ public class SessionManager {
     }
 
 /**
- * 세션 조회
+ * 세션 조회. 같은 요청에서 여러 번 호출해도 세션 저장소는 한 번만 조회한다.
  */
     public Object getSession(HttpServletRequest request) {
+        Object resolved = request.getAttribute(RESOLVED_SESSION);
+        if (resolved == null) {
+            resolved = resolveSession(request);
+            request.setAttribute(RESOLVED_SESSION, resolved == null ? NO_SESSION : resolved);
+        }
+        return resolved == NO_SESSION ? null : resolved;
+    }
+
+    private Object resolveSession(HttpServletRequest request) {
         Cookie sessionCookie = findCookie(request, SESSION_COOKIE_NAME);
         if(sessionCookie == null) {
             return null;
         }
-        return sessionStore.get(sessionCookie.getValue()); //sessionCookie.getValue()에는 무작위의 UUID가 들어있다. 그리고 이것은 그에 맞는 객체를 반환한다.
 
-//         메소드를 만들어 아래의 로직을 따로 빼줬다.
-//        Cookie[] cookies = request.getCookies(); //쿠키가 배열로 반환된다.
-//
-//        if(cookies == null) { //쿠키값이 없으면 null반환
-//            return null;
-//        }
-//        for (Cookie cookie : cookies) { //null이 아니면 쿠키를 루프로 돌린다
-//            if(cookie.getName().equals(SESSION_COOKIE_NAME)){
-//                return sessionStore.get(cookie.getValue());
-//            }
-//        }
-//        return null;
+        StoredSession session = sessionStore.find(sessionCookie.getValue()); //sessionCookie.getValue()에는 무작위의 UUID가 들어있다.
+        if (session == null) {
+            return null;
+        }
+
+        //스위퍼가 아직 처리하지 않았더라도 만료된 세션은 돌려주지 않는다.
+        long now = clock.millis();
+        if (now >= deadline(session)) {
+            if (sessionStore.remove(session.getId())) {
+                expired.increment();
+            }
+            return null;
+        }
+
+        //조회할 때는 마지막 사용 시각만 바꾼다. 타이밍 휠의 위치는 스위퍼가 만료 시각을 확인할 때 옮긴다.
+        if (now > session.getLastAccessedAt()) {
+            sessionStore.touch(session.getId(), now);
+        }
+        return session.getValue();
     }
 
 
@@ -79,6 +184,104 @@ public class SessionManager {
         if(sessionCookie != null) {
             sessionStore.remove(sessionCookie.getValue()); //세션 스토어에 저장된 해당 로우를 날려버린다.
         }
+        request.setAttribute(RESOLVED_SESSION, NO_SESSION); //같은 요청에서 다시 조회해도 만료된 세션이 나오지 않도록 한다.
+    }
+
+    public SessionMetrics getMetrics() {
+        return new SessionMetrics(sessionStore.size(), created.sum(), expired.sum(), evicted.sum(),
+                lastSweepMicros, totalSweepMicros.sum());
+    }
+
+    /**
+     * 만료 시각이 지난 세션을 제거한다. 스위퍼 스레드가 1초마다 호출한다.
+     */
+    void sweep() {
+        long start = System.nanoTime();
+        try {
+            long now = clock.millis();
+            expirationWheel.advance(now, sessionId -> {
+                StoredSession session = sessionStore.find(sessionId);
+                if (session == null) {
+                    return -1; //이미 로그아웃했거나 제거된 세션
+                }
+                long deadline = deadline(session);
+                if (now < deadline) {
+                    return deadline; //그 사이에 사용되어 만료 시각이 연장된 세션
+                }
+                if (sessionStore.remove(sessionId)) {
+                    expired.increment();
+                }
+                return -1;
+            });
+            pruneEvictionQueue();
+        } catch (RuntimeException e) {
+            log.error("[session-sweeper] 세션 정리 실패", e);
+        } finally {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            lastSweepMicros = micros;
+            totalSweepMicros.add(micros);
+        }
+    }
+
+    //재시작 전에 저장된 세션도 만료시키고 제거 후보에 넣는다. 이미 만료된 세션은 바로 지운다.
+    private void restore() {
+        long now = clock.millis();
+        sessionStore.forEach(session -> {
+            if (now < deadline(session)) {
+                track(session);
+            } else if (sessionStore.remove(session.getId())) {
+                expired.increment();
+            }
+        });
+    }
+
+    private void track(StoredSession session) {
+        evictionQueue.add(new EvictionCandidate(session.getId(), session.getLastAccessedAt()));
+        evictionQueueSize.incrementAndGet();
+        expirationWheel.schedule(session.getId(), deadline(session));
+    }
+
+    private void evictIfFull() {
+        while (sessionStore.size() >= maxSessions) {
+            EvictionCandidate candidate = evictionQueue.poll();
+            if (candidate == null) {
+                return;
+            }
+            StoredSession session = sessionStore.find(candidate.sessionId);
+            if (session == null) {
+                evictionQueueSize.decrementAndGet();
+                continue; //이미 제거된 세션
+            }
+            if (session.getLastAccessedAt() > candidate.accessedAt) {
+                //큐에 넣은 뒤 사용된 세션은 뒤로 보낸다.
+                evictionQueue.add(new EvictionCandidate(candidate.sessionId, session.getLastAccessedAt()));
+                continue;
+            }
+            evictionQueueSize.decrementAndGet();
+            if (sessionStore.remove(candidate.sessionId)) {
+                evicted.increment();
+            }
+        }
+    }
+
+    //만료되거나 로그아웃한 세션도 제거 후보 큐에는 남아 있으므로, 큐가 살아있는 세션 수보다 너무 커지면 앞에서부터 정리한다.
+    private void pruneEvictionQueue() {
+        int budget = evictionQueueSize.get();
+        while (budget-- > 0 && evictionQueueSize.get() > 2 * sessionStore.size() + 1024) {
+            EvictionCandidate candidate = evictionQueue.poll();
+            if (candidate == null) {
+                return;
+            }
+            if (sessionStore.find(candidate.sessionId) != null) {
+                evictionQueue.add(candidate);
+            } else {
+                evictionQueueSize.decrementAndGet();
+            }
+        }
+    }
+
+    private long deadline(StoredSession session) {
+        return Math.min(session.getLastAccessedAt() + maxInactiveMillis, session.getCreatedAt() + maxLifetimeMillis);
     }
 
 
@@ -91,11 +294,24 @@ public class SessionManager {
         if(cookies == null) { //쿠키값이 없으면 null반환
             return null;
         }
-                                    //Arrays.Stream() 배열을 스트림으로 바꿔준다. 스트림은 배열값을 하나씩 넘기면서 루프를 돌리는 것이다.
-                                    //findAny()와 findFirst()를 선택할 수 있는데, findFirst는 순서를 지켜 가며 돌고 그 중 하나를 찾고, findAny는 순서 없이 돌리고 하나를 찾으면 반환한다.(병렬처리시)
-        return Arrays.stream(cookies)
-                .filter(cookie -> cookie.getName().equals(cookieName))
-                .findAny()
-                .orElse(null);
+                                    //Arrays.stream(cookies).filter(...).findAny()로도 찾을 수 있지만, 매 요청마다 호출되므로 스트림 파이프라인을 만들지 않고 배열을 직접 돈다.
+                                    //쿠키 헤더는 서블릿 컨테이너가 요청당 한 번만 파싱해서 배열로 보관하므로 getCookies()는 다시 파싱하지 않는다.
+        for (Cookie cookie : cookies) {
+            if (cookieName.equals(cookie.getName())) {
+                return cookie;
+            }
+        }
+        return null;
         }
+
+    private static final class EvictionCandidate {
+
+        private final String sessionId;
+        private final long accessedAt; //큐에 넣을 때의 마지막 사용 시각
+
+        EvictionCandidate(String sessionId, long accessedAt) {
+            this.sessionId = sessionId;
+            this.accessedAt = accessedAt;
+        }
+    }
 }
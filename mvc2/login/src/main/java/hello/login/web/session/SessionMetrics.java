@@ -0,0 +1,17 @@
+package hello.login.web.session;
+
+import lombok.Data;
+
+/**
+ * SessionManager 상태. /session-info/metrics 에서 확인할 수 있다.
+ */
+@Data
+public class SessionMetrics {
+
+    private final int liveSessions;
+    private final long created;
+    private final long expired; //유휴 시간 또는 최대 유지 시간이 지나 제거된 세션 수
+    private final long evicted; //최대 세션 수를 넘어서 제거된 세션 수
+    private final long lastSweepMicros;
+    private final long totalSweepMicros;
+}
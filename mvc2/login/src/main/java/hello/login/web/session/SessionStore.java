@@ -0,0 +1,39 @@
+package hello.login.web.session;
+
+import java.util.function.Consumer;
+
+/**
+ * SessionManager가 세션을 보관하는 곳. 만료와 제거 정책은 SessionManager가 정하고, 저장소는 보관만 한다.
+ *
+ * 기본은 프로세스 안의 맵(MapSessionStore)이고, file-session 프로필을 켜면 재시작 후에도 남고
+ * 같은 서버의 여러 JVM이 함께 쓸 수 있는 파일 저장소(MappedFileSessionStore)를 사용한다.
+ */
+public interface SessionStore {
+
+    /**
+     * 같은 id의 세션이 있으면 덮어쓴다.
+     */
+    void save(StoredSession session);
+
+    /**
+     * @return 세션이 없으면 null
+     */
+    StoredSession find(String sessionId);
+
+    /**
+     * 마지막 사용 시각만 바꾼다. 매 요청마다 호출되므로 가볍게 구현해야 한다.
+     */
+    void touch(String sessionId, long lastAccessedAt);
+
+    /**
+     * @return 실제로 제거했으면 true
+     */
+    boolean remove(String sessionId);
+
+    int size();
+
+    /**
+     * 저장된 모든 세션. SessionManager가 시작할 때 이전에 저장된 세션의 만료 시각을 다시 잡는 데 사용한다.
+     */
+    void forEach(Consumer<StoredSession> action);
+}
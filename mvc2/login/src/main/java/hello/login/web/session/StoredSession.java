@@ -0,0 +1,27 @@
+package hello.login.web.session;
+
+import lombok.Getter;
+
+/**
+ * 저장소에 보관되는 세션 한 건
+ */
+@Getter
+public class StoredSession {
+
+    private final String id;
+    private final Object value;
+    private final long createdAt;
+    private volatile long lastAccessedAt;
+
+    public StoredSession(String id, Object value, long createdAt, long lastAccessedAt) {
+        this.id = id;
+        this.value = value;
+        this.createdAt = createdAt;
+        this.lastAccessedAt = lastAccessedAt;
+    }
+
+    //MapSessionStore는 객체를 그대로 보관하므로 조회 때마다 새로 만들지 않고 시각만 바꾼다.
+    void setLastAccessedAt(long lastAccessedAt) {
+        this.lastAccessedAt = lastAccessedAt;
+    }
+}
@@ -0,0 +1,118 @@
+package hello.login.web.session;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.ToLongFunction;
+
+/**
+ * 계층형 타이밍 휠. 만료 시각이 가까운 것은 아래 단계, 먼 것은 위 단계 칸에 넣고
+ * 시간이 흐르면 위 단계 칸을 아래 단계로 내려보낸다(cascade).
+ * 매 tick마다 칸 하나만 처리하므로 전체 세션을 훑지 않고도 만료 대상만 찾을 수 있다.
+ *
+ * 단계마다 64칸. tick이 1초면 0단계 64초, 1단계 약 68분, 2단계 약 3일을 담는다.
+ * 그보다 먼 것은 2단계 마지막 범위에 넣었다가 내려올 때 다시 배치한다.
+ */
+class TimingWheel<T> {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 3;
+    private static final long MAX_DELTA = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Queue<Node<T>>[][] wheels;
+    private volatile long currentTick;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.wheels = new Queue[LEVELS][WHEEL_SIZE];
+        for (Queue<Node<T>>[] wheel : wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel[i] = new ConcurrentLinkedQueue<>();
+            }
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * 여러 스레드에서 동시에 호출할 수 있다.
+     */
+    void schedule(T value, long deadlineMillis) {
+        add(new Node<>(value, deadlineMillis));
+    }
+
+    /**
+     * nowMillis까지 시간을 진행하면서 만료 시각이 된 항목마다 handler를 호출한다. 한 스레드에서만 호출해야 한다.
+     * handler는 항목의 새 만료 시각을 돌려준다(슬라이딩 만료로 연장된 경우). 더 이상 관리할 필요가 없으면 음수를 돌려준다.
+     *
+     * @return handler를 호출한 횟수
+     */
+    int advance(long nowMillis, ToLongFunction<T> handler) {
+        long nowTick = nowMillis / tickMillis;
+        int fired = 0;
+        while (currentTick < nowTick) {
+            long tick = currentTick + 1;
+            currentTick = tick;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                long levelMask = (1L << (WHEEL_BITS * level)) - 1;
+                if ((tick & levelMask) == 0) {
+                    cascade(wheels[level][(int) (tick >>> (WHEEL_BITS * level)) & WHEEL_MASK]);
+                }
+            }
+            Queue<Node<T>> slot = wheels[0][(int) tick & WHEEL_MASK];
+            Node<T> node;
+            int size = slot.size();
+            //처리하면서 같은 칸에 다시 들어가는 항목이 있으므로 지금 들어있는 개수만큼만 꺼낸다.
+            for (int i = 0; i < size && (node = slot.poll()) != null; i++) {
+                if (ceilTick(node.deadlineMillis) > tick) {
+                    add(node);
+                    continue;
+                }
+                fired++;
+                long next = handler.applyAsLong(node.value);
+                if (next >= 0) {
+                    schedule(node.value, next);
+                }
+            }
+        }
+        return fired;
+    }
+
+    private void cascade(Queue<Node<T>> slot) {
+        int size = slot.size();
+        Node<T> node;
+        for (int i = 0; i < size && (node = slot.poll()) != null; i++) {
+            add(node);
+        }
+    }
+
+    private void add(Node<T> node) {
+        long current = currentTick;
+        long deadlineTick = Math.max(ceilTick(node.deadlineMillis), current + 1);
+        long delta = Math.min(deadlineTick - current, MAX_DELTA);
+        long slotTick = current + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        wheels[level][(int) (slotTick >>> (WHEEL_BITS * level)) & WHEEL_MASK].add(node);
+    }
+
+    //만료 시각보다 일찍 처리하지 않도록 올림한다.
+    private long ceilTick(long millis) {
+        return (millis + tickMillis - 1) / tickMillis;
+    }
+
+    private static final class Node<T> {
+
+        private final T value;
+        private final long deadlineMillis;
+
+        Node(T value, long deadlineMillis) {
+            this.value = value;
+            this.deadlineMillis = deadlineMillis;
+        }
+    }
+}
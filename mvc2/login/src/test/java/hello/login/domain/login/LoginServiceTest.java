@@ -0,0 +1,109 @@
+package hello.login.domain.login;
+
+import hello.login.domain.member.Member;
+import hello.login.domain.member.MemberRepository;
+import hello.login.domain.member.PasswordHasher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LoginServiceTest {
+
+    //부하 테스트에서는 해시 계산이 아니라 회원 조회 시간을 보려고 반복 횟수를 1로 둔다.
+    PasswordHasher passwordHasher = new PasswordHasher(1);
+    MemberRepository memberRepository = new MemberRepository(passwordHasher);
+    LoginService loginService = new LoginService(memberRepository, passwordHasher);
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.clearStore();
+    }
+
+    @Test
+    void login() {
+        //given
+        Member member = memberRepository.save(member("test", "test!"));
+
+        //then
+        assertThat(member.getPassword()).isNotEqualTo("test!"); //해시로 저장된다.
+        assertThat(loginService.login("test", "test!")).isSameAs(member);
+        assertThat(loginService.login("test", "wrong")).isNull();
+        assertThat(loginService.login("unknown", "test!")).isNull();
+    }
+
+    @Test
+    void saltedHash() {
+        //같은 비밀번호라도 salt가 달라서 해시가 다르다.
+        String hash1 = passwordHasher.hash("test!");
+        String hash2 = passwordHasher.hash("test!");
+
+        assertThat(hash1).isNotEqualTo(hash2);
+        assertThat(passwordHasher.matches("test!", hash1)).isTrue();
+        assertThat(passwordHasher.matches("test!", hash2)).isTrue();
+        assertThat(passwordHasher.matches("test!", "test!")).isFalse(); //해시 형식이 아니면 실패
+    }
+
+    @Test
+    void loginLatencyDoesNotGrowWithMembers() throws Exception {
+        //회원 수가 100배가 되어도 동시 로그인 평균 시간이 크게 늘지 않는다.
+        long small = averageLoginNanos(1_000);
+        memberRepository.clearStore();
+        long large = averageLoginNanos(100_000);
+
+        assertThat(large).isLessThan(small * 10);
+    }
+
+    private long averageLoginNanos(int memberCount) throws Exception {
+        for (int i = 0; i < memberCount; i++) {
+            memberRepository.save(member("user" + i, "pw" + i));
+        }
+
+        int threads = 8;
+        int loginsPerThread = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            averageNanos(executor, threads, loginsPerThread, memberCount); //워밍업
+            return averageNanos(executor, threads, loginsPerThread, memberCount);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long averageNanos(ExecutorService executor, int threads, int loginsPerThread, int memberCount) throws Exception {
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                long total = 0;
+                for (int i = 0; i < loginsPerThread; i++) {
+                    int n = ThreadLocalRandom.current().nextInt(memberCount);
+                    long start = System.nanoTime();
+                    Member member = loginService.login("user" + n, "pw" + n);
+                    total += System.nanoTime() - start;
+                    assertThat(member).isNotNull();
+                }
+                return total;
+            }));
+        }
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        return total / ((long) threads * loginsPerThread);
+    }
+
+    private Member member(String loginId, String password) {
+        Member member = new Member();
+        member.setLoginId(loginId);
+        member.setPassword(password);
+        member.setName(loginId);
+        return member;
+    }
+}
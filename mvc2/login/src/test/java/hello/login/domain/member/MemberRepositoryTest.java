@@ -0,0 +1,148 @@
+package hello.login.domain.member;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MemberRepositoryTest {
+
+    MemberRepository memberRepository = new MemberRepository(new PasswordHasher(1));
+
+    @AfterEach
+    void afterEach() {
+        memberRepository.clearStore();
+    }
+
+    @Test
+    void concurrentSave() throws Exception {
+        //given
+        int threads = 16;
+        int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        //when 여러 스레드가 동시에 가입
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(memberRepository.save(member("user" + thread + "-" + i)).getId());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        //then 회원이 사라지거나 id가 겹치지 않는다.
+        assertThat(ids).hasSize(threads * perThread);
+        assertThat(memberRepository.findAll()).hasSize(threads * perThread);
+    }
+
+    @Test
+    void duplicateLoginIdOnlyOneWins() throws Exception {
+        //given
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger duplicates = new AtomicInteger();
+
+        //when 같은 loginId로 동시에 가입
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    memberRepository.save(member("same"));
+                } catch (DuplicateLoginIdException e) {
+                    duplicates.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        //then
+        assertThat(duplicates.get()).isEqualTo(threads - 1);
+        assertThat(memberRepository.findAll()).hasSize(1);
+        assertThat(memberRepository.findByLoginId("same")).isPresent();
+    }
+
+    @Test
+    void saveAll() {
+        //given
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            members.add(member("user" + i));
+        }
+
+        //when
+        memberRepository.saveAll(members);
+
+        //then id가 연속으로 발급되고 loginId로 찾을 수 있다.
+        assertThat(members.get(999).getId() - members.get(0).getId()).isEqualTo(999);
+        assertThat(memberRepository.findByLoginId("user500")).containsSame(members.get(500));
+        assertThat(memberRepository.findAll()).hasSize(1000);
+    }
+
+    @Test
+    void saveAllRollbackOnDuplicate() {
+        //given
+        memberRepository.save(member("exists"));
+        List<Member> members = List.of(member("a"), member("b"), member("exists"), member("c"));
+
+        //when
+        assertThatThrownBy(() -> memberRepository.saveAll(members))
+                .isInstanceOf(DuplicateLoginIdException.class);
+
+        //then 하나도 저장되지 않고, 차지했던 loginId는 다시 쓸 수 있다.
+        assertThat(memberRepository.findAll()).hasSize(1);
+        assertThat(memberRepository.findByLoginId("a")).isEmpty();
+        assertThat(memberRepository.findByLoginId("exists")).isPresent();
+        memberRepository.save(member("a"));
+        assertThat(members.get(0).getId()).isNull();
+        assertThat(members.get(0).getPassword()).isEqualTo("test!");
+    }
+
+    @Test
+    void saveAllRejectsMissingLoginId() {
+        //given
+        List<Member> members = Arrays.asList(member("a"), member(null));
+
+        //when then 저장 전에 거절한다.
+        assertThatThrownBy(() -> memberRepository.saveAll(members))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(memberRepository.findAll()).isEmpty();
+        assertThat(members.get(0).getId()).isNull();
+
+        //되돌린 loginId는 다시 쓸 수 있다.
+        memberRepository.save(member("a"));
+        assertThat(memberRepository.findByLoginId("a")).isPresent();
+    }
+
+    private Member member(String loginId) {
+        Member member = new Member();
+        member.setLoginId(loginId);
+        member.setPassword("test!");
+        member.setName(loginId);
+        return member;
+    }
+}
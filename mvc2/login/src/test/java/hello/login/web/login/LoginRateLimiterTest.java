@@ -0,0 +1,155 @@
+package hello.login.web.login;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LoginRateLimiterTest {
+
+    TestClock clock = new TestClock();
+
+    @Test
+    void throttlePerLoginId() {
+        //given loginId당 5번, 분당 5번 충전
+        LoginRateLimiter limiter = new LoginRateLimiter(5, 5, 100, 100, 1000, clock);
+
+        //when 5번까지는 허용
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire("test", "10.0.0.1")).isTrue();
+        }
+
+        //then 6번째는 IP를 바꿔도 거절, 다른 loginId는 허용
+        assertThat(limiter.tryAcquire("test", "10.0.0.2")).isFalse();
+        assertThat(limiter.tryAcquire("other", "10.0.0.1")).isTrue();
+
+        //12초가 지나면 1번 더 허용
+        clock.plus(Duration.ofSeconds(12));
+        assertThat(limiter.tryAcquire("test", "10.0.0.1")).isTrue();
+        assertThat(limiter.tryAcquire("test", "10.0.0.1")).isFalse();
+
+        LoginRateLimitMetrics metrics = limiter.getMetrics();
+        assertThat(metrics.getAllowed()).isEqualTo(7);
+        assertThat(metrics.getThrottled()).isEqualTo(2);
+    }
+
+    @Test
+    void throttlePerIp() {
+        //given IP당 3번
+        LoginRateLimiter limiter = new LoginRateLimiter(5, 5, 3, 3, 1000, clock);
+
+        //when loginId를 바꿔 가며 시도해도
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("user" + i, "10.0.0.1")).isTrue();
+        }
+
+        //then 같은 IP는 거절된다.
+        assertThat(limiter.tryAcquire("user3", "10.0.0.1")).isFalse();
+        assertThat(limiter.tryAcquire("user3", "10.0.0.2")).isTrue();
+    }
+
+    @Test
+    void throttledLoginIdDoesNotChargeIp() {
+        //given loginId당 2번, IP당 3번
+        LoginRateLimiter limiter = new LoginRateLimiter(2, 2, 3, 3, 1000, clock);
+        limiter.tryAcquire("locked", "10.0.0.1");
+        limiter.tryAcquire("locked", "10.0.0.1");
+
+        //when 잠긴 loginId로 계속 시도해도
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire("locked", "10.0.0.1")).isFalse();
+        }
+
+        //then 같은 IP의 남은 토큰은 그대로다.
+        assertThat(limiter.tryAcquire("other", "10.0.0.1")).isTrue();
+        assertThat(limiter.tryAcquire("other", "10.0.0.1")).isFalse();
+    }
+
+    @Test
+    void concurrentAcquireNeverExceedsCapacity() throws Exception {
+        //given 시간이 흐르지 않으므로 충전되지 않는다.
+        LoginRateLimiter limiter = new LoginRateLimiter(100, 1, 1000, 1, 1000, clock);
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger acquired = new AtomicInteger();
+
+        //when
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++) {
+                    if (limiter.tryAcquire("test", "10.0.0.1")) {
+                        acquired.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        //then 정확히 100번만 허용
+        assertThat(acquired.get()).isEqualTo(100);
+    }
+
+    @Test
+    void evictIdleEntries() {
+        //given 최대 10개
+        LoginRateLimiter limiter = new LoginRateLimiter(5, 5, 5, 5, 10, clock);
+        limiter.tryAcquire("attacker", "10.0.0.1");
+        limiter.tryAcquire("attacker", "10.0.0.1");
+
+        //when 충전이 끝난 뒤 새 loginId가 계속 들어와도
+        clock.plus(Duration.ofMinutes(1));
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("user" + i, "10.0.1." + i);
+        }
+
+        //then 버킷 수는 제한을 넘지 않는다.
+        LoginRateLimitMetrics metrics = limiter.getMetrics();
+        assertThat(metrics.getLoginIdEntries()).isLessThanOrEqualTo(10);
+        assertThat(metrics.getIpEntries()).isLessThanOrEqualTo(10);
+        assertThat(metrics.getEvicted()).isGreaterThan(0);
+    }
+
+    static class TestClock extends Clock {
+
+        private Instant now = Instant.parse("2021-01-01T00:00:00Z");
+
+        void plus(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package hello.login.web.session;
+
+import hello.login.domain.member.Member;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MappedFileSessionStoreTest {
+
+    @TempDir
+    Path dir;
+
+    List<MappedFileSessionStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void afterEach() throws IOException {
+        for (MappedFileSessionStore store : stores) {
+            store.close();
+        }
+    }
+
+    @Test
+    void saveAndFind() throws IOException {
+        //given
+        MappedFileSessionStore store = open(16);
+        String sessionId = UUID.randomUUID().toString();
+
+        //when
+        store.save(new StoredSession(sessionId, member(1L, "test", "테스터"), 1000, 1000));
+        store.touch(sessionId, 2000);
+
+        //then
+        StoredSession findSession = store.find(sessionId);
+        assertThat(findSession.getValue()).isEqualTo(stored(1L, "test", "테스터"));
+        assertThat(((Member) findSession.getValue()).getPassword()).isNull();
+        assertThat(findSession.getCreatedAt()).isEqualTo(1000);
+        assertThat(findSession.getLastAccessedAt()).isEqualTo(2000);
+        assertThat(store.find("not-a-session-id")).isNull();
+    }
+
+    @Test
+    void survivesRestart() throws IOException {
+        //given
+        MappedFileSessionStore store = open(16);
+        String sessionId = UUID.randomUUID().toString();
+        store.save(new StoredSession(sessionId, member(1L, "test", "테스터"), 1000, 1000));
+
+        //when 재시작
+        store.close();
+        stores.clear();
+        MappedFileSessionStore restarted = open(16);
+
+        //then
+        assertThat(restarted.size()).isEqualTo(1);
+        assertThat(restarted.find(sessionId).getValue()).isEqualTo(stored(1L, "test", "테스터"));
+    }
+
+    @Test
+    void tornSlotIsFreedOnOpen() throws IOException {
+        //given 슬롯을 쓰는 도중에 프로세스가 죽었다. (seq 홀수)
+        MappedFileSessionStore store = open(16);
+        String sessionId = UUID.randomUUID().toString();
+        store.save(new StoredSession(sessionId, member(1L, "test", "테스터"), 1000, 1000));
+        store.close();
+        stores.clear();
+        markWriting(sessionId);
+
+        //when 다시 열면
+        MappedFileSessionStore restarted = open(16);
+
+        //then 그 슬롯은 비우고, 다시 쓸 수 있다.
+        assertThat(restarted.size()).isEqualTo(0);
+        assertThat(restarted.find(sessionId)).isNull();
+        restarted.save(new StoredSession(sessionId, member(1L, "test", "테스터"), 2000, 2000));
+        assertThat(restarted.find(sessionId).getCreatedAt()).isEqualTo(2000);
+    }
+
+    @Test
+    void tornSlotDoesNotBlockReaders() throws IOException {
+        //given 열려 있는 동안 다른 프로세스가 슬롯을 쓰다가 죽었다.
+        MappedFileSessionStore store = open(16);
+        String sessionId = UUID.randomUUID().toString();
+        store.save(new StoredSession(sessionId, member(1L, "test", "테스터"), 1000, 1000));
+        markWriting(sessionId);
+
+        //when
+        store.touch(sessionId, 2000);
+        StoredSession findSession = store.find(sessionId);
+
+        //then 멈추지 않고 없는 세션으로 본다.
+        assertThat(findSession).isNull();
+        assertThat(store.size()).isEqualTo(0);
+    }
+
+    @Test
+    void sharedBetweenStores() throws IOException {
+        //given 같은 파일을 연 두 저장소(두 JVM 대신)
+        MappedFileSessionStore node1 = open(16);
+        MappedFileSessionStore node2 = open(16);
+        String sessionId = UUID.randomUUID().toString();
+
+        //when
+        node1.save(new StoredSession(sessionId, member(1L, "test", "테스터"), 1000, 1000));
+
+        //then
+        assertThat(node2.find(sessionId)).isNotNull();
+        assertThat(node2.remove(sessionId)).isTrue();
+        assertThat(node1.find(sessionId)).isNull();
+        assertThat(node1.size()).isEqualTo(0);
+    }
+
+    @Test
+    void reuseSlotsAfterRemove() throws IOException {
+        //given 슬롯 4개
+        MappedFileSessionStore store = open(4);
+
+        //when 저장과 삭제를 반복해도
+        for (int i = 0; i < 100; i++) {
+            String sessionId = UUID.randomUUID().toString();
+            store.save(new StoredSession(sessionId, member((long) i, "id" + i, "name" + i), i, i));
+            assertThat(store.find(sessionId)).isNotNull();
+            store.remove(sessionId);
+        }
+
+        //then 가득 차면 더 이상 저장할 수 없다.
+        for (int i = 0; i < 4; i++) {
+            store.save(new StoredSession(UUID.randomUUID().toString(), null, i, i));
+        }
+        assertThat(store.size()).isEqualTo(4);
+        assertThatThrownBy(() -> store.save(new StoredSession(UUID.randomUUID().toString(), null, 0, 0)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void sessionManagerWithFileStore() throws IOException {
+        //given
+        MappedFileSessionStore store = open(16);
+        store.save(new StoredSession(UUID.randomUUID().toString(), member(1L, "test", "테스터"), 1000, 1000));
+
+        //when 재시작한 SessionManager가 이전 세션을 다시 관리한다.
+        SessionManager sessionManager = new SessionManager(store, Duration.ofMinutes(30),
+                Duration.ofHours(12), 100, Clock.systemUTC());
+
+        //then 오래전에 만든 세션은 바로 만료된다.
+        assertThat(store.size()).isEqualTo(0);
+        assertThat(sessionManager.getMetrics().getExpired()).isEqualTo(1);
+    }
+
+    private MappedFileSessionStore open(int slots) throws IOException {
+        MappedFileSessionStore store = new MappedFileSessionStore(dir.resolve("sessions.dat").toString(), slots);
+        stores.add(store);
+        return store;
+    }
+
+    //id가 같은 슬롯의 seq를 홀수로 만든다.
+    private void markWriting(String sessionId) throws IOException {
+        UUID id = UUID.fromString(sessionId);
+        try (FileChannel channel = FileChannel.open(dir.resolve("sessions.dat"), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer slot = ByteBuffer.allocate(256);
+            for (long position = 64; position < channel.size(); position += 256) {
+                slot.clear();
+                channel.read(slot, position);
+                if (slot.getLong(8) == id.getMostSignificantBits() && slot.getLong(16) == id.getLeastSignificantBits()) {
+                    channel.write(ByteBuffer.allocate(4).putInt(0, slot.getInt(0) + 1), position);
+                    return;
+                }
+            }
+        }
+        throw new IllegalStateException("slot not found");
+    }
+
+    //세션 파일에는 비밀번호를 저장하지 않는다.
+    private Member stored(Long id, String loginId, String name) {
+        Member member = member(id, loginId, name);
+        member.setPassword(null);
+        return member;
+    }
+
+    private Member member(Long id, String loginId, String name) {
+        Member member = new Member();
+        member.setId(id);
+        member.setLoginId(loginId);
+        member.setName(name);
+        member.setPassword("test!");
+        return member;
+    }
+}
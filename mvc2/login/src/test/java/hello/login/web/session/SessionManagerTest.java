@@ -6,8 +6,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -40,4 +46,157 @@ class SessionManagerTest {
 
     }
 
+    @Test
+    void slidingExpiry() {
+        //given 유휴 30분, 최대 12시간
+        TestClock clock = new TestClock();
+        SessionManager manager = new SessionManager(Duration.ofMinutes(30), Duration.ofHours(12), 100, clock);
+        Cookie[] cookies = login(manager, new Member());
+
+        //when 20분마다 사용하면 계속 유지된다.
+        clock.plus(Duration.ofMinutes(20));
+        assertThat(manager.getSession(request(cookies))).isNotNull();
+        clock.plus(Duration.ofMinutes(20));
+        assertThat(manager.getSession(request(cookies))).isNotNull();
+
+        //then 마지막 사용 후 30분이 지나면 만료된다.
+        clock.plus(Duration.ofMinutes(30));
+        assertThat(manager.getSession(request(cookies))).isNull();
+        assertThat(manager.getMetrics().getExpired()).isEqualTo(1);
+    }
+
+    @Test
+    void absoluteLifetime() {
+        //given 유휴 30분, 최대 1시간
+        TestClock clock = new TestClock();
+        SessionManager manager = new SessionManager(Duration.ofMinutes(30), Duration.ofHours(1), 100, clock);
+        Cookie[] cookies = login(manager, new Member());
+
+        //when 계속 사용하더라도
+        for (int i = 0; i < 2; i++) {
+            clock.plus(Duration.ofMinutes(20));
+            assertThat(manager.getSession(request(cookies))).isNotNull();
+        }
+
+        //then 마지막 사용 후 30분이 지나지 않았어도 생성 후 1시간이 지나면 만료된다.
+        clock.plus(Duration.ofMinutes(21));
+        assertThat(manager.getSession(request(cookies))).isNull();
+    }
+
+    @Test
+    void sweepRemovesIdleSessions() {
+        //given
+        TestClock clock = new TestClock();
+        SessionManager manager = new SessionManager(Duration.ofMinutes(30), Duration.ofHours(12), 100, clock);
+        Cookie[] activeCookies = login(manager, new Member());
+        login(manager, new Member());
+
+        //when 한 세션만 계속 사용하고 스위퍼가 1초마다 돈다.
+        for (int second = 1; second <= 40 * 60; second++) {
+            clock.plus(Duration.ofSeconds(1));
+            if (second % 600 == 0) {
+                manager.getSession(request(activeCookies));
+            }
+            manager.sweep();
+        }
+
+        //then 사용하지 않은 세션만 정리된다.
+        assertThat(manager.getMetrics().getLiveSessions()).isEqualTo(1);
+        assertThat(manager.getMetrics().getExpired()).isEqualTo(1);
+        assertThat(manager.getSession(request(activeCookies))).isNotNull();
+    }
+
+    @Test
+    void evictLeastRecentlyUsed() {
+        //given 최대 2개
+        TestClock clock = new TestClock();
+        SessionManager manager = new SessionManager(Duration.ofMinutes(30), Duration.ofHours(12), 2, clock);
+        Member first = new Member();
+        Member second = new Member();
+        Cookie[] firstCookies = login(manager, first);
+        Cookie[] secondCookies = login(manager, second);
+
+        //when 첫 번째 세션을 사용한 뒤 세 번째 세션을 만든다.
+        clock.plus(Duration.ofSeconds(1));
+        manager.getSession(request(firstCookies));
+        login(manager, new Member());
+
+        //then 사용하지 않은 두 번째 세션이 제거된다.
+        assertThat(manager.getSession(request(firstCookies))).isSameAs(first);
+        assertThat(manager.getSession(request(secondCookies))).isNull();
+        assertThat(manager.getMetrics().getEvicted()).isEqualTo(1);
+        assertThat(manager.getMetrics().getLiveSessions()).isEqualTo(2);
+    }
+
+    @Test
+    void resolveOncePerRequest() {
+        //given
+        CountingSessionStore store = new CountingSessionStore();
+        SessionManager manager = new SessionManager(store, Duration.ofMinutes(30), Duration.ofHours(12), 100, new TestClock());
+        Member member = new Member();
+        Cookie[] cookies = login(manager, member);
+        MockHttpServletRequest request = request(cookies);
+
+        //when 인터셉터, ArgumentResolver, 컨트롤러가 각각 조회해도
+        for (int i = 0; i < 3; i++) {
+            assertThat(manager.getSession(request)).isSameAs(member);
+        }
+
+        //then 저장소는 한 번만 조회한다.
+        assertThat(store.findCount).isEqualTo(1);
+
+        //로그아웃하면 같은 요청에서도 세션이 없다.
+        manager.expire(request);
+        assertThat(manager.getSession(request)).isNull();
+        assertThat(manager.getSession(request(cookies))).isNull();
+    }
+
+    //세션을 만들고 응답 쿠키를 돌려준다.
+    private Cookie[] login(SessionManager manager, Member member) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        manager.createSession(member, response);
+        return response.getCookies();
+    }
+
+    //세션 조회 결과는 요청마다 보관되므로 매번 새 요청을 만든다.
+    private MockHttpServletRequest request(Cookie[] cookies) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(cookies);
+        return request;
+    }
+
+    static class CountingSessionStore extends MapSessionStore {
+
+        int findCount;
+
+        @Override
+        public StoredSession find(String sessionId) {
+            findCount++;
+            return super.find(sessionId);
+        }
+    }
+
+    static class TestClock extends Clock {
+
+        private Instant now = Instant.parse("2021-01-01T00:00:00Z");
+
+        void plus(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
 }
@@ -4,6 +4,10 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -46,6 +50,23 @@ class ItemRepositoryTest {
         assertThat(result).contains(item1, item2);
     }
 
+    @Test
+    void findPage() {
+        //given
+        Item item1 = itemRepository.save(new Item("item1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("item3", 30000, 30));
+
+        //when
+        List<Item> firstPage = itemRepository.findPage(null, 2);
+        List<Item> secondPage = itemRepository.findPage(firstPage.get(1).getId(), 2);
+
+        //then id 순서로 나눠서 조회된다.
+        assertThat(firstPage).containsExactly(item1, item2);
+        assertThat(secondPage).containsExactly(item3);
+        assertThat(itemRepository.findAllInBatches(2)).containsExactly(item1, item2, item3);
+    }
+
     @Test
     void updateItem() {
         //given
@@ -65,4 +86,33 @@ class ItemRepositoryTest {
         assertThat(findItem.getPrice()).isEqualTo(updateParam.getPrice());
         assertThat(findItem.getQuantity()).isEqualTo(updateParam.getQuantity());
     }
+
+    @Test
+    void concurrentSave() throws InterruptedException {
+        //given
+        int threadCount = 16;
+        int itemsPerThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch latch = new CountDownLatch(threadCount);
+
+        //when
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                try {
+                    for (int j = 0; j < itemsPerThread; j++) {
+                        itemRepository.save(new Item("item", 10000, 10));
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        //then 유실되거나 id가 중복된 상품이 없어야 한다.
+        List<Item> result = itemRepository.findAll();
+        assertThat(result).hasSize(threadCount * itemsPerThread);
+        assertThat(result).extracting(Item::getId).doesNotHaveDuplicates();
+    }
 }
@@ -0,0 +1,54 @@
+package hello.upload.controller;
+
+import hello.upload.domain.UploadFile;
+import hello.upload.file.ChunkedUploadService;
+import hello.upload.file.ChunkedUploadStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * 분할 업로드 API
+ *
+ * 1. POST /uploads?filename=a.mp4&size=2147483648 -> uploadId, chunkSize, chunkCount
+ * 2. PUT /uploads/{uploadId}/chunks/{index} (본문 = 청크 바이트, 동시에 여러 개 보내도 된다)
+ * 3. 끊겼으면 GET /uploads/{uploadId} 의 missingChunks 만 다시 보낸다.
+ * 4. POST /uploads/{uploadId}/complete -> UploadFile
+ * 5. 상품 등록 폼에 attachUploadId 로 uploadId 를 넘기면 첨부파일로 붙는다.
+ */
+@RestController
+@RequestMapping("/uploads")
+@RequiredArgsConstructor
+public class ChunkedUploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    @PostMapping
+    public ChunkedUploadStatus initiate(@RequestParam String filename, @RequestParam long size,
+                                        @RequestParam(required = false) String contentType) throws IOException {
+        return chunkedUploadService.initiate(filename, size, contentType);
+    }
+
+    @PutMapping("/{uploadId}/chunks/{index}")
+    public ChunkedUploadStatus uploadChunk(@PathVariable String uploadId, @PathVariable int index,
+                                           HttpServletRequest request) throws IOException {
+        return chunkedUploadService.writeChunk(uploadId, index, request.getInputStream(), request.getContentLengthLong());
+    }
+
+    @GetMapping("/{uploadId}")
+    public ChunkedUploadStatus status(@PathVariable String uploadId) {
+        return chunkedUploadService.status(uploadId);
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public UploadFile complete(@PathVariable String uploadId) throws IOException {
+        return chunkedUploadService.complete(uploadId);
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public void abort(@PathVariable String uploadId) throws IOException {
+        chunkedUploadService.abort(uploadId);
+    }
+}
@@ -1,26 +1,38 @@
 package hello.upload.controller;
 
 import hello.upload.domain.Item;
+import hello.upload.domain.ItemFile;
 import hello.upload.domain.ItemRepository;
 import hello.upload.domain.UploadFile;
+import hello.upload.file.ChunkedUploadService;
+import hello.upload.file.FileSender;
 import hello.upload.file.FileStore;
+import hello.upload.file.MultipartUpload;
+import hello.upload.file.ThumbnailService;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import org.springframework.web.util.UriUtils;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
 @Slf4j
@@ -30,13 +42,16 @@ public class ItemController {
 
     private final ItemRepository itemRepository;
     private final FileStore fileStore;
+    private final FileSender fileSender;
+    private final ThumbnailService thumbnailService;
+    private final ChunkedUploadService chunkedUploadService;
 
     @GetMapping("/items/new")
     public String newItem(@ModelAttribute ItemForm form) {
         return "item-form";
     }
 
-    @PostMapping("/items/new")
+    //@PostMapping("/items/new")
     public String saveItem(@ModelAttribute ItemForm form, RedirectAttributes redirectAttributes) throws IOException {
         UploadFile attachFile = fileStore.storeFile(form.getAttachFile());
         List<UploadFile> storeImageFiles = fileStore.storeFiles(form.getImageFiles());
@@ -48,6 +63,36 @@ public class ItemController {
         item.setImageFiles(storeImageFiles);
         itemRepository.save(item);
 
+        thumbnailService.generate(storeImageFiles);
+
+        redirectAttributes.addAttribute("itemId", item.getId());
+
+        return "redirect:/items/{itemId}";
+    }
+
+    /**
+     * 요청 본문을 직접 읽어서 파일을 최종 위치에 바로 저장한다. (컨테이너 임시 파일을 거치지 않음)
+     * spring.servlet.multipart.resolve-lazily=true 여야 본문이 컨트롤러까지 그대로 온다.
+     */
+    @PostMapping("/items/new")
+    public String saveItemV2(HttpServletRequest request, RedirectAttributes redirectAttributes) throws IOException {
+        MultipartUpload upload = fileStore.storeMultipart(request);
+
+        //데이터베이스에 저장
+        Item item = new Item();
+        item.setItemName(upload.getField("itemName"));
+        item.setAttachFile(upload.getFile("attachFile"));
+        item.setImageFiles(upload.getFiles("imageFiles"));
+
+        //분할 업로드(/uploads)로 미리 올린 첨부파일
+        String attachUploadId = upload.getField("attachUploadId");
+        if (item.getAttachFile() == null && StringUtils.hasText(attachUploadId)) {
+            item.setAttachFile(chunkedUploadService.claim(attachUploadId));
+        }
+        itemRepository.save(item);
+
+        thumbnailService.generate(item.getImageFiles());
+
         redirectAttributes.addAttribute("itemId", item.getId());
 
         return "redirect:/items/{itemId}";
@@ -60,13 +105,13 @@ public class ItemController {
         return "item-view";
     }
 
-    @ResponseBody
-    @GetMapping("/images/{filename}")
+    //@ResponseBody
+    //@GetMapping("/images/{filename}")
     public Resource downloadImage(@PathVariable String filename) throws MalformedURLException {
         return new UrlResource("file:" + fileStore.getFullPath(filename));
     }
 
-    @GetMapping("/attach/{itemId}")
+    //@GetMapping("/attach/{itemId}")
     public ResponseEntity<Resource> downloadAttach(@PathVariable Long itemId) throws MalformedURLException {
         Item item = itemRepository.findById(itemId);
         String storeFileName = item.getAttachFile().getStoreFileName();
@@ -84,4 +129,63 @@ public class ItemController {
                 .body(resource);
     }
 
+    /**
+     * Range, 조건부 요청(304)을 지원하고 본문은 sendfile/transferTo로 보낸다.
+     * 상품에 등록된 파일만 보내고, 크기와 시각은 저장할 때 기록한 값을 쓴다.(파일 시스템 조회 없음)
+     * size 를 주면 그 크기에 맞는 썸네일을 보낸다. 썸네일이 없으면 원본을 보낸다.
+     */
+    @GetMapping("/images/{filename}")
+    public void downloadImageV2(@PathVariable String filename, @RequestParam(required = false) Integer size,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ItemFile itemFile = itemRepository.findByStoreFileName(filename);
+        if (itemFile == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String contentHash = fileStore.contentHash(filename);
+
+        if (size != null) {
+            Path thumbnail = thumbnailService.find(filename, size);
+            if (thumbnail != null) {
+                //내용 주소 원본에서 만든 썸네일도 바뀌지 않는다. (해시.w크기.확장자)
+                fileSender.send(request, response, thumbnail, mediaType(thumbnail.getFileName().toString()), null,
+                        contentHash == null ? null : thumbnail.getFileName().toString(), contentHash != null);
+                return;
+            }
+        }
+
+        UploadFile image = itemFile.getUploadFile();
+        fileSender.send(request, response, Paths.get(fileStore.getFullPath(filename)), image.getSize(), image.getStoredAt(),
+                mediaType(filename), null, contentHash, contentHash != null);
+    }
+
+    @GetMapping("/attach/{itemId}")
+    public void downloadAttachV2(@PathVariable Long itemId,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Item item = itemRepository.findById(itemId);
+        if (item == null || item.getAttachFile() == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        UploadFile attachFile = item.getAttachFile();
+        String storeFileName = attachFile.getStoreFileName();
+        String uploadFileName = attachFile.getUploadFileName();
+
+        log.info("uploadFileName={}", uploadFileName);
+
+        String encodedUploadFileName = UriUtils.encode(uploadFileName, StandardCharsets.UTF_8);
+        String contentDisposition = "attachment; filename=\"" + encodedUploadFileName + "\"; filename*=UTF-8''" + encodedUploadFileName;
+        String contentType = StringUtils.hasText(attachFile.getContentType())
+                ? attachFile.getContentType() : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+        //상품 id는 재시작하면 다시 1부터라서 같은 주소가 다른 파일을 가리킬 수 있다. 해시는 ETag로만 쓴다.
+        fileSender.send(request, response, Paths.get(fileStore.getFullPath(storeFileName)), attachFile.getSize(),
+                attachFile.getStoredAt(), contentType, contentDisposition, fileStore.contentHash(storeFileName), false);
+    }
+
+    //이미지는 브라우저에 바로 보여주므로 클라이언트가 보낸 Content-Type 대신 확장자로 정한다.
+    private static String mediaType(String filename) {
+        return MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM).toString();
+    }
+
 }
@@ -0,0 +1,13 @@
+package hello.upload.domain;
+
+import lombok.Data;
+
+/**
+ * 저장된 파일과 그 파일이 붙어 있는 상품
+ */
+@Data
+public class ItemFile {
+
+    private final Item item;
+    private final UploadFile uploadFile;
+}
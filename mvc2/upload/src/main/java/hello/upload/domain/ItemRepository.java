@@ -2,17 +2,33 @@ package hello.upload.domain;
 
 import org.springframework.stereotype.Repository;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Repository
 public class ItemRepository {
 
-    private final Map<Long, Item> store = new HashMap<>();
-    private long sequence = 0L;
+    private final Map<Long, Item> store = new ConcurrentHashMap<>();
+    //storeFileName -> 상품, 파일 정보. 다운로드할 때 파일 이름을 검증하고 크기, 타입을 파일 시스템 조회 없이 얻는다.
+    private final Map<String, ItemFile> fileIndex = new ConcurrentHashMap<>();
+    //내용 해시 -> 상품, 파일 정보. 내용 주소 저장에서 blob을 아직 쓰는 상품이 있는지 확인한다.
+    private final Map<String, ItemFile> contentIndex = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
 
     public Item save(Item item) {
-        item.setId(++sequence);
+        item.setId(sequence.incrementAndGet());
+        //상품이 보이기 전에 파일 인덱스부터 채운다.
+        for (UploadFile uploadFile : files(item)) {
+            //내용 주소 저장에서는 여러 상품이 같은 파일을 가리킬 수 있다. 파일 정보는 같으므로 처음 것을 둔다.
+            ItemFile itemFile = new ItemFile(item, uploadFile);
+            fileIndex.putIfAbsent(uploadFile.getStoreFileName(), itemFile);
+            if (uploadFile.getSha256() != null) {
+                contentIndex.putIfAbsent(uploadFile.getSha256(), itemFile);
+            }
+        }
         store.put(item.getId(), item);
         return item;
     }
@@ -20,4 +36,29 @@ public class ItemRepository {
     public Item findById(Long id) {
         return store.get(id);
     }
+
+    /**
+     * @return 어떤 상품에도 없는 파일 이름이면 null
+     */
+    public ItemFile findByStoreFileName(String storeFileName) {
+        return storeFileName == null ? null : fileIndex.get(storeFileName);
+    }
+
+    /**
+     * @return 이 내용(SHA-256 hex)의 파일을 가진 상품이 없으면 null
+     */
+    public ItemFile findByContentHash(String sha256) {
+        return sha256 == null ? null : contentIndex.get(sha256);
+    }
+
+    private static List<UploadFile> files(Item item) {
+        List<UploadFile> files = new ArrayList<>();
+        if (item.getAttachFile() != null) {
+            files.add(item.getAttachFile());
+        }
+        if (item.getImageFiles() != null) {
+            files.addAll(item.getImageFiles());
+        }
+        return files;
+    }
 }
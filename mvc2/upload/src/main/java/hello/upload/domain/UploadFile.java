@@ -7,9 +7,22 @@ public class UploadFile {
 
     private String uploadFileName;
     private String storeFileName;
+    private String contentType;
+    private long size;
+    private String sha256; //저장하면서 계산한 내용 해시(hex)
+    private long storedAt; //저장 시각(epoch ms). 다운로드 Last-Modified
 
     public UploadFile(String uploadFileName, String storeFileName) {
         this.uploadFileName = uploadFileName;
         this.storeFileName = storeFileName;
     }
+
+    public UploadFile(String uploadFileName, String storeFileName, String contentType, long size, String sha256) {
+        this.uploadFileName = uploadFileName;
+        this.storeFileName = storeFileName;
+        this.contentType = contentType;
+        this.size = size;
+        this.sha256 = sha256;
+        this.storedAt = System.currentTimeMillis();
+    }
 }
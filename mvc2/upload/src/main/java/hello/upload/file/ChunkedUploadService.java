@@ -0,0 +1,322 @@
+package hello.upload.file;
+
+import hello.upload.domain.UploadFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 큰 파일을 여러 요청으로 나눠 받는다. (시작 -> 청크 PUT -> 완료)
+ *
+ * 시작할 때 전체 크기의 파일을 미리 만들어 두고, 각 청크는 index * chunkSize 위치에 바로 쓴다.
+ * 그래서 청크는 순서 없이, 동시에 올라와도 되고 연결이 끊기면 빠진 청크만 다시 보내면 된다.
+ * 진행 상태는 메모리에 있고, expire-after 동안 아무 요청이 없으면 받던 파일과 함께 지운다.
+ * 시작할 때 전체 크기만큼 디스크 용량을 예약하므로, 용량이 모자라면 청크를 받기 전에 거절한다.
+ */
+@Slf4j
+@Component
+public class ChunkedUploadService {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final FileStore fileStore;
+    private final DiskQuota diskQuota;
+    private final Path partialDir;
+    private final long chunkSize;
+    private final long maxSize;
+    private final long expireAfterMillis;
+    private final ConcurrentHashMap<String, Upload> uploads = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+
+    public ChunkedUploadService(FileStore fileStore, DiskQuota diskQuota,
+                                @Value("${file.dir}") String fileDir,
+                                @Value("${file.chunked.chunk-size:8MB}") DataSize chunkSize,
+                                @Value("${file.chunked.max-size:10GB}") DataSize maxSize,
+                                @Value("${file.chunked.expire-after:24h}") Duration expireAfter) {
+        this.fileStore = fileStore;
+        this.diskQuota = diskQuota;
+        this.partialDir = Paths.get(fileDir, "partial");
+        this.chunkSize = chunkSize.toBytes();
+        this.maxSize = maxSize.toBytes();
+        this.expireAfterMillis = expireAfter.toMillis();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chunked-upload-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::expireIdleUploads, 10, 10, TimeUnit.MINUTES);
+    }
+
+    public ChunkedUploadStatus initiate(String filename, long size, String contentType) throws IOException {
+        if (filename == null || filename.isBlank() || size <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "filename, size 가 필요합니다.");
+        }
+        if (size > maxSize) {
+            throw new UploadSizeExceededException("분할 업로드 크기 제한을 넘었습니다.", maxSize);
+        }
+
+        DiskQuota.Reservation reservation = diskQuota.reserve(size);
+        String uploadId = UUID.randomUUID().toString();
+        Path path = partialDir.resolve(uploadId + ".part");
+        try {
+            Files.createDirectories(partialDir);
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.setLength(size); //전체 크기를 미리 잡아 둔다.
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            reservation.close();
+            throw e;
+        }
+
+        int chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+        Upload upload = new Upload(uploadId, filename, contentType, size, chunkCount, path, reservation);
+        uploads.put(uploadId, upload);
+        log.info("chunked upload started uploadId={} filename={} size={} chunks={}", uploadId, filename, size, chunkCount);
+        return upload.status();
+    }
+
+    /**
+     * index 번째 청크를 body 에서 읽어 파일의 제자리에 쓴다. 같은 청크를 다시 보내면 덮어쓴다.
+     */
+    public ChunkedUploadStatus writeChunk(String uploadId, int index, InputStream body, long contentLength) throws IOException {
+        Upload upload = find(uploadId);
+        if (index < 0 || index >= upload.chunkCount) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "청크 번호가 범위를 벗어났습니다. index=" + index);
+        }
+        long expected = Math.min(chunkSize, upload.size - index * chunkSize);
+        if (contentLength >= 0 && contentLength != expected) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "청크 크기가 맞지 않습니다. expected=" + expected);
+        }
+        //채널을 닫을 때까지 쓰는 중으로 표시해 둔다. 그동안 complete()는 파일을 옮기지 않는다.
+        upload.beginWrite();
+        boolean succeeded = false;
+        try {
+            try (FileChannel channel = FileChannel.open(upload.path, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                long position = index * chunkSize;
+                long written = 0;
+                int read;
+                //expected 보다 1바이트 더 읽어 보면 넘치는 청크를 알 수 있다.
+                while ((read = body.read(buffer, 0, (int) Math.min(buffer.length, expected - written + 1))) > 0) {
+                    written += read;
+                    if (written > expected) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "청크가 너무 큽니다. expected=" + expected);
+                    }
+                    ByteBuffer src = ByteBuffer.wrap(buffer, 0, read);
+                    while (src.hasRemaining()) {
+                        position += channel.write(src, position);
+                    }
+                }
+                if (written != expected) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "청크가 중간에 끊겼습니다. received=" + written);
+                }
+            }
+            succeeded = true;
+        } finally {
+            upload.endWrite(index, succeeded);
+        }
+        return upload.status();
+    }
+
+    public ChunkedUploadStatus status(String uploadId) {
+        return find(uploadId).status();
+    }
+
+    /**
+     * 모든 청크를 받았으면 파일을 저장소로 옮긴다. 다시 불러도 같은 결과를 준다.
+     */
+    public UploadFile complete(String uploadId) throws IOException {
+        Upload upload = find(uploadId);
+        synchronized (upload) {
+            if (upload.result != null) {
+                return upload.result;
+            }
+            if (upload.writers > 0) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "받는 중인 청크가 있습니다. 응답을 받은 뒤 다시 완료하세요. writing=" + upload.writers);
+            }
+            if (upload.received.cardinality() != upload.chunkCount) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "받지 못한 청크가 있습니다. missing=" + (upload.chunkCount - upload.received.cardinality()));
+            }
+            //저장하는 동안 들어온 청크는 beginWrite()에서 이 락을 기다렸다가 이미 완료됐다는 응답을 받는다.
+            upload.result = fileStore.storeAssembled(upload.path, upload.filename, upload.contentType, upload.reservation);
+            upload.reservation.close();
+            upload.touch();
+        }
+        log.info("chunked upload completed uploadId={} storeFileName={}", uploadId, upload.result.getStoreFileName());
+        return upload.result;
+    }
+
+    /**
+     * 완료된 업로드를 상품에 붙일 때 꺼낸다. 꺼낸 뒤에는 상태가 사라진다.
+     * 상품이 저장되기 전에 OrphanFileReclaimer 가 지우지 않도록 파일 수정 시각을 지금으로 바꾼다.
+     */
+    public UploadFile claim(String uploadId) throws IOException {
+        Upload upload = find(uploadId);
+        synchronized (upload) {
+            if (upload.result == null) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "완료되지 않은 업로드입니다. uploadId=" + uploadId);
+            }
+            fileStore.touch(upload.result);
+            uploads.remove(uploadId, upload);
+            return upload.result;
+        }
+    }
+
+    /**
+     * 진행 중인 업로드가 가진 파일 이름. 받는 중이면 partial 파일 이름, 완료됐으면 storeFileName
+     */
+    public Set<String> heldFileNames() {
+        Set<String> names = new HashSet<>();
+        for (Upload upload : uploads.values()) {
+            synchronized (upload) {
+                names.add(upload.result != null ? upload.result.getStoreFileName() : upload.path.getFileName().toString());
+            }
+        }
+        return names;
+    }
+
+    public void abort(String uploadId) throws IOException {
+        Upload upload = uploads.remove(uploadId);
+        if (upload != null) {
+            discard(upload);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    void expireIdleUploads() {
+        long now = System.currentTimeMillis();
+        for (Upload upload : uploads.values()) {
+            if (now - upload.lastAccessedAt > expireAfterMillis && uploads.remove(upload.uploadId, upload)) {
+                try {
+                    discard(upload);
+                    log.info("chunked upload expired uploadId={}", upload.uploadId);
+                } catch (IOException e) {
+                    log.warn("chunked upload cleanup failed uploadId={}", upload.uploadId, e);
+                }
+            }
+        }
+    }
+
+    //받던 파일 또는 완료됐지만 상품에 붙지 않은 파일을 지운다.
+    private void discard(Upload upload) throws IOException {
+        synchronized (upload) {
+            upload.aborted = true;
+            if (upload.result != null) {
+                fileStore.delete(upload.result);
+            } else {
+                try {
+                    Files.deleteIfExists(upload.path);
+                } finally {
+                    upload.reservation.close();
+                }
+            }
+        }
+    }
+
+    private Upload find(String uploadId) {
+        Upload upload = uploads.get(uploadId);
+        if (upload == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "업로드를 찾을 수 없습니다. uploadId=" + uploadId);
+        }
+        upload.touch();
+        return upload;
+    }
+
+    private class Upload {
+
+        private final String uploadId;
+        private final String filename;
+        private final String contentType;
+        private final long size;
+        private final int chunkCount;
+        private final Path path;
+        private final DiskQuota.Reservation reservation;
+        private final BitSet received;
+        private boolean aborted;
+        private int writers; //파일에 쓰고 있는 청크 요청 수
+        private UploadFile result;
+        private volatile long lastAccessedAt = System.currentTimeMillis();
+
+        Upload(String uploadId, String filename, String contentType, long size, int chunkCount, Path path,
+               DiskQuota.Reservation reservation) {
+            this.uploadId = uploadId;
+            this.filename = filename;
+            this.contentType = contentType;
+            this.size = size;
+            this.chunkCount = chunkCount;
+            this.path = path;
+            this.reservation = reservation;
+            this.received = new BitSet(chunkCount);
+        }
+
+        void touch() {
+            lastAccessedAt = System.currentTimeMillis();
+        }
+
+        synchronized void checkWritable() {
+            if (aborted) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "취소된 업로드입니다. uploadId=" + uploadId);
+            }
+            if (result != null) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "이미 완료된 업로드입니다. uploadId=" + uploadId);
+            }
+        }
+
+        synchronized void beginWrite() {
+            checkWritable();
+            writers++;
+        }
+
+        synchronized void endWrite(int index, boolean succeeded) {
+            writers--;
+            if (succeeded) {
+                checkWritable();
+                received.set(index);
+            } else {
+                //이미 받은 청크를 다시 보내다 끊기면 그 자리는 반쯤 덮어쓴 상태이므로 다시 받아야 한다.
+                received.clear(index);
+            }
+        }
+
+        synchronized ChunkedUploadStatus status() {
+            List<Integer> missing = new ArrayList<>(chunkCount - received.cardinality());
+            for (int i = received.nextClearBit(0); i < chunkCount; i = received.nextClearBit(i + 1)) {
+                missing.add(i);
+            }
+            return new ChunkedUploadStatus(uploadId, filename, size, chunkSize, chunkCount,
+                    received.cardinality(), missing, result != null);
+        }
+    }
+}
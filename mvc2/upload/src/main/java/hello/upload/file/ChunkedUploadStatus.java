@@ -0,0 +1,21 @@
+package hello.upload.file;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 분할 업로드 진행 상태. 클라이언트는 missingChunks 만 다시 보내면 된다.
+ */
+@Data
+public class ChunkedUploadStatus {
+
+    private final String uploadId;
+    private final String filename;
+    private final long size;
+    private final long chunkSize;
+    private final int chunkCount;
+    private final int receivedChunks;
+    private final List<Integer> missingChunks;
+    private final boolean completed;
+}
@@ -0,0 +1,193 @@
+package hello.upload.file;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * file.dir 사용량과 한도
+ *
+ * used = 디스크에 있는 파일 + 진행 중인 업로드가 예약한 바이트. 업로드는 시작할 때(본문을 읽기 전에) 예약하고,
+ * 쓰면서 예약을 늘리고, 끝나면 실제로 남긴 만큼만 남기고 돌려준다. 매번 디렉토리를 훑지 않아도 한도를 지킬 수 있다.
+ * 썸네일처럼 따로 세지 않는 파일은 OrphanFileReclaimer 가 주기적으로 디렉토리를 훑어 맞춘다.(reconcile)
+ * 쓰는 중인 파일은 예약으로 이미 세고 있으므로 훑을 때 빼도록 경로를 알려 둔다.(Reservation.writing)
+ */
+@Slf4j
+@Component
+public class DiskQuota {
+
+    private final Path root;
+    private final long quota;
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong reserved = new AtomicLong(); //used 중 진행 중인 업로드 몫
+    private final Set<Path> writingFiles = ConcurrentHashMap.newKeySet();
+
+    public DiskQuota(@Value("${file.dir}") String fileDir, @Value("${file.quota.max-size:10GB}") DataSize quota) {
+        this.root = Paths.get(fileDir);
+        this.quota = quota.toBytes();
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        used.set(scan(root));
+        log.info("disk quota used={} quota={}", used.get(), quota);
+    }
+
+    /**
+     * bytes 만큼 예약한다. 한도를 넘으면 DiskQuotaExceededException
+     */
+    public Reservation reserve(long bytes) {
+        acquire(bytes);
+        return new Reservation(bytes);
+    }
+
+    /**
+     * 파일을 지웠을 때
+     */
+    public void release(long bytes) {
+        used.addAndGet(-bytes);
+    }
+
+    /**
+     * 디렉토리를 훑은 결과로 사용량을 맞춘다. 훑는 동안 바뀐 양은 다음 번에 맞춰진다.
+     * @param before 훑기 전에 storedBytes()로 읽은 값
+     */
+    void reconcile(long before, long scanned) {
+        long drift = scanned - before;
+        if (drift != 0) {
+            used.addAndGet(drift);
+            log.info("disk quota reconciled drift={} used={}", drift, used.get());
+        }
+    }
+
+    /**
+     * 열린 예약이 쓰고 있는 파일이면 true. 이 파일의 크기는 reserved 에 들어 있다.
+     */
+    boolean isWriting(Path file) {
+        return writingFiles.contains(file.toAbsolutePath().normalize());
+    }
+
+    long storedBytes() {
+        return used.get() - reserved.get();
+    }
+
+    public long getUsed() {
+        return used.get();
+    }
+
+    public long getQuota() {
+        return quota;
+    }
+
+    private void acquire(long bytes) {
+        while (true) {
+            long current = used.get();
+            if (current + bytes > quota) {
+                throw new DiskQuotaExceededException(bytes, current, quota);
+            }
+            if (used.compareAndSet(current, current + bytes)) {
+                reserved.addAndGet(bytes);
+                return;
+            }
+        }
+    }
+
+    static long scan(Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        long[] total = {0};
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                total[0] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE; //훑는 사이에 지워진 파일
+            }
+        });
+        return total[0];
+    }
+
+    /**
+     * 업로드 하나의 예약. 쓴 만큼 write()로 알리면 모자랄 때 예약을 늘린다.
+     * 남기는 파일은 commit()하고, close()하면 나머지 예약을 돌려준다.
+     */
+    public class Reservation implements AutoCloseable {
+
+        private long reservedBytes;
+        private long writtenBytes;
+        private long committedBytes;
+        private boolean closed;
+        private final List<Path> files = new ArrayList<>();
+
+        private Reservation(long reservedBytes) {
+            this.reservedBytes = reservedBytes;
+        }
+
+        public synchronized void write(long bytes) {
+            writtenBytes += bytes;
+            if (writtenBytes > reservedBytes) {
+                acquire(writtenBytes - reservedBytes);
+                reservedBytes = writtenBytes;
+            }
+        }
+
+        /**
+         * 이 예약으로 file 을 쓰기 시작한다. commit() 이나 close() 할 때까지 사용량을 훑을 때 빠진다.
+         */
+        public synchronized void writing(Path file) {
+            Path normalized = file.toAbsolutePath().normalize();
+            files.add(normalized);
+            writingFiles.add(normalized);
+        }
+
+        /**
+         * bytes 를 디스크에 남긴다. 예약에서 빼서 저장된 파일 몫으로 옮긴다.
+         */
+        public synchronized void commit(long bytes) {
+            if (committedBytes + bytes > reservedBytes) {
+                acquire(committedBytes + bytes - reservedBytes);
+                reservedBytes = committedBytes + bytes;
+            }
+            committedBytes += bytes;
+            reserved.addAndGet(-bytes);
+            releaseFiles();
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            long unused = reservedBytes - committedBytes;
+            used.addAndGet(-unused);
+            reserved.addAndGet(-unused);
+            releaseFiles();
+        }
+
+        private void releaseFiles() {
+            writingFiles.removeAll(files);
+            files.clear();
+        }
+    }
+}
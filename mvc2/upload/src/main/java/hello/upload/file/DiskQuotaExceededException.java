@@ -0,0 +1,15 @@
+package hello.upload.file;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * file.dir 용량 한도를 넘는 업로드. 본문을 읽기 전에 던진다.
+ */
+@ResponseStatus(HttpStatus.INSUFFICIENT_STORAGE)
+public class DiskQuotaExceededException extends RuntimeException {
+
+    public DiskQuotaExceededException(long requested, long used, long quota) {
+        super("저장 공간이 부족합니다. requested=" + requested + " used=" + used + " quota=" + quota);
+    }
+}
@@ -0,0 +1,81 @@
+package hello.upload.file;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 파일 쓰기 전용 실행기
+ *
+ * 동시에 실행 중이거나 대기 중인 작업은 최대 concurrency 개다. 꽉 차면 submit()을 부른 요청 스레드가 기다린다.(back-pressure)
+ * 가상 스레드를 쓸 수 있는 JDK(21+)에서는 가상 스레드를, 아니면 고정 크기 스레드 풀을 쓴다.
+ */
+@Slf4j
+@Component
+public class FileIoExecutor {
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    public FileIoExecutor(@Value("${file.upload.io-concurrency:8}") int concurrency) {
+        this.permits = new Semaphore(concurrency);
+        ExecutorService virtual = virtualThreadExecutor();
+        this.executor = virtual != null ? virtual : Executors.newFixedThreadPool(concurrency, daemonThreadFactory());
+        log.info("file io executor concurrency={} virtualThreads={}", concurrency, virtual != null);
+    }
+
+    public <T> Future<T> submit(Callable<T> task) throws InterruptedIOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("파일 쓰기 대기 중 인터럽트");
+        }
+        try {
+            return executor.submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    //Java 11로 빌드하므로 리플렉션으로 찾는다.
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "file-io-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
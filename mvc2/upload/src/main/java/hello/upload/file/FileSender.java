@@ -0,0 +1,287 @@
+package hello.upload.file;
+
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 저장된 파일을 응답으로 보낸다.
+ *
+ * - ETag, Last-Modified 를 내려주고 If-None-Match, If-Modified-Since 가 맞으면 본문 없이 304로 응답한다.
+ * - Range 요청(단일/여러 구간)은 206으로, 만족할 수 없는 구간이면 416으로 응답한다. If-Range 가 맞지 않으면 전체를 보낸다.
+ * - 본문은 힙 버퍼를 거치지 않는다. 톰캣이 sendfile을 지원하면 톰캣에 넘기고, 아니면 FileChannel.transferTo()로 보낸다.
+ */
+@Component
+public class FileSender {
+
+    //톰캣 sendfile 요청 속성 (org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024; //DefaultServlet 기본값과 같다.
+
+    private static final int MAX_RANGES = 16;
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    /**
+     * @param contentDisposition 없으면 null
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response,
+                     Path path, String contentType, String contentDisposition) throws IOException {
+        send(request, response, path, contentType, contentDisposition, null, false);
+    }
+
+    /**
+     * @param contentHash 내용 해시로 저장된 파일이면 해시. ETag로 쓴다.
+     * @param immutable   주소에 내용 해시가 들어 있어서(/images/해시.확장자) 주소가 같으면 내용도 같을 때만 true.
+     *                    브라우저가 다시 확인하지 않도록 immutable로 캐시하게 한다.
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response, Path path, String contentType,
+                     String contentDisposition, String contentHash, boolean immutable) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!attributes.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        send(request, response, path, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                contentType, contentDisposition, contentHash, immutable);
+    }
+
+    /**
+     * 크기와 수정 시각을 이미 알고 있을 때(저장할 때 기록한 메타데이터) 파일 시스템 조회 없이 보낸다.
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response, Path path, long size, long lastModified,
+                     String contentType, String contentDisposition, String contentHash, boolean immutable) throws IOException {
+        String etag = contentHash != null ? "\"" + contentHash + "\""
+                : "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setHeader("ETag", etag);
+        if (immutable && contentHash != null) {
+            response.setHeader("Cache-Control", IMMUTABLE);
+        }
+        response.setDateHeader("Last-Modified", lastModified);
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        List<long[]> ranges = rangeApplies(request, etag, lastModified) ? parseRanges(request.getHeader("Range"), size) : null;
+        if (ranges != null && ranges.isEmpty()) {
+            response.setHeader("Content-Range", "bytes */" + size);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        if (contentDisposition != null) {
+            response.setHeader("Content-Disposition", contentDisposition);
+        }
+        boolean head = "HEAD".equals(request.getMethod());
+
+        if (ranges == null) {
+            response.setContentType(contentType);
+            response.setContentLengthLong(size);
+            if (!head) {
+                sendRange(request, response, path, 0, size);
+            }
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            response.setContentType(contentType);
+            response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + size);
+            response.setContentLengthLong(range[1] - range[0] + 1);
+            if (!head) {
+                sendRange(request, response, path, range[0], range[1] + 1);
+            }
+            return;
+        }
+
+        //여러 구간: multipart/byteranges. 본문 길이를 미리 계산해서 Content-Length 를 준다.
+        String boundary = UUID.randomUUID().toString();
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long contentLength = 0;
+        for (long[] range : ranges) {
+            byte[] header = ("\r\n--" + boundary + "\r\nContent-Type: " + contentType
+                    + "\r\nContent-Range: bytes " + range[0] + "-" + range[1] + "/" + size + "\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            partHeaders.add(header);
+            contentLength += header.length + range[1] - range[0] + 1;
+        }
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        contentLength += end.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return;
+        }
+        try (FileChannel channel = open(path, response)) {
+            if (channel == null) {
+                return;
+            }
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                out.write(partHeaders.get(i));
+                transfer(channel, range[0], range[1] + 1, target);
+            }
+            out.write(end);
+        }
+    }
+
+    //[start, end) 구간을 보낸다.
+    private void sendRange(HttpServletRequest request, HttpServletResponse response,
+                           Path path, long start, long end) throws IOException {
+        if (end - start >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            //서블릿이 끝난 뒤 톰캣이 커널 sendfile로 직접 보낸다.
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        try (FileChannel channel = open(path, response)) {
+            if (channel != null) {
+                transfer(channel, start, end, Channels.newChannel(response.getOutputStream()));
+            }
+        }
+    }
+
+    //메타데이터만 보고 보내는 경우 파일이 이미 지워졌을 수 있다. 그러면 헤더를 지우고 404로 응답하고 null
+    private static FileChannel open(Path path, HttpServletResponse response) throws IOException {
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            if (response.isCommitted()) {
+                throw e;
+            }
+            response.reset();
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return null;
+        }
+    }
+
+    private static void transfer(FileChannel channel, long start, long end, WritableByteChannel target) throws IOException {
+        long position = start;
+        while (position < end) {
+            long sent = channel.transferTo(position, end - position, target);
+            if (sent <= 0) {
+                throw new EOFException("파일이 중간에 잘렸습니다. position=" + position);
+            }
+            position += sent;
+        }
+    }
+
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            //If-None-Match 가 있으면 If-Modified-Since 는 보지 않는다.
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || stripWeak(tag).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, "If-Modified-Since");
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    //If-Range 가 없거나 현재 파일과 같을 때만 Range 를 적용한다.
+    private static boolean rangeApplies(HttpServletRequest request, String etag, long lastModified) {
+        if (request.getHeader("Range") == null) {
+            return false;
+        }
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag); //강한 비교
+        }
+        long date = dateHeader(request, "If-Range");
+        return date >= 0 && lastModified / 1000 == date / 1000;
+    }
+
+    /**
+     * @return 형식이 잘못됐거나 구간이 너무 많으면 null(Range 무시), 만족할 수 있는 구간이 없으면 빈 목록.
+     * 각 구간은 {시작, 끝(포함)}
+     */
+    static List<long[]> parseRanges(String header, long size) {
+        if (header == null || !header.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<long[]> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                if (dash == 0) {
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix > 0 && size > 0) {
+                        ranges.add(new long[]{Math.max(0, size - suffix), size - 1});
+                    }
+                    continue;
+                }
+                long start = Long.parseLong(spec.substring(0, dash));
+                long end = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                if (start < 0 || end < start) {
+                    return null;
+                }
+                if (start < size) {
+                    ranges.add(new long[]{start, Math.min(end, size - 1)});
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ranges;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
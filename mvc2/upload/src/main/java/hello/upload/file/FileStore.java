@@ -1,32 +1,222 @@
 package hello.upload.file;
 
 import hello.upload.domain.UploadFile;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
 @Component
+@RequiredArgsConstructor
 public class FileStore {
 
+    private static final int MAX_FIELD_SIZE = 64 * 1024;
+    private static final int WRITE_CHUNK_SIZE = 256 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String BLOB_DIR = "sha256/";
+    //UUID 이름으로 저장하는 파일. file.dir 바로 아래의 다른 파일(업로드 예제 컨트롤러가 저장한 파일 등)과 나눠 둔다.
+    private static final String STORE_DIR = "store/";
+    private static final String TEMP_DIR = "tmp/";
+
     @Value("${file.dir}")
     private String fileDir;
 
+    @Value("${file.upload.max-file-size:100MB}")
+    private DataSize maxFileSize;
+
+    @Value("${file.upload.max-request-size:1GB}")
+    private DataSize maxRequestSize;
+
+    /**
+     * true면 파일을 내용 해시(SHA-256)로 저장한다. 같은 내용은 한 번만 저장하고 참조 수를 센다.
+     * storeFileName 은 "해시.확장자"이고 실제 파일은 sha256/앞2자리/다음2자리/해시 에 있다.
+     */
+    @Value("${file.content-addressed:false}")
+    private boolean contentAddressed;
+
+    private final FileIoExecutor ioExecutor;
+    private final DiskQuota diskQuota;
+
+    //해시 -> 이 blob을 가리키는 UploadFile 수. 같은 해시의 저장/삭제는 compute() 안에서 순서대로 처리한다.
+    private final ConcurrentHashMap<String, Integer> blobRefs = new ConcurrentHashMap<>();
+
     public String getFullPath(String filename) {
-        return fileDir + filename;
+        String hash = contentHash(filename);
+        if (hash != null) {
+            return fileDir + BLOB_DIR + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash;
+        }
+        return fileDir + STORE_DIR + filename;
+    }
+
+    /**
+     * 내용 주소 방식으로 저장된 파일이면 SHA-256(hex), 아니면 null
+     */
+    public String contentHash(String storeFileName) {
+        if (storeFileName == null || storeFileName.length() < 64
+                || (storeFileName.length() > 64 && storeFileName.charAt(64) != '.')) {
+            return null;
+        }
+        for (int i = 0; i < 64; i++) {
+            char c = storeFileName.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return null;
+            }
+        }
+        return storeFileName.substring(0, 64);
     }
 
+    /**
+     * 저장한 파일을 지운다. 내용 주소 방식이면 참조 수만 줄이고, 마지막 참조일 때 blob을 지운다.
+     */
+    public void delete(UploadFile uploadFile) throws IOException {
+        String hash = contentHash(uploadFile.getStoreFileName());
+        if (hash == null) {
+            deleteFile(Paths.get(getFullPath(uploadFile.getStoreFileName())));
+            return;
+        }
+        Path blob = Paths.get(getFullPath(uploadFile.getStoreFileName()));
+        try {
+            blobRefs.compute(hash, (key, refs) -> {
+                if (refs != null && refs > 1) {
+                    return refs - 1;
+                }
+                try {
+                    deleteFile(blob);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 파일의 수정 시각을 지금으로 바꾼다. OrphanFileReclaimer 는 grace 기간 안에 수정된 파일을 지우지 않으므로,
+     * 상품에 붙이기 직전의 파일이 그 사이에 지워지지 않는다.
+     */
+    public void touch(UploadFile uploadFile) throws IOException {
+        Path path = Paths.get(getFullPath(uploadFile.getStoreFileName()));
+        String hash = contentHash(uploadFile.getStoreFileName());
+        if (hash == null) {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return;
+        }
+        try {
+            blobRefs.compute(hash, (key, refs) -> {
+                try {
+                    Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return refs;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 아무도 쓰지 않는 blob을 지운다. 같은 내용을 저장 중인 요청과 겹치지 않도록 compute() 안에서 다시 확인한다.
+     * (저장하면서 이미 있는 blob을 쓰면 수정 시각이 바뀌므로 olderThan 조건에서 빠진다.)
+     * 사용량은 호출하는 쪽이 디렉토리를 훑어 맞춘다.
+     * @return 지웠으면 true
+     */
+    boolean reclaimBlob(String hash, long olderThan, Predicate<String> inUse) throws IOException {
+        Path blob = Paths.get(getFullPath(hash));
+        boolean[] deleted = {false};
+        try {
+            blobRefs.compute(hash, (key, refs) -> {
+                try {
+                    if (inUse.test(hash) || Files.getLastModifiedTime(blob).toMillis() >= olderThan) {
+                        return refs;
+                    }
+                    deleted[0] = Files.deleteIfExists(blob);
+                } catch (NoSuchFileException e) {
+                    //이미 지워졌다.
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return deleted[0];
+    }
+
+    /**
+     * 파일들을 ioExecutor에서 동시에 저장한다. 결과 순서는 multipartFiles 순서와 같다.
+     * MultipartFile 은 컨테이너가 이미 임시 파일로 받아 둔 파트라서 서로 기다리지 않고 옮길 수 있다.
+     * 하나라도 실패하면 나머지가 끝나기를 기다렸다가 이번에 저장한 파일을 모두 지우고 예외를 던진다.
+     * (지금은 매핑을 끈 ItemController.saveItem 에서만 쓴다. 요청 본문을 직접 읽는 경로는 DigestingWriter 가 쓰기를 ioExecutor에 넘긴다)
+     */
     public List<UploadFile> storeFiles(List<MultipartFile> multipartFiles) throws IOException {
+        List<Future<UploadFile>> futures = new ArrayList<>();
+        Exception failure = null;
+        try {
+            for (MultipartFile multipartFile : multipartFiles) {
+                if (!multipartFile.isEmpty()) {
+                    futures.add(ioExecutor.submit(() -> storeFile(multipartFile)));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+
         List<UploadFile> storeFileResult = new ArrayList<>();
-        for (MultipartFile multipartFile : multipartFiles) {
-            if (!multipartFile.isEmpty()) {
-                storeFileResult.add(storeFile(multipartFile));
+        for (Future<UploadFile> future : futures) {
+            try {
+                storeFileResult.add(await(future));
+            } catch (IOException | RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            for (UploadFile uploadFile : storeFileResult) {
+                try {
+                    delete(uploadFile);
+                } catch (IOException | RuntimeException e) {
+                    failure.addSuppressed(e);
+                }
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
             }
+            throw (RuntimeException) failure;
         }
         return storeFileResult;
     }
@@ -37,12 +227,199 @@ public class FileStore {
         }
 
         String originalFilename = multipartFile.getOriginalFilename();
-        String storeFileName = createStoreFileName(originalFilename);
-        multipartFile.transferTo(new File(getFullPath(storeFileName)));
-        return new UploadFile(originalFilename, storeFileName);
+        try (DiskQuota.Reservation reservation = diskQuota.reserve(multipartFile.getSize())) {
+            if (contentAddressed) {
+                //해시를 계산해야 하므로 transferTo 대신 직접 읽는다. ioExecutor 스레드에서 불리므로 동기로 쓴다.
+                try (InputStream in = multipartFile.getInputStream()) {
+                    byte[] buffer = new byte[64 * 1024];
+                    return writeFile(originalFilename, multipartFile.getContentType(), false, reservation, writer -> {
+                        int read;
+                        while ((read = in.read(buffer)) > 0) {
+                            writer.accept(buffer, 0, read);
+                        }
+                    });
+                }
+            }
+
+            String storeFileName = createStoreFileName(originalFilename);
+            File file = new File(getFullPath(storeFileName));
+            reservation.writing(file.toPath());
+            try {
+                multipartFile.transferTo(file);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(file.toPath());
+                throw e;
+            }
+            reservation.commit(multipartFile.getSize());
+            return new UploadFile(originalFilename, storeFileName, multipartFile.getContentType(), multipartFile.getSize(), null);
+        }
+    }
+
+    /**
+     * 요청 본문(multipart/form-data)을 직접 읽으면서 파일 파트를 최종 위치에 바로 쓴다.
+     * 컨테이너 임시 파일을 거치지 않으므로 디스크 쓰기가 한 번으로 줄고, SHA-256과 크기도 쓰는 동안 계산한다.
+     * 크기 제한을 넘거나 본문이 깨지면 이 요청에서 저장한 파일을 모두 지우고 예외를 던진다.
+     * 본문을 읽기 전에 Content-Length 만큼 디스크 용량을 예약하고, 모자라면 DiskQuotaExceededException 을 던진다.
+     * 컨트롤러가 MultipartFile, @RequestParam 등으로 파트를 먼저 꺼내면 본문이 이미 소비되므로 HttpServletRequest만 받아야 한다.
+     */
+    public MultipartUpload storeMultipart(HttpServletRequest request) throws IOException {
+        String boundary = MultipartParser.boundary(request.getContentType());
+        if (boundary == null) {
+            throw new InvalidMultipartException("multipart/form-data 요청이 아닙니다.");
+        }
+        long requestLimit = maxRequestSize.toBytes();
+        if (request.getContentLengthLong() > requestLimit) {
+            //본문을 읽기 전에 거절한다.
+            throw new UploadSizeExceededException("요청 크기 제한을 넘었습니다.", requestLimit);
+        }
+
+        MultipartUpload upload = new MultipartUpload();
+        //Content-Length 가 없으면(chunked 전송) 쓰는 만큼 예약을 늘린다.
+        try (DiskQuota.Reservation reservation = diskQuota.reserve(Math.max(0, request.getContentLengthLong()))) {
+            try {
+                MultipartParser parser = new MultipartParser(request.getInputStream(), boundary, requestLimit);
+                MultipartParser.PartHeaders part;
+                while ((part = parser.nextPart()) != null) {
+                    if (part.getFilename() == null) {
+                        upload.addField(part.getName(), parser.readString(MAX_FIELD_SIZE));
+                    } else if (!part.getFilename().isEmpty()) {
+                        upload.addFile(part.getName(), storePart(parser, part, reservation));
+                    }
+                    //파일을 선택하지 않은 파트(filename="")는 다음 nextPart()에서 건너뛴다.
+                }
+            } catch (IOException | RuntimeException e) {
+                for (UploadFile uploadFile : upload.getAllFiles()) {
+                    delete(uploadFile);
+                }
+                throw e;
+            }
+        }
+        return upload;
+    }
+
+    private UploadFile storePart(MultipartParser parser, MultipartParser.PartHeaders part,
+                                 DiskQuota.Reservation reservation) throws IOException {
+        return writeFile(part.getFilename(), part.getContentType(), true, reservation, parser::readBody);
+    }
+
+    /**
+     * body가 넘겨주는 바이트를 파일로 쓴다. 내용 주소 방식이면 임시 파일에 쓴 뒤 해시 위치로 옮긴다.
+     * async면 쓰기를 ioExecutor에 넘긴다. ioExecutor 안에서 부를 때는 false여야 한다.(허가를 서로 기다리며 멈추지 않도록)
+     * 쓰는 바이트는 reservation 에 알리고, 저장이 끝나면 디스크에 새로 남은 만큼만 commit 한다.
+     */
+    private UploadFile writeFile(String originalFilename, String contentType, boolean async,
+                                 DiskQuota.Reservation reservation, BodySource body) throws IOException {
+        String storeFileName = contentAddressed ? null : createStoreFileName(originalFilename);
+        if (contentAddressed) {
+            //디렉토리는 처음 저장할 때 만든다. (file.dir 이 없는 환경에서도 애플리케이션은 뜬다)
+            Files.createDirectories(Paths.get(fileDir + TEMP_DIR));
+        }
+        Path path = Paths.get(contentAddressed ? fileDir + TEMP_DIR + UUID.randomUUID() : getFullPath(storeFileName));
+
+        DigestingWriter writer;
+        reservation.writing(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            writer = new DigestingWriter(channel, maxFileSize.toBytes(), async, reservation);
+            try {
+                body.writeTo(writer);
+                writer.flush();
+            } finally {
+                writer.awaitWrites();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+
+        String hash = writer.hexDigest();
+        boolean stored = true;
+        if (contentAddressed) {
+            storeFileName = hash + "." + extractExt(originalFilename);
+            stored = commitBlob(path, hash, Paths.get(getFullPath(storeFileName)));
+        }
+        reservation.commit(stored ? writer.size : 0);
+        return new UploadFile(originalFilename, storeFileName, contentType, writer.size, hash);
     }
 
-    private String createStoreFileName(String originalFilename) {
+    /**
+     * 다른 경로로 다 받은 파일(분할 업로드)을 저장소로 옮긴다. 파일은 file.dir 과 같은 파일 시스템에 있어야 한다.
+     * 청크가 순서 없이 도착하므로 해시는 여기서 한 번 읽어서 계산한다.
+     * @param reservation 파일을 받으면서 잡아 둔 예약. 저장소에 새로 남은 만큼 commit 한다.
+     */
+    public UploadFile storeAssembled(Path file, String originalFilename, String contentType,
+                                     DiskQuota.Reservation reservation) throws IOException {
+        MessageDigest digest = sha256();
+        long size = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_CHUNK_SIZE);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                size += buffer.remaining();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        String hash = hex(digest.digest());
+
+        String storeFileName;
+        boolean stored = true;
+        if (contentAddressed) {
+            storeFileName = hash + "." + extractExt(originalFilename);
+            stored = commitBlob(file, hash, Paths.get(getFullPath(storeFileName)));
+        } else {
+            storeFileName = createStoreFileName(originalFilename);
+            Files.move(file, Paths.get(getFullPath(storeFileName)), StandardCopyOption.ATOMIC_MOVE);
+        }
+        reservation.commit(stored ? size : 0);
+        return new UploadFile(originalFilename, storeFileName, contentType, size, hash);
+    }
+
+    /**
+     * 임시 파일을 blob 위치로 옮긴다. 이미 같은 내용이 있으면 임시 파일을 지우고 참조 수만 늘린다.
+     * 이미 있던 blob은 수정 시각을 바꿔서 OrphanFileReclaimer 가 grace 기간 동안 지우지 않게 한다.
+     * @return 새로 옮겼으면 true, 이미 있었으면 false
+     */
+    private boolean commitBlob(Path temp, String hash, Path blob) throws IOException {
+        boolean[] moved = {false};
+        try {
+            blobRefs.compute(hash, (key, refs) -> {
+                try {
+                    if (Files.exists(blob)) {
+                        Files.delete(temp);
+                        Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+                    } else {
+                        Files.createDirectories(blob.getParent());
+                        Files.move(temp, blob, StandardCopyOption.ATOMIC_MOVE);
+                        moved[0] = true;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return refs == null ? 1 : refs + 1;
+            });
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        }
+        return moved[0];
+    }
+
+    //지운 바이트만큼 사용량을 줄인다.
+    private void deleteFile(Path path) throws IOException {
+        long size;
+        try {
+            size = Files.size(path);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if (Files.deleteIfExists(path)) {
+            diskQuota.release(size);
+        }
+    }
+
+    //저장할 디렉토리가 없으면 같이 만든다.
+    private String createStoreFileName(String originalFilename) throws IOException {
+        Files.createDirectories(Paths.get(fileDir + STORE_DIR));
         String ext = extractExt(originalFilename);
         String uuid = UUID.randomUUID().toString();
         return uuid + "." + ext;
@@ -53,5 +430,141 @@ public class FileStore {
         return originalFilename.substring(pos + 1);
     }
 
+    //작업 중 발생한 예외를 원래 타입으로 돌려준다.
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("파일 저장 대기 중 인터럽트");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] hash) {
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(chars);
+    }
 
+    @FunctionalInterface
+    private interface BodySource {
+        void writeTo(MultipartParser.BodyConsumer writer) throws IOException;
+    }
+
+    /**
+     * 요청 스레드에서 SHA-256과 크기를 계산하고, 파일 쓰기는 WRITE_CHUNK_SIZE 단위로 모아서 ioExecutor에 넘긴다.
+     * 각 청크는 자기 위치에 쓰므로(positional write) 순서와 상관없이 동시에 쓸 수 있고, 그동안 요청 스레드는 본문을 계속 읽는다.
+     */
+    private class DigestingWriter implements MultipartParser.BodyConsumer {
+
+        private final FileChannel channel;
+        private final long maxSize;
+        private final MessageDigest digest;
+        private final boolean async;
+        private final DiskQuota.Reservation reservation;
+        private final Deque<Future<byte[]>> pending = new ArrayDeque<>(); //끝나면 다 쓴 청크 버퍼를 돌려준다.
+        private final Deque<byte[]> freeChunks = new ArrayDeque<>(); //다시 쓸 청크 버퍼
+        private byte[] chunk = new byte[WRITE_CHUNK_SIZE];
+        private int filled;
+        private long flushed; //ioExecutor에 넘긴 바이트 수 = 다음 청크의 파일 위치
+        private long size;
+
+        DigestingWriter(FileChannel channel, long maxSize, boolean async, DiskQuota.Reservation reservation) {
+            this.channel = channel;
+            this.maxSize = maxSize;
+            this.async = async;
+            this.reservation = reservation;
+            this.digest = sha256();
+        }
+
+        @Override
+        public void accept(byte[] buffer, int offset, int length) throws IOException {
+            if (size + length > maxSize) {
+                throw new UploadSizeExceededException("파일 크기 제한을 넘었습니다.", maxSize);
+            }
+            reservation.write(length);
+            digest.update(buffer, offset, length);
+            size += length;
+            while (length > 0) {
+                int n = Math.min(length, chunk.length - filled);
+                System.arraycopy(buffer, offset, chunk, filled, n);
+                filled += n;
+                offset += n;
+                length -= n;
+                if (filled == chunk.length) {
+                    flush();
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            //끝난 쓰기는 정리하고, 실패한 쓰기가 있으면 더 읽지 않고 바로 멈춘다.
+            while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+                freeChunks.addLast(await(pending.pollFirst()));
+            }
+            if (filled == 0) {
+                return;
+            }
+            ByteBuffer src = ByteBuffer.wrap(chunk, 0, filled);
+            long position = flushed;
+            flushed += filled;
+            filled = 0;
+            if (!async) {
+                write(src, position);
+                return;
+            }
+            byte[] written = chunk;
+            pending.addLast(ioExecutor.submit(() -> {
+                write(src, position);
+                return written;
+            }));
+            //동시에 쓰는 청크 수는 ioExecutor 허가 수로 제한되므로 버퍼도 그만큼만 만든다.
+            chunk = freeChunks.isEmpty() ? new byte[WRITE_CHUNK_SIZE] : freeChunks.pollFirst();
+        }
+
+        private void write(ByteBuffer src, long position) throws IOException {
+            while (src.hasRemaining()) {
+                position += channel.write(src, position);
+            }
+        }
+
+        //채널을 닫기 전에 넘긴 쓰기가 모두 끝나기를 기다린다.
+        void awaitWrites() throws IOException {
+            IOException failure = null;
+            while (!pending.isEmpty()) {
+                try {
+                    await(pending.pollFirst());
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        String hexDigest() {
+            return hex(digest.digest());
+        }
+    }
 }
@@ -0,0 +1,15 @@
+package hello.upload.file;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * multipart 본문 형식이 잘못된 경우
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidMultipartException extends RuntimeException {
+
+    public InvalidMultipartException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,292 @@
+package hello.upload.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * multipart/form-data 요청 본문을 앞에서부터 한 번만 읽으면서 파트를 나눈다.
+ *
+ * 서블릿 컨테이너(getParts(), MultipartFile)는 파트를 임시 파일에 먼저 저장하고, 저장할 때 다시 복사한다.
+ * 여기서는 본문을 버퍼 하나로 읽으면서 파트 본문을 BodyConsumer에 바로 넘기므로 임시 파일이 생기지 않는다.
+ *
+ * 사용법: nextPart()로 파트 헤더를 얻고 readBody()로 본문을 읽는다. 본문을 읽지 않고 nextPart()를 부르면 건너뛴다.
+ */
+class MultipartParser {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte DASH = '-';
+
+    private final InputStream in;
+    private final byte[] delimiter; //"\r\n--" + boundary
+    private final long maxRequestSize;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private long totalRead;
+
+    private boolean started;
+    private boolean bodyPending;
+    private boolean finished;
+
+    MultipartParser(InputStream in, String boundary, long maxRequestSize) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.maxRequestSize = maxRequestSize;
+        //첫 경계는 본문 맨 앞이라 CRLF가 없다. CRLF를 앞에 붙여 두면 모든 경계를 같은 방법으로 찾을 수 있다.
+        buffer[0] = CR;
+        buffer[1] = LF;
+        limit = 2;
+    }
+
+    /**
+     * Content-Type 헤더에서 boundary 값을 꺼낸다. multipart/form-data가 아니면 null
+     */
+    static String boundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) {
+            return null;
+        }
+        String boundary = parameters(contentType).get("boundary");
+        return boundary == null || boundary.isEmpty() ? null : boundary;
+    }
+
+    /**
+     * @return 다음 파트의 헤더. 더 이상 파트가 없으면 null
+     */
+    PartHeaders nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (!started || bodyPending) {
+            readBody((buf, off, len) -> {
+            }); //첫 경계 앞부분(preamble) 또는 읽지 않은 이전 파트 본문을 버린다.
+            started = true;
+        }
+
+        //경계 바로 뒤 "--"는 마지막, CRLF면 다음 파트 헤더가 이어진다.
+        require(2);
+        if (buffer[pos] == DASH && buffer[pos + 1] == DASH) {
+            finished = true;
+            return null;
+        }
+        if (buffer[pos] != CR || buffer[pos + 1] != LF) {
+            throw new InvalidMultipartException("경계 뒤에 줄바꿈이 없습니다.");
+        }
+        pos += 2;
+
+        PartHeaders headers = readHeaders();
+        bodyPending = true;
+        return headers;
+    }
+
+    /**
+     * 현재 파트 본문을 다음 경계까지 읽어서 consumer에 넘긴다. consumer에 넘긴 배열은 다음 호출에서 덮어쓰므로 보관하면 안 된다.
+     */
+    void readBody(BodyConsumer consumer) throws IOException {
+        while (true) {
+            int found = indexOfDelimiter();
+            if (found >= 0) {
+                if (found > pos) {
+                    consumer.accept(buffer, pos, found - pos);
+                }
+                pos = found + delimiter.length;
+                bodyPending = false;
+                return;
+            }
+            //경계의 앞부분이 버퍼 끝에 걸쳐 있을 수 있으므로 경계 길이 - 1 바이트는 남겨둔다.
+            int safe = limit - (delimiter.length - 1);
+            if (safe > pos) {
+                consumer.accept(buffer, pos, safe - pos);
+                pos = safe;
+            }
+            if (eof) {
+                throw new InvalidMultipartException("마지막 경계를 찾지 못했습니다.");
+            }
+            fill();
+        }
+    }
+
+    /**
+     * 일반 폼 필드 값을 문자열로 읽는다.
+     */
+    String readString(int maxSize) throws IOException {
+        byte[][] value = {new byte[256]};
+        int[] size = {0};
+        readBody((buf, off, len) -> {
+            if (size[0] + len > maxSize) {
+                throw new UploadSizeExceededException("폼 필드가 너무 큽니다.", maxSize);
+            }
+            if (size[0] + len > value[0].length) {
+                byte[] grown = new byte[Math.min(Math.max(value[0].length * 2, size[0] + len), maxSize)];
+                System.arraycopy(value[0], 0, grown, 0, size[0]);
+                value[0] = grown;
+            }
+            System.arraycopy(buf, off, value[0], size[0], len);
+            size[0] += len;
+        });
+        return new String(value[0], 0, size[0], StandardCharsets.UTF_8);
+    }
+
+    private PartHeaders readHeaders() throws IOException {
+        while (true) {
+            for (int i = pos; i + 3 < limit; i++) {
+                if (buffer[i] == CR && buffer[i + 1] == LF && buffer[i + 2] == CR && buffer[i + 3] == LF) {
+                    //브라우저는 파일 이름을 UTF-8 그대로 보낸다.
+                    String block = new String(buffer, pos, i - pos, StandardCharsets.UTF_8);
+                    pos = i + 4;
+                    return PartHeaders.parse(block);
+                }
+            }
+            if (limit - pos > MAX_HEADER_SIZE) {
+                throw new InvalidMultipartException("파트 헤더가 너무 큽니다.");
+            }
+            if (eof) {
+                throw new InvalidMultipartException("파트 헤더가 끝나지 않았습니다.");
+            }
+            fill();
+        }
+    }
+
+    //버퍼 안에서 경계 위치. 없으면 -1
+    private int indexOfDelimiter() {
+        int last = limit - delimiter.length;
+        outer:
+        for (int i = pos; i <= last; i++) {
+            if (buffer[i] != CR) {
+                continue;
+            }
+            for (int j = 1; j < delimiter.length; j++) {
+                if (buffer[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private void require(int bytes) throws IOException {
+        while (limit - pos < bytes) {
+            if (eof) {
+                throw new InvalidMultipartException("요청 본문이 중간에 끝났습니다.");
+            }
+            fill();
+        }
+    }
+
+    //남은 바이트를 앞으로 당기고 뒤를 채운다.
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+            return;
+        }
+        totalRead += read;
+        if (totalRead > maxRequestSize) {
+            throw new UploadSizeExceededException("요청 크기 제한을 넘었습니다.", maxRequestSize);
+        }
+        limit += read;
+    }
+
+    //name=value; name="value" 형식의 파라미터
+    private static Map<String, String> parameters(String header) {
+        Map<String, String> result = new LinkedHashMap<>();
+        int i = header.indexOf(';');
+        while (i >= 0 && i < header.length()) {
+            int eq = header.indexOf('=', i);
+            if (eq < 0) {
+                break;
+            }
+            String name = header.substring(i + 1, eq).trim().toLowerCase(Locale.ROOT);
+            String value;
+            int next;
+            if (eq + 1 < header.length() && header.charAt(eq + 1) == '"') {
+                int end = header.indexOf('"', eq + 2);
+                if (end < 0) {
+                    end = header.length();
+                }
+                value = header.substring(eq + 2, end);
+                next = header.indexOf(';', end);
+            } else {
+                next = header.indexOf(';', eq);
+                value = header.substring(eq + 1, next < 0 ? header.length() : next).trim();
+            }
+            result.put(name, value);
+            i = next;
+        }
+        return result;
+    }
+
+    @FunctionalInterface
+    interface BodyConsumer {
+        void accept(byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    /**
+     * 파트 헤더 중 필요한 것만 꺼내 둔다.
+     */
+    static final class PartHeaders {
+
+        private final String name;
+        private final String filename; //파일 파트가 아니면 null, 파일을 선택하지 않았으면 ""
+        private final String contentType;
+
+        private PartHeaders(String name, String filename, String contentType) {
+            this.name = name;
+            this.filename = filename;
+            this.contentType = contentType;
+        }
+
+        static PartHeaders parse(String block) {
+            String disposition = null;
+            String contentType = null;
+            for (String line : block.split("\r\n")) {
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String headerName = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+                if (headerName.equals("content-disposition")) {
+                    disposition = value;
+                } else if (headerName.equals("content-type")) {
+                    contentType = value;
+                }
+            }
+            if (disposition == null) {
+                throw new InvalidMultipartException("Content-Disposition 헤더가 없습니다.");
+            }
+            Map<String, String> parameters = parameters(disposition);
+            String filename = parameters.get("filename");
+            if (filename != null) {
+                //옛 브라우저는 전체 경로를 보낸다.
+                filename = filename.substring(Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\')) + 1);
+            }
+            return new PartHeaders(parameters.get("name"), filename, contentType);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        String getFilename() {
+            return filename;
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+    }
+}
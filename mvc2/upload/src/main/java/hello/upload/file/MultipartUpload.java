@@ -0,0 +1,46 @@
+package hello.upload.file;
+
+import hello.upload.domain.UploadFile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * FileStore.storeMultipart() 결과. 일반 폼 필드 값과 저장된 파일을 파트 이름별로 담는다.
+ */
+public class MultipartUpload {
+
+    private final Map<String, List<String>> fields = new LinkedHashMap<>();
+    private final Map<String, List<UploadFile>> files = new LinkedHashMap<>();
+
+    void addField(String name, String value) {
+        fields.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+    }
+
+    void addFile(String name, UploadFile uploadFile) {
+        files.computeIfAbsent(name, k -> new ArrayList<>()).add(uploadFile);
+    }
+
+    public String getField(String name) {
+        List<String> values = fields.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    public UploadFile getFile(String name) {
+        List<UploadFile> uploadFiles = files.get(name);
+        return uploadFiles == null ? null : uploadFiles.get(0);
+    }
+
+    public List<UploadFile> getFiles(String name) {
+        return files.getOrDefault(name, Collections.emptyList());
+    }
+
+    public List<UploadFile> getAllFiles() {
+        List<UploadFile> result = new ArrayList<>();
+        files.values().forEach(result::addAll);
+        return result;
+    }
+}
@@ -0,0 +1,168 @@
+package hello.upload.file;
+
+import hello.upload.domain.ItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 어떤 상품도 가리키지 않는 파일을 지운다.
+ *
+ * 요청 스레드와 상관없는 스레드 하나가 interval 마다 file.dir 을 훑는다.
+ * FileStore 가 만든 파일만 지운다. file.dir 바로 아래나 모르는 디렉토리의 파일은 건드리지 않는다.
+ * - 상품이나 진행 중인 분할 업로드가 쓰지 않는 store/ 의 UUID 이름 파일, sha256/ 의 blob
+ * - store/, sha256/ 에서 원본이 없어진 썸네일
+ * - 서버가 중간에 죽어서 남은 tmp/, partial/ 파일, 썸네일 임시 파일
+ * 막 저장했지만 아직 상품에 붙지 않은 파일을 지우지 않도록 grace 기간 안에 수정된 파일은 남긴다.
+ * 훑으면서 남은 파일 크기를 더해 DiskQuota 사용량도 맞춘다.
+ */
+@Slf4j
+@Component
+public class OrphanFileReclaimer {
+
+    //"원본.w{크기}.{png|jpg}" (ThumbnailService)
+    private static final Pattern THUMBNAIL = Pattern.compile("(.+)\\.w\\d+\\.(png|jpg)");
+    private static final Pattern THUMBNAIL_TEMP = Pattern.compile(".+\\.w\\d+\\.(png|jpg)\\.[0-9a-f-]{36}\\.tmp");
+    //"UUID.확장자" (FileStore)
+    private static final Pattern STORE_FILE = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}\\.[^.]*");
+
+    private final FileStore fileStore;
+    private final ItemRepository itemRepository;
+    private final ChunkedUploadService chunkedUploadService;
+    private final DiskQuota diskQuota;
+    private final Path root;
+    private final long graceMillis;
+    private final ScheduledExecutorService scheduler;
+
+    public OrphanFileReclaimer(FileStore fileStore, ItemRepository itemRepository,
+                               ChunkedUploadService chunkedUploadService, DiskQuota diskQuota,
+                               @Value("${file.dir}") String fileDir,
+                               @Value("${file.reclaim.interval:10m}") Duration interval,
+                               @Value("${file.reclaim.grace:1h}") Duration grace) {
+        this.fileStore = fileStore;
+        this.itemRepository = itemRepository;
+        this.chunkedUploadService = chunkedUploadService;
+        this.diskQuota = diskQuota;
+        this.root = Paths.get(fileDir).toAbsolutePath().normalize();
+        this.graceMillis = grace.toMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "orphan-file-reclaimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::run, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void run() {
+        //예외가 나가면 이후 실행이 모두 취소된다.
+        try {
+            reclaim();
+        } catch (Exception e) {
+            log.warn("orphan file reclaim failed", e);
+        }
+    }
+
+    /**
+     * @return 지운 파일 수
+     */
+    int reclaim() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        long olderThan = System.currentTimeMillis() - graceMillis;
+        Set<String> held = new HashSet<>();
+        for (String name : chunkedUploadService.heldFileNames()) {
+            held.add(name);
+            String hash = fileStore.contentHash(name);
+            if (hash != null) {
+                held.add(hash);
+            }
+        }
+        Predicate<String> blobInUse = hash -> held.contains(hash) || itemRepository.findByContentHash(hash) != null;
+
+        long before = diskQuota.storedBytes();
+        long[] kept = {0};
+        int[] deleted = {0};
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                Path relative = root.relativize(file);
+                String top = relative.getNameCount() > 1 ? relative.getName(0).toString() : "";
+                String name = file.getFileName().toString();
+                try {
+                    if (reclaim(file, top, name, attrs.lastModifiedTime().toMillis(), olderThan, held, blobInUse)) {
+                        deleted[0]++;
+                        return FileVisitResult.CONTINUE;
+                    }
+                } catch (IOException e) {
+                    log.warn("orphan file reclaim failed file={}", file, e);
+                }
+                //받는 중인 분할 업로드 파일, 쓰는 중인 파일은 예약으로 이미 세고 있다.
+                if (!(top.equals("partial") && held.contains(name)) && !diskQuota.isWriting(file)) {
+                    kept[0] += attrs.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE; //훑는 사이에 지워진 파일
+            }
+        });
+        diskQuota.reconcile(before, kept[0]);
+        if (deleted[0] > 0) {
+            log.info("orphan files reclaimed count={} used={}", deleted[0], diskQuota.getUsed());
+        }
+        return deleted[0];
+    }
+
+    //지웠으면 true
+    private boolean reclaim(Path file, String top, String name, long lastModified, long olderThan,
+                            Set<String> held, Predicate<String> blobInUse) throws IOException {
+        boolean old = lastModified < olderThan;
+        if (top.equals("tmp")) {
+            return old && Files.deleteIfExists(file);
+        }
+        if (top.equals("partial")) {
+            return old && !held.contains(name) && Files.deleteIfExists(file);
+        }
+        if (!top.equals("store") && !top.equals("sha256")) {
+            return false; //FileStore 가 만들지 않은 파일
+        }
+        Matcher thumbnail = THUMBNAIL.matcher(name);
+        if (thumbnail.matches()) {
+            return !Files.exists(file.resolveSibling(thumbnail.group(1))) && Files.deleteIfExists(file);
+        }
+        if (THUMBNAIL_TEMP.matcher(name).matches()) {
+            return old && Files.deleteIfExists(file);
+        }
+        if (top.equals("sha256")) {
+            return old && fileStore.contentHash(name) != null && fileStore.reclaimBlob(name, olderThan, blobInUse);
+        }
+        return old && STORE_FILE.matcher(name).matches() && !held.contains(name)
+                && itemRepository.findByStoreFileName(name) == null && Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,260 @@
+package hello.upload.file;
+
+import hello.upload.domain.UploadFile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 상품 이미지 썸네일
+ *
+ * 저장 직후 generate()로 작업 큐에 넣으면 제한된 스레드 풀이 원본을 한 번 읽어서 모든 크기를 만든다.
+ * 썸네일은 원본 옆에 "원본경로.w{크기}.{png|jpg}" 로 저장한다.
+ * 예전에 올린 이미지처럼 썸네일이 없으면 처음 요청할 때 만든다.(find)
+ * 디코딩하기 전에 헤더에서 가로, 세로를 읽어 max-pixels 를 넘는 이미지는 만들지 않는다. (작은 파일이 수 GB 로 풀리는 이미지)
+ */
+@Slf4j
+@Component
+public class ThumbnailService {
+
+    private static final int MAX_SKIPPED = 10_000;
+
+    private final FileStore fileStore;
+    private final int[] sizes; //긴 변 기준 최대 픽셀, 오름차순
+    private final long waitMillis;
+    private final long maxPixels;
+    private final ThreadPoolExecutor executor;
+
+    //storeFileName -> 진행 중인 생성 작업. 같은 원본을 동시에 두 번 읽지 않는다.
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    //원본이 이미지가 아니거나, 너무 크거나, 이미 충분히 작아서 썸네일을 만들지 않는 "storeFileName.w크기"
+    //다시 확인하면 되는 캐시이므로 MAX_SKIPPED 를 넘으면 비운다.
+    private final Set<String> skipped = ConcurrentHashMap.newKeySet();
+
+    public ThumbnailService(FileStore fileStore,
+                            @Value("${file.thumbnail.sizes:150,300,600}") int[] sizes,
+                            @Value("${file.thumbnail.threads:2}") int threads,
+                            @Value("${file.thumbnail.queue-capacity:1000}") int queueCapacity,
+                            @Value("${file.thumbnail.wait-millis:3000}") long waitMillis,
+                            @Value("${file.thumbnail.max-pixels:50000000}") long maxPixels) {
+        this.fileStore = fileStore;
+        this.sizes = sizes.clone();
+        Arrays.sort(this.sizes);
+        this.waitMillis = waitMillis;
+        this.maxPixels = maxPixels;
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        //ImageIO가 디스크 임시 파일을 캐시로 쓰지 않게 한다.
+        ImageIO.setUseCache(false);
+    }
+
+    /**
+     * 썸네일 생성을 예약한다. 큐가 가득 차면 버리고, 나중에 처음 요청할 때 만든다.
+     */
+    public void generate(List<UploadFile> imageFiles) {
+        for (UploadFile imageFile : imageFiles) {
+            schedule(imageFile.getStoreFileName());
+        }
+    }
+
+    /**
+     * @param width 원하는 크기(px). 이보다 크거나 같은 것 중 가장 작은 썸네일을 고른다.
+     * @return 썸네일 파일. 원본을 그대로 보내야 하면(원본이 작거나, 이미지가 아니거나, 생성이 늦으면) null
+     */
+    public Path find(String storeFileName, int width) {
+        int size = pick(width);
+        if (size < 0) {
+            return null;
+        }
+        Path thumbnail = thumbnailPath(storeFileName, size);
+        if (Files.exists(thumbnail)) {
+            return thumbnail;
+        }
+        if (skipped.contains(storeFileName + ".w" + size) || !Files.exists(Paths.get(fileStore.getFullPath(storeFileName)))) {
+            return null;
+        }
+
+        try {
+            schedule(storeFileName).get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            log.debug("thumbnail not ready storeFileName={} size={}", storeFileName, size, e);
+            return null;
+        }
+        return Files.exists(thumbnail) ? thumbnail : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private CompletableFuture<Void> schedule(String storeFileName) {
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> existing = inFlight.putIfAbsent(storeFileName, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    createThumbnails(storeFileName);
+                    created.complete(null);
+                } catch (Throwable e) {
+                    log.warn("thumbnail failed storeFileName={}", storeFileName, e);
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(storeFileName, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(storeFileName, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    private void createThumbnails(String storeFileName) throws IOException {
+        Path original = Paths.get(fileStore.getFullPath(storeFileName));
+        if (Arrays.stream(sizes).allMatch(size -> Files.exists(thumbnailPath(storeFileName, size)))) {
+            return;
+        }
+
+        BufferedImage source = read(original);
+        if (source == null) {
+            for (int size : sizes) {
+                skip(storeFileName, size);
+            }
+            return;
+        }
+
+        //큰 것부터 만들고, 작은 것은 방금 만든 썸네일에서 줄인다.
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            int size = sizes[i];
+            if (Math.max(source.getWidth(), source.getHeight()) <= size) {
+                skip(storeFileName, size);
+                continue;
+            }
+            Path target = thumbnailPath(storeFileName, size);
+            BufferedImage scaled = scale(source, size, isPng(storeFileName));
+            Path temp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+            try {
+                ImageIO.write(scaled, isPng(storeFileName) ? "png" : "jpg", temp.toFile());
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            source = scaled;
+        }
+    }
+
+    //ImageIO가 읽을 수 없는 형식이거나 maxPixels 를 넘으면 null
+    private BufferedImage read(Path original) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    log.info("thumbnail skipped, image too large file={} width={} height={}",
+                            original.getFileName(), reader.getWidth(0), reader.getHeight(0));
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private void skip(String storeFileName, int size) {
+        if (skipped.size() >= MAX_SKIPPED) {
+            skipped.clear();
+        }
+        skipped.add(storeFileName + ".w" + size);
+    }
+
+    //긴 변이 size가 되도록 줄인다. 한 번에 크게 줄이면 계단 현상이 생기므로 절반씩 줄여 나간다.
+    static BufferedImage scale(BufferedImage source, int size, boolean alpha) {
+        double ratio = (double) size / Math.max(source.getWidth(), source.getHeight());
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB; //jpg는 알파 채널을 쓸 수 없다.
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    int pick(int width) {
+        for (int size : sizes) {
+            if (size >= width) {
+                return size;
+            }
+        }
+        return -1; //가장 큰 썸네일보다 크면 원본
+    }
+
+    private Path thumbnailPath(String storeFileName, int size) {
+        return Paths.get(fileStore.getFullPath(storeFileName) + ".w" + size + (isPng(storeFileName) ? ".png" : ".jpg"));
+    }
+
+    //png, gif는 투명도를 살리기 위해 png로 만든다.
+    private static boolean isPng(String storeFileName) {
+        String lower = storeFileName.toLowerCase();
+        return lower.endsWith(".png") || lower.endsWith(".gif");
+    }
+}
@@ -0,0 +1,22 @@
+package hello.upload.file;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 업로드 도중 크기 제한을 넘은 경우. 이미 쓴 파일은 지운 뒤에 던진다.
+ */
+@ResponseStatus(HttpStatus.PAYLOAD_TOO_LARGE)
+public class UploadSizeExceededException extends RuntimeException {
+
+    private final long limit;
+
+    public UploadSizeExceededException(String message, long limit) {
+        super(message + " limit=" + limit);
+        this.limit = limit;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,173 @@
+package hello.upload.file;
+
+import hello.upload.domain.UploadFile;
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ChunkedUploadServiceTest {
+
+    private static final String CONTENT = "0123456789"; //청크 4바이트 -> 0123, 4567, 89
+
+    @TempDir
+    Path dir;
+
+    DiskQuota diskQuota;
+    FileStore fileStore;
+    ChunkedUploadService chunkedUploadService;
+
+    @BeforeEach
+    void beforeEach() {
+        diskQuota = new DiskQuota(dir + "/", DataSize.ofMegabytes(1));
+        fileStore = new FileStore(null, diskQuota);
+        ReflectionTestUtils.setField(fileStore, "fileDir", dir + "/");
+        chunkedUploadService = new ChunkedUploadService(fileStore, diskQuota, dir.toString(),
+                DataSize.ofBytes(4), DataSize.ofMegabytes(1), Duration.ZERO);
+    }
+
+    @AfterEach
+    void afterEach() {
+        chunkedUploadService.shutdown();
+    }
+
+    @Test
+    void outOfOrderAndParallelChunks() throws Exception {
+        //given
+        String uploadId = chunkedUploadService.initiate("a.txt", CONTENT.length(), "text/plain").getUploadId();
+
+        //when 마지막 청크부터, 나머지는 동시에 보낸다.
+        chunkedUploadService.writeChunk(uploadId, 2, chunk(2), 2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<ChunkedUploadStatus>> futures = new ArrayList<>();
+        for (int index = 0; index < 2; index++) {
+            int chunkIndex = index;
+            futures.add(executor.submit(() -> chunkedUploadService.writeChunk(uploadId, chunkIndex, chunk(chunkIndex), 4)));
+        }
+        for (Future<ChunkedUploadStatus> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        UploadFile uploadFile = chunkedUploadService.complete(uploadId);
+
+        //then 제자리에 모인다.
+        assertThat(chunkedUploadService.status(uploadId).isCompleted()).isTrue();
+        assertThat(Files.readString(Paths.get(fileStore.getFullPath(uploadFile.getStoreFileName())))).isEqualTo(CONTENT);
+        assertThat(diskQuota.getUsed()).isEqualTo(CONTENT.length());
+    }
+
+    @Test
+    void failedChunkIsMissingAgain() throws IOException {
+        //given 모든 청크를 받은 뒤
+        String uploadId = chunkedUploadService.initiate("a.txt", CONTENT.length(), "text/plain").getUploadId();
+        for (int index = 0; index < 3; index++) {
+            chunkedUploadService.writeChunk(uploadId, index, chunk(index), -1);
+        }
+
+        //when 0번 청크를 다시 보내다 끊긴다.
+        InputStream broken = new ByteArrayInputStream("ab".getBytes(StandardCharsets.UTF_8));
+        assertThatThrownBy(() -> chunkedUploadService.writeChunk(uploadId, 0, broken, -1))
+                .isInstanceOf(ResponseStatusException.class);
+
+        //then 반쯤 덮어쓴 청크는 다시 받아야 하고, 그 전에는 완료할 수 없다.
+        assertThat(chunkedUploadService.status(uploadId).getMissingChunks()).containsExactly(0);
+        assertThat(statusOf(() -> chunkedUploadService.complete(uploadId))).isEqualTo(HttpStatus.CONFLICT);
+
+        chunkedUploadService.writeChunk(uploadId, 0, chunk(0), 4);
+        UploadFile uploadFile = chunkedUploadService.complete(uploadId);
+        assertThat(Files.readString(Paths.get(fileStore.getFullPath(uploadFile.getStoreFileName())))).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void completeWhileWritingIsConflict() throws Exception {
+        //given 2번 청크를 받는 중
+        String uploadId = chunkedUploadService.initiate("a.txt", CONTENT.length(), "text/plain").getUploadId();
+        chunkedUploadService.writeChunk(uploadId, 0, chunk(0), 4);
+        chunkedUploadService.writeChunk(uploadId, 1, chunk(1), 4);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream slow = new InputStream() {
+            private final InputStream body = chunk(2);
+
+            @Override
+            public int read() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                reading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return body.read(b, off, len);
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<ChunkedUploadStatus> writing = executor.submit(() -> chunkedUploadService.writeChunk(uploadId, 2, slow, 2));
+        reading.await();
+
+        //when then 쓰는 동안은 409
+        assertThat(statusOf(() -> chunkedUploadService.complete(uploadId))).isEqualTo(HttpStatus.CONFLICT);
+
+        //끝난 뒤에는 완료된다.
+        release.countDown();
+        writing.get();
+        executor.shutdown();
+        assertThat(chunkedUploadService.complete(uploadId)).isNotNull();
+    }
+
+    @Test
+    void expiredUploadReturnsReservation() throws Exception {
+        //given
+        ChunkedUploadStatus status = chunkedUploadService.initiate("a.txt", CONTENT.length(), "text/plain");
+        chunkedUploadService.writeChunk(status.getUploadId(), 0, chunk(0), 4);
+        assertThat(diskQuota.getUsed()).isEqualTo(CONTENT.length());
+
+        //when expire-after(0) 이 지난 뒤 정리
+        Thread.sleep(5);
+        chunkedUploadService.expireIdleUploads();
+
+        //then 받던 파일을 지우고 예약도 돌려준다.
+        assertThat(diskQuota.getUsed()).isEqualTo(0);
+        assertThat(chunkedUploadService.heldFileNames()).isEmpty();
+        try (Stream<Path> files = Files.list(dir.resolve("partial"))) {
+            assertThat(files).isEmpty();
+        }
+        assertThat(statusOf(() -> chunkedUploadService.status(status.getUploadId()))).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    private static InputStream chunk(int index) {
+        String chunk = CONTENT.substring(index * 4, Math.min(CONTENT.length(), index * 4 + 4));
+        return new ByteArrayInputStream(chunk.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static HttpStatus statusOf(ThrowingCallable call) {
+        return catchThrowableOfType(call, ResponseStatusException.class).getStatus();
+    }
+}
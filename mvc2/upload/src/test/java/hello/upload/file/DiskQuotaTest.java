@@ -0,0 +1,64 @@
+package hello.upload.file;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.*;
+
+class DiskQuotaTest {
+
+    private final DiskQuota quota = new DiskQuota("/nonexistent-upload-dir/", DataSize.ofBytes(1000));
+
+    @Test
+    void reserveCommitAndRelease() {
+        try (DiskQuota.Reservation reservation = quota.reserve(600)) {
+            assertThat(quota.getUsed()).isEqualTo(600);
+            reservation.write(500);
+            reservation.commit(500);
+        }
+        //쓰지 않은 예약은 돌려준다.
+        assertThat(quota.getUsed()).isEqualTo(500);
+
+        quota.release(500);
+        assertThat(quota.getUsed()).isEqualTo(0);
+    }
+
+    @Test
+    void rejectOverQuota() {
+        DiskQuota.Reservation first = quota.reserve(800);
+        assertThatThrownBy(() -> quota.reserve(300)).isInstanceOf(DiskQuotaExceededException.class);
+
+        //Content-Length 없이 쓰는 만큼 늘리다가 한도를 넘으면 거절한다.
+        DiskQuota.Reservation second = quota.reserve(0);
+        second.write(200);
+        assertThatThrownBy(() -> second.write(1)).isInstanceOf(DiskQuotaExceededException.class);
+
+        first.close();
+        second.close();
+        assertThat(quota.getUsed()).isEqualTo(0);
+    }
+
+    @Test
+    void writingFilesAreNotCountedTwice() {
+        //given 쓰는 중인 파일
+        Path file = Paths.get("/nonexistent-upload-dir/tmp/../tmp/a");
+        DiskQuota.Reservation reservation = quota.reserve(300);
+        reservation.write(300);
+        reservation.writing(file);
+        assertThat(quota.isWriting(Paths.get("/nonexistent-upload-dir/tmp/a"))).isTrue();
+
+        //when 훑어 보면 쓰는 중인 파일은 빼고 센다.
+        long before = quota.storedBytes();
+        quota.reconcile(before, 0);
+
+        //then 예약만 남는다.
+        assertThat(quota.getUsed()).isEqualTo(300);
+        reservation.commit(300);
+        assertThat(quota.isWriting(file)).isFalse();
+        reservation.close();
+        assertThat(quota.getUsed()).isEqualTo(300);
+    }
+}
@@ -0,0 +1,35 @@
+package hello.upload.file;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class FileSenderTest {
+
+    @Test
+    void parseRanges() {
+        List<long[]> ranges = FileSender.parseRanges("bytes=0-99, 200-, -50", 1000);
+        assertThat(ranges.size()).isEqualTo(3);
+        assertThat(ranges.get(0)).containsExactly(0, 99);
+        assertThat(ranges.get(1)).containsExactly(200, 999);
+        assertThat(ranges.get(2)).containsExactly(950, 999);
+
+        //파일 끝을 넘는 끝 위치는 잘라낸다.
+        assertThat(FileSender.parseRanges("bytes=990-2000", 1000).get(0)).containsExactly(990, 999);
+    }
+
+    @Test
+    void unsatisfiableOrInvalidRanges() {
+        //만족할 수 없으면 빈 목록(416)
+        assertThat(FileSender.parseRanges("bytes=1000-", 1000)).isEmpty();
+        assertThat(FileSender.parseRanges("bytes=-0", 1000)).isEmpty();
+
+        //형식이 잘못되면 null(Range 무시)
+        assertThat(FileSender.parseRanges("bytes=5-1", 1000)).isNull();
+        assertThat(FileSender.parseRanges("items=0-1", 1000)).isNull();
+        assertThat(FileSender.parseRanges("bytes=a-b", 1000)).isNull();
+        assertThat(FileSender.parseRanges("bytes=" + "0-1,".repeat(17), 1000)).isNull();
+    }
+}
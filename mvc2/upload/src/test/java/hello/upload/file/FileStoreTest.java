@@ -0,0 +1,148 @@
+package hello.upload.file;
+
+import hello.upload.domain.UploadFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class FileStoreTest {
+
+    @TempDir
+    Path dir;
+
+    FileIoExecutor ioExecutor;
+    DiskQuota diskQuota;
+    FileStore fileStore;
+
+    @BeforeEach
+    void beforeEach() {
+        ioExecutor = new FileIoExecutor(2);
+        diskQuota = new DiskQuota(dir + "/", DataSize.ofMegabytes(10));
+        fileStore = new FileStore(ioExecutor, diskQuota);
+        ReflectionTestUtils.setField(fileStore, "fileDir", dir + "/");
+        ReflectionTestUtils.setField(fileStore, "maxFileSize", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(fileStore, "maxRequestSize", DataSize.ofMegabytes(10));
+        ReflectionTestUtils.setField(fileStore, "contentAddressed", true);
+    }
+
+    @AfterEach
+    void afterEach() {
+        ioExecutor.shutdown();
+    }
+
+    @Test
+    void sameContentIsStoredOnce() throws IOException {
+        //when 같은 내용을 두 번 저장
+        UploadFile first = store("a.txt", "hello");
+        UploadFile second = store("b.txt", "hello");
+
+        //then blob은 하나이고 사용량도 한 번만 센다.
+        assertThat(second.getSha256()).isEqualTo(first.getSha256());
+        assertThat(second.getStoreFileName()).isEqualTo(first.getStoreFileName());
+        assertThat(Files.readString(blob(first))).isEqualTo("hello");
+        assertThat(diskQuota.getUsed()).isEqualTo(5);
+        assertThat(Files.exists(dir.resolve("b.txt.part"))).isFalse();
+    }
+
+    @Test
+    void deleteRemovesBlobWithLastReference() throws IOException {
+        //given 같은 내용을 가리키는 파일 두 개
+        UploadFile first = store("a.txt", "hello");
+        UploadFile second = store("b.txt", "hello");
+
+        //when then 하나를 지워도 blob은 남는다.
+        fileStore.delete(first);
+        assertThat(Files.exists(blob(second))).isTrue();
+        assertThat(diskQuota.getUsed()).isEqualTo(5);
+
+        //마지막 참조를 지우면 blob도 지운다.
+        fileStore.delete(second);
+        assertThat(Files.exists(blob(second))).isFalse();
+        assertThat(diskQuota.getUsed()).isEqualTo(0);
+    }
+
+    @Test
+    void reclaimBlobSkipsBlobsInUse() throws IOException {
+        //given
+        UploadFile file = store("a.txt", "hello");
+        long future = System.currentTimeMillis() + 60_000;
+
+        //when then 쓰는 상품이 있거나 grace 기간 안이면 지우지 않는다.
+        assertThat(fileStore.reclaimBlob(file.getSha256(), future, hash -> true)).isFalse();
+        assertThat(fileStore.reclaimBlob(file.getSha256(), 0, hash -> false)).isFalse();
+        assertThat(Files.exists(blob(file))).isTrue();
+
+        assertThat(fileStore.reclaimBlob(file.getSha256(), future, hash -> false)).isTrue();
+        assertThat(Files.exists(blob(file))).isFalse();
+
+        //참조 수도 없어졌으므로 같은 내용을 다시 저장하면 blob을 새로 만든다.
+        UploadFile again = store("a.txt", "hello");
+        assertThat(Files.readString(blob(again))).isEqualTo("hello");
+    }
+
+    @Test
+    void storeFilesKeepsOrder() throws IOException {
+        //when 빈 파일은 건너뛴다.
+        List<UploadFile> stored = fileStore.storeFiles(List.of(
+                multipartFile("a.txt", "aaa"), multipartFile("empty.txt", ""), multipartFile("b.txt", "bb")));
+
+        //then
+        assertThat(stored).extracting(UploadFile::getUploadFileName).containsExactly("a.txt", "b.txt");
+        assertThat(Files.readString(blob(stored.get(0)))).isEqualTo("aaa");
+        assertThat(Files.readString(blob(stored.get(1)))).isEqualTo("bb");
+        assertThat(diskQuota.getUsed()).isEqualTo(5);
+    }
+
+    @Test
+    void storeFilesDeletesStoredFilesOnFailure() throws IOException {
+        //given 세 번째 파일이 크기 제한을 넘는다.
+        UploadFile existing = store("old.txt", "aaa");
+        List<MultipartFile> multipartFiles = List.of(multipartFile("a.txt", "aaa"), multipartFile("b.txt", "bb"),
+                multipartFile("large.txt", "x".repeat((int) DataSize.ofMegabytes(1).toBytes() + 1)));
+
+        //when
+        assertThatThrownBy(() -> fileStore.storeFiles(multipartFiles))
+                .isInstanceOf(UploadSizeExceededException.class);
+
+        //then 이번에 저장한 파일만 지우고, 같은 내용을 먼저 저장한 파일은 남는다.
+        assertThat(Files.readString(blob(existing))).isEqualTo("aaa");
+        assertThat(diskQuota.getUsed()).isEqualTo(3);
+        try (Stream<Path> files = Files.walk(dir.resolve("sha256"))) {
+            assertThat(files.filter(Files::isRegularFile)).hasSize(1);
+        }
+        try (Stream<Path> files = Files.list(dir.resolve("tmp"))) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    private UploadFile store(String filename, String content) throws IOException {
+        Path part = dir.resolve(filename + ".part");
+        Files.writeString(part, content, StandardCharsets.UTF_8);
+        try (DiskQuota.Reservation reservation = diskQuota.reserve(content.length())) {
+            return fileStore.storeAssembled(part, filename, "text/plain", reservation);
+        }
+    }
+
+    private static MultipartFile multipartFile(String filename, String content) {
+        return new MockMultipartFile("imageFiles", filename, "text/plain", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path blob(UploadFile uploadFile) {
+        return Paths.get(fileStore.getFullPath(uploadFile.getStoreFileName()));
+    }
+}
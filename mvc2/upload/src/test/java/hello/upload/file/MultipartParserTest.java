@@ -0,0 +1,107 @@
+package hello.upload.file;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MultipartParserTest {
+
+    static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+
+    @Test
+    void boundary() {
+        assertThat(MultipartParser.boundary("multipart/form-data; boundary=" + BOUNDARY)).isEqualTo(BOUNDARY);
+        assertThat(MultipartParser.boundary("multipart/form-data; boundary=\"abc\"")).isEqualTo("abc");
+        assertThat(MultipartParser.boundary("application/x-www-form-urlencoded")).isNull();
+    }
+
+    @Test
+    void parseFieldsAndFiles() throws IOException {
+        //경계와 비슷한 바이트를 본문 중간에 넣어둔다.
+        byte[] content = new byte[300_000];
+        new Random(1).nextBytes(content);
+        byte[] almost = ("\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1)).getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(almost, 0, content, 100_000, almost.length);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        write(body, "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"itemName\"\r\n\r\n상품A\r\n");
+        write(body, "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"attachFile\"; filename=\"C:\\docs\\첨부.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n");
+        body.write(content);
+        write(body, "\r\n--" + BOUNDARY + "--\r\n");
+
+        //한 번에 조금씩만 읽혀서 경계가 버퍼 끝에 걸치게 한다.
+        MultipartParser parser = new MultipartParser(new SlowInputStream(body.toByteArray(), 1000), BOUNDARY, Long.MAX_VALUE);
+
+        MultipartParser.PartHeaders field = parser.nextPart();
+        assertThat(field.getName()).isEqualTo("itemName");
+        assertThat(field.getFilename()).isNull();
+        assertThat(parser.readString(1024)).isEqualTo("상품A");
+
+        MultipartParser.PartHeaders file = parser.nextPart();
+        assertThat(file.getName()).isEqualTo("attachFile");
+        assertThat(file.getFilename()).isEqualTo("첨부.bin");
+        assertThat(file.getContentType()).isEqualTo("application/octet-stream");
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        parser.readBody(read::write);
+        assertThat(Arrays.equals(read.toByteArray(), content)).isTrue();
+
+        assertThat(parser.nextPart()).isNull();
+    }
+
+    @Test
+    void requestSizeLimit() {
+        byte[] body = ("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"a\"; filename=\"a.txt\"\r\n\r\n"
+                + "x".repeat(10_000) + "\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        MultipartParser parser = new MultipartParser(new SlowInputStream(body, 1000), BOUNDARY, 5_000);
+
+        assertThatThrownBy(() -> {
+            parser.nextPart();
+            parser.readBody((buf, off, len) -> {
+            });
+        }).isInstanceOf(UploadSizeExceededException.class);
+    }
+
+    @Test
+    void truncatedBody() throws IOException {
+        byte[] body = ("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"a\"\r\n\r\nvalue")
+                .getBytes(StandardCharsets.UTF_8);
+        MultipartParser parser = new MultipartParser(new ByteArrayInputStream(body), BOUNDARY, Long.MAX_VALUE);
+
+        parser.nextPart();
+        assertThatThrownBy(() -> parser.readString(1024)).isInstanceOf(InvalidMultipartException.class);
+    }
+
+    private static void write(ByteArrayOutputStream out, String s) {
+        out.writeBytes(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static class SlowInputStream extends InputStream {
+
+        private final ByteArrayInputStream in;
+        private final int chunk;
+
+        SlowInputStream(byte[] bytes, int chunk) {
+            this.in = new ByteArrayInputStream(bytes);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return in.read(b, off, Math.min(len, chunk));
+        }
+    }
+}
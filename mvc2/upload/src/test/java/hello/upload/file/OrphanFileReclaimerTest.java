@@ -0,0 +1,123 @@
+package hello.upload.file;
+
+import hello.upload.domain.Item;
+import hello.upload.domain.ItemRepository;
+import hello.upload.domain.UploadFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+class OrphanFileReclaimerTest {
+
+    @TempDir
+    Path dir;
+
+    DiskQuota diskQuota;
+    ItemRepository itemRepository;
+    ChunkedUploadService chunkedUploadService;
+    OrphanFileReclaimer reclaimer;
+
+    @BeforeEach
+    void beforeEach() {
+        diskQuota = new DiskQuota(dir + "/", DataSize.ofMegabytes(1));
+        FileStore fileStore = new FileStore(null, diskQuota);
+        ReflectionTestUtils.setField(fileStore, "fileDir", dir + "/");
+        itemRepository = new ItemRepository();
+        chunkedUploadService = new ChunkedUploadService(fileStore, diskQuota, dir.toString(),
+                DataSize.ofBytes(4), DataSize.ofMegabytes(1), Duration.ofHours(24));
+        //주기 실행은 하지 않고 reclaim()을 직접 부른다. grace 1분
+        reclaimer = new OrphanFileReclaimer(fileStore, itemRepository, chunkedUploadService, diskQuota,
+                dir.toString(), Duration.ofHours(1), Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void afterEach() {
+        reclaimer.shutdown();
+        chunkedUploadService.shutdown();
+    }
+
+    @Test
+    void reclaimOnlyOrphanedStoreFiles() throws IOException {
+        //given
+        Path outsideRoot = old(dir.resolve(uuidName()));
+        Path outsideStore = old(dir.resolve("other").resolve(uuidName()));
+        Path orphan = old(dir.resolve("store").resolve(uuidName()));
+        Path fresh = file(dir.resolve("store").resolve(uuidName()));
+        Path referenced = old(dir.resolve("store").resolve(uuidName()));
+        Path referencedThumbnail = old(dir.resolve("store").resolve(referenced.getFileName() + ".w150.png"));
+        Path orphanThumbnail = file(dir.resolve("store").resolve(uuidName() + ".w150.png"));
+
+        Item item = new Item();
+        item.setAttachFile(new UploadFile("a.png", referenced.getFileName().toString()));
+        itemRepository.save(item);
+
+        //분할 업로드: 받는 중인 partial 파일, 완료했지만 아직 상품에 붙지 않은 파일
+        String receiving = chunkedUploadService.initiate("b.txt", 4, "text/plain").getUploadId();
+        String completed = chunkedUploadService.initiate("c.txt", 4, "text/plain").getUploadId();
+        chunkedUploadService.writeChunk(completed, 0, new ByteArrayInputStream("cccc".getBytes()), 4);
+        Path held = old(dir.resolve("store").resolve(chunkedUploadService.complete(completed).getStoreFileName()));
+        Path partial = old(dir.resolve("partial").resolve(receiving + ".part"));
+
+        //when
+        int deleted = reclaimer.reclaim();
+
+        //then
+        assertThat(deleted).isEqualTo(2);
+        assertThat(Files.exists(orphan)).isFalse();
+        assertThat(Files.exists(orphanThumbnail)).isFalse(); //원본이 없는 썸네일은 grace 와 상관없이 지운다.
+        assertThat(Files.exists(outsideRoot)).isTrue();
+        assertThat(Files.exists(outsideStore)).isTrue();
+        assertThat(Files.exists(fresh)).isTrue();
+        assertThat(Files.exists(referenced)).isTrue();
+        assertThat(Files.exists(referencedThumbnail)).isTrue();
+        assertThat(Files.exists(held)).isTrue();
+        assertThat(Files.exists(partial)).isTrue();
+    }
+
+    @Test
+    void reconcileKeepsUsedWhenNothingDrifted() throws IOException {
+        //given 저장된 파일과 받는 중인 분할 업로드(예약으로 센다)
+        old(dir.resolve(uuidName()));
+        file(dir.resolve("store").resolve(uuidName()));
+        diskQuota.init();
+        chunkedUploadService.initiate("b.txt", 4, "text/plain");
+        long used = diskQuota.getUsed();
+
+        //when
+        reclaimer.reclaim();
+
+        //then 받는 중인 파일을 두 번 세지 않는다.
+        assertThat(diskQuota.getUsed()).isEqualTo(used);
+    }
+
+    private static String uuidName() {
+        return UUID.randomUUID() + ".png";
+    }
+
+    private static Path file(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        return Files.write(path, new byte[10]);
+    }
+
+    //grace 기간이 지난 파일
+    private static Path old(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            file(path);
+        }
+        Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - Duration.ofHours(1).toMillis()));
+        return path;
+    }
+}
@@ -0,0 +1,88 @@
+package hello.upload.file;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ThumbnailServiceTest {
+
+    @TempDir
+    Path dir;
+
+    FileStore fileStore;
+    ThumbnailService thumbnailService;
+
+    @BeforeEach
+    void beforeEach() {
+        fileStore = new FileStore(null, new DiskQuota(dir + "/", DataSize.ofMegabytes(10)));
+        ReflectionTestUtils.setField(fileStore, "fileDir", dir + "/");
+        //원본 최대 100만 픽셀
+        thumbnailService = new ThumbnailService(fileStore, new int[]{300, 150, 600}, 1, 10, 3000, 1_000_000);
+    }
+
+    @AfterEach
+    void afterEach() {
+        thumbnailService.shutdown();
+    }
+
+    @Test
+    void pick() {
+        assertThat(thumbnailService.pick(100)).isEqualTo(150);
+        assertThat(thumbnailService.pick(150)).isEqualTo(150);
+        assertThat(thumbnailService.pick(151)).isEqualTo(300);
+        assertThat(thumbnailService.pick(600)).isEqualTo(600);
+        assertThat(thumbnailService.pick(601)).isEqualTo(-1);
+    }
+
+    @Test
+    void scale() {
+        BufferedImage scaled = ThumbnailService.scale(new BufferedImage(1000, 400, BufferedImage.TYPE_INT_RGB), 150, true);
+
+        //긴 변을 맞추고 비율은 유지한다.
+        assertThat(scaled.getWidth()).isEqualTo(150);
+        assertThat(scaled.getHeight()).isEqualTo(60);
+        assertThat(scaled.getType()).isEqualTo(BufferedImage.TYPE_INT_ARGB);
+        assertThat(ThumbnailService.scale(new BufferedImage(1000, 1, BufferedImage.TYPE_INT_RGB), 150, false).getHeight())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void find() throws IOException {
+        //given
+        image("large.png", 1000, 500);
+        image("small.png", 200, 100);
+        image("huge.png", 2000, 1000);
+        Files.write(Paths.get(fileStore.getFullPath("text.png")), "not an image".getBytes());
+
+        //when then 원하는 크기 이상인 것 중 가장 작은 썸네일
+        Path thumbnail = thumbnailService.find("large.png", 200);
+        assertThat(thumbnail.getFileName().toString()).isEqualTo("large.png.w300.png");
+        assertThat(ImageIO.read(thumbnail.toFile()).getWidth()).isEqualTo(300);
+
+        //원본이 작거나, 이미지가 아니거나, 픽셀 수 제한을 넘거나, 원본이 없으면 원본을 보낸다.
+        assertThat(thumbnailService.find("small.png", 300)).isNull();
+        assertThat(thumbnailService.find("small.png", 100)).isNotNull();
+        assertThat(thumbnailService.find("text.png", 100)).isNull();
+        assertThat(thumbnailService.find("huge.png", 100)).isNull();
+        assertThat(Files.exists(Paths.get(fileStore.getFullPath("huge.png") + ".w150.png"))).isFalse();
+        assertThat(thumbnailService.find("missing.png", 100)).isNull();
+    }
+
+    private void image(String storeFileName, int width, int height) throws IOException {
+        Path path = Paths.get(fileStore.getFullPath(storeFileName));
+        Files.createDirectories(path.getParent());
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", path.toFile());
+    }
+}
@@ -18,6 +18,10 @@ public class TestDataInit {
      */
     @PostConstruct
     public void init() {
+        //durable 프로필에서 재시작해 복구된 상품이 있으면 다시 넣지 않는다.
+        if (!itemRepository.findPage(null, 1).isEmpty()) {
+            return;
+        }
         itemRepository.save(new Item("itemA", 10000, 10));
         itemRepository.save(new Item("itemB", 20000, 20));
     }
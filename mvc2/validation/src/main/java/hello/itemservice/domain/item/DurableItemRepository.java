@@ -0,0 +1,92 @@
+package hello.itemservice.domain.item;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 재시작해도 상품이 사라지지 않는 저장소. spring.profiles.active=durable 로 선택한다.
+ *
+ * 조회와 변경은 ItemRepository의 메모리 저장소에서 그대로 처리하고, save/update 한 결과만
+ * ItemWriteAheadLog에 남긴다. 시작할 때 스냅샷과 로그를 읽어 메모리 저장소를 복구한다.
+ */
+@Slf4j
+@Primary
+@Profile("durable")
+@Repository
+public class DurableItemRepository extends ItemRepository {
+
+    private static final int SNAPSHOT_BATCH_SIZE = 10_000;
+
+    private final ItemWriteAheadLog wal;
+
+    public DurableItemRepository(@Value("${item.wal.dir:./item-data}") String dir,
+                                 @Value("${item.wal.snapshot-interval:100000}") int snapshotInterval) {
+        this.wal = new ItemWriteAheadLog(Paths.get(dir), snapshotInterval);
+    }
+
+    @PostConstruct
+    public void recover() throws IOException {
+        long start = System.nanoTime();
+        super.clearStore();
+        int records = wal.replay(this::restore, super::clearStore);
+        wal.start(() -> findAllInBatches(SNAPSHOT_BATCH_SIZE));
+        log.info("[item-wal] recovered records={} time={}ms", records,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        wal.close();
+    }
+
+    @Override
+    public Item save(Item item) {
+        ItemWriteAheadLog.checkSize(item);
+        Item savedItem = super.save(item);
+        await(append(savedItem));
+        return savedItem;
+    }
+
+    @Override
+    public void update(Long itemId, Item updateParam) {
+        ItemWriteAheadLog.checkSize(updateParam);
+        super.update(itemId, updateParam);
+        Item findItem = findById(itemId);
+        if (findItem != null) {
+            await(append(findItem));
+        }
+    }
+
+    @Override
+    public void clearStore() {
+        super.clearStore();
+        await(wal.appendClear());
+    }
+
+    //상품 단위로 잠그고 현재 상태를 기록해야 같은 상품의 로그 순서가 실제 변경 순서와 같아진다.
+    private CompletableFuture<Void> append(Item item) {
+        synchronized (item) {
+            return wal.append(item);
+        }
+    }
+
+    //group commit으로 force()될 때까지 기다린다. 여러 요청이 한 번의 force()를 함께 기다리게 된다.
+    private void await(CompletableFuture<Void> written) {
+        try {
+            written.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("상품 변경 내용을 로그에 기록하지 못했습니다.", e.getCause());
+        }
+    }
+}
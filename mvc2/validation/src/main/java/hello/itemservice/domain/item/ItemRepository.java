@@ -3,18 +3,24 @@ package hello.itemservice.domain.item;
 import org.springframework.stereotype.Repository;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Repository
 public class ItemRepository {
 
-    private static final Map<Long, Item> store = new HashMap<>(); //static
-    private static long sequence = 0L; //static
+    //여러 요청 스레드가 동시에 save/update 하므로 HashMap, ++sequence 대신 동시성 안전한 자료구조를 사용한다.
+    //id 순서로 페이지 조회를 하기 위해 정렬된 ConcurrentSkipListMap을 사용한다. 조회는 락 없이 동작한다.
+    private static final ConcurrentNavigableMap<Long, Item> store = new ConcurrentSkipListMap<>(); //static
+    private static final AtomicLong sequence = new AtomicLong(); //static
 
     public Item save(Item item) {
-        item.setId(++sequence);
+        item.setId(sequence.incrementAndGet());
         store.put(item.getId(), item);
         return item;
     }
@@ -24,14 +30,74 @@ public class ItemRepository {
     }
 
     public List<Item> findAll() {
+        //store.size()는 ConcurrentSkipListMap에서 전체를 세므로 크기를 미리 잡지 않고 한 번만 복사한다.
         return new ArrayList<>(store.values());
     }
 
+    /**
+     * cursor(상품 id) 다음 상품부터 id 순서로 최대 limit개를 조회한다. cursor가 null이면 처음부터 조회한다.
+     */
+    public List<Item> findPage(Long cursor, int limit) {
+        Collection<Item> values = cursor == null ? store.values() : store.tailMap(cursor, false).values();
+        List<Item> result = new ArrayList<>(limit);
+        for (Item item : values) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * 전체 상품을 id 순서로 순회한다. findPage로 batchSize개씩 읽어오므로 전체 목록을 한 번에 메모리에 올리지 않는다.
+     */
+    public Iterable<Item> findAllInBatches(int batchSize) {
+        return () -> new Iterator<Item>() {
+            private List<Item> page = findPage(null, batchSize);
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                if (index < page.size()) {
+                    return true;
+                }
+                if (page.size() < batchSize) {
+                    return false;
+                }
+                page = findPage(page.get(page.size() - 1).getId(), batchSize);
+                index = 0;
+                return !page.isEmpty();
+            }
+
+            @Override
+            public Item next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(index++);
+            }
+        };
+    }
+
     public void update(Long itemId, Item updateParam) {
+        //ConcurrentSkipListMap의 compute 계열은 원자적으로 한 번만 실행된다는 보장이 없으므로
+        //같은 상품에 대한 동시 수정이 필드 단위로 섞이지 않도록 상품 객체 단위로 잠그고 수정한다.
         Item findItem = findById(itemId);
-        findItem.setItemName(updateParam.getItemName());
-        findItem.setPrice(updateParam.getPrice());
-        findItem.setQuantity(updateParam.getQuantity());
+        if (findItem == null) {
+            return;
+        }
+        synchronized (findItem) {
+            findItem.setItemName(updateParam.getItemName());
+            findItem.setPrice(updateParam.getPrice());
+            findItem.setQuantity(updateParam.getQuantity());
+        }
+    }
+
+    //로그에 기록된 id 그대로 다시 넣는다. DurableItemRepository가 재시작할 때 복구에 사용한다.
+    void restore(Item item) {
+        store.put(item.getId(), item);
+        sequence.accumulateAndGet(item.getId(), Math::max);
     }
 
     public void clearStore() {
@@ -0,0 +1,378 @@
+package hello.itemservice.domain.item;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * 상품 변경 내용을 파일에 남기는 선기록 로그(write-ahead log).
+ *
+ * 레코드: payloadLength(int) | crc32(int) | payload   (payload는 MAX_PAYLOAD 이하. 쓸 때 거절하고, 읽을 때 넘으면 손상으로 본다)
+ *   payload: op(byte) [PUT이면 id(long) | flags(byte) | price(int) | quantity(int) | nameLength(int) | name(UTF-8)]
+ * PUT 레코드는 변경 후 상품 전체 상태를 담으므로 몇 번을 다시 적용해도 결과가 같다.
+ *
+ * 기록은 전용 스레드 하나가 맡는다. 큐에 쌓인 레코드를 한 번에 쓰고 force()를 한 번만 호출한 뒤(group commit)
+ * 기다리던 요청들을 깨운다. snapshotInterval개를 기록할 때마다 전체 상품을 스냅샷 파일로 저장하고 로그를 비운다.
+ */
+@Slf4j
+class ItemWriteAheadLog implements AutoCloseable {
+
+    static final String LOG_FILE = "items.log";
+    static final String SNAPSHOT_FILE = "items.snapshot";
+
+    private static final byte PUT = 1;
+    private static final byte CLEAR = 2;
+
+    private static final int HAS_NAME = 1;
+    private static final int HAS_PRICE = 1 << 1;
+    private static final int HAS_QUANTITY = 1 << 2;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_BATCH = 4096;
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+    //레코드 하나가 쓰기 버퍼에 다 들어가는 크기
+    static final int MAX_PAYLOAD = IO_BUFFER_SIZE - HEADER_SIZE;
+    private static final int PUT_FIXED_SIZE = 1 + 8 + 1 + 4 + 4 + 4;
+
+    private final Path dir;
+    private final int snapshotInterval;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+
+    private FileChannel channel;
+    private Supplier<Iterable<Item>> snapshotSource;
+    private Thread writer;
+    private volatile boolean running;
+    private int recordsSinceSnapshot;
+
+    ItemWriteAheadLog(Path dir, int snapshotInterval) {
+        this.dir = dir;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * 스냅샷과 로그를 차례로 읽어 상품을 복구한다. 마지막 레코드가 쓰다 만 상태면 그 앞까지만 사용하고 로그를 잘라낸다.
+     *
+     * @return 적용한 레코드 수
+     */
+    int replay(Consumer<Item> put, Runnable clear) throws IOException {
+        Files.createDirectories(dir);
+        int count = 0;
+        Path snapshot = dir.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            count += read(snapshot, put, clear);
+        }
+        Path logFile = dir.resolve(LOG_FILE);
+        if (Files.exists(logFile)) {
+            count += read(logFile, put, clear);
+        }
+        return count;
+    }
+
+    /**
+     * 기록 스레드를 시작한다. snapshotSource는 스냅샷을 만들 때 전체 상품을 돌려준다.
+     */
+    void start(Supplier<Iterable<Item>> snapshotSource) throws IOException {
+        this.snapshotSource = snapshotSource;
+        this.channel = FileChannel.open(dir.resolve(LOG_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        running = true;
+        writer = new Thread(this::writeLoop, "item-wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 상품을 로그에 남길 수 없을 만큼 크면 IllegalArgumentException. 메모리 저장소를 바꾸기 전에 확인한다.
+     */
+    static void checkSize(Item item) {
+        String name = item.getItemName();
+        //UTF-8은 글자당 최대 3바이트(char 기준)이므로 대부분은 인코딩하지 않고 넘어간다.
+        if (name == null || PUT_FIXED_SIZE + name.length() * 3 <= MAX_PAYLOAD) {
+            return;
+        }
+        int length = PUT_FIXED_SIZE + name.getBytes(StandardCharsets.UTF_8).length;
+        if (length > MAX_PAYLOAD) {
+            throw new IllegalArgumentException("상품 이름이 너무 깁니다. length=" + length + ", max=" + MAX_PAYLOAD);
+        }
+    }
+
+    /**
+     * 상품의 현재 상태를 큐에 넣는다. 반환된 Future는 디스크에 force()된 뒤 완료된다.
+     * 같은 상품에 대해서는 변경한 순서대로 호출해야 한다(호출한 쪽에서 상품 단위로 잠근다).
+     */
+    CompletableFuture<Void> append(Item item) {
+        return enqueue(encodePut(item));
+    }
+
+    CompletableFuture<Void> appendClear() {
+        return enqueue(new byte[]{CLEAR});
+    }
+
+    private CompletableFuture<Void> enqueue(byte[] payload) {
+        if (!running) {
+            throw new IllegalStateException("상품 로그가 닫혀 있습니다.");
+        }
+        Entry entry = new Entry(payload);
+        queue.add(entry);
+        return entry.done;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        //닫히는 도중에 들어와 기록되지 못한 요청은 실패로 끝낸다.
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            entry.done.completeExceptionally(new IllegalStateException("상품 로그가 닫혔습니다."));
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+        while (running || !queue.isEmpty()) {
+            Entry first;
+            try {
+                first = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, MAX_BATCH - 1);
+
+            if (commit(batch, buffer)) {
+                recordsSinceSnapshot += batch.size();
+                if (recordsSinceSnapshot >= snapshotInterval) {
+                    snapshot(buffer);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    //모아둔 레코드를 한 번에 쓰고 force()는 한 번만 한다. 실패하면 쓰다 만 부분을 잘라내서 다음 기록이 그 뒤에 붙지 않게 한다.
+    private boolean commit(List<Entry> batch, ByteBuffer buffer) {
+        long batchStart = -1;
+        try {
+            batchStart = channel.position();
+            for (Entry entry : batch) {
+                put(channel, buffer, entry.payload);
+            }
+            flush(channel, buffer);
+            channel.force(false);
+            batch.forEach(entry -> entry.done.complete(null));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.error("[item-wal] 로그 기록 실패", e);
+            batch.forEach(entry -> entry.done.completeExceptionally(e));
+            buffer.clear();
+            rollback(batchStart);
+            return false;
+        }
+    }
+
+    private void rollback(long batchStart) {
+        if (batchStart < 0) {
+            return;
+        }
+        try {
+            channel.truncate(batchStart);
+            channel.position(batchStart);
+        } catch (IOException e) {
+            log.error("[item-wal] 로그 복구 실패. position={}", batchStart, e);
+        }
+    }
+
+    /**
+     * 전체 상품을 임시 파일에 쓰고 원자적으로 교체한 뒤 로그를 비운다.
+     * 기록 스레드에서만 호출되므로 그 사이에 들어온 변경은 큐에 남아 있다가 비워진 로그에 기록된다.
+     */
+    private void snapshot(ByteBuffer buffer) {
+        try {
+            writeSnapshot(buffer);
+        } catch (IOException | RuntimeException e) {
+            //스냅샷에 실패해도 로그는 그대로 남아 있으므로 다음 주기에 다시 시도한다.
+            log.error("[item-wal] 스냅샷 실패", e);
+            buffer.clear();
+            recordsSinceSnapshot = 0;
+        }
+    }
+
+    private void writeSnapshot(ByteBuffer buffer) throws IOException {
+        long start = System.nanoTime();
+        Path tmp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+        int count = 0;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Item item : snapshotSource.get()) {
+                byte[] payload;
+                synchronized (item) {
+                    payload = encodePut(item);
+                }
+                put(out, buffer, payload);
+                count++;
+            }
+            flush(out, buffer);
+            out.force(true);
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        //이름 바꾸기가 디스크에 남기 전에 로그를 비우면, 장애 후 예전 스냅샷과 빈 로그만 남아 기록한 변경을 잃는다.
+        try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+            directory.force(true);
+        }
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        recordsSinceSnapshot = 0;
+        log.info("[item-wal] snapshot items={} time={}ms", count, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    //payload는 encodePut()에서 MAX_PAYLOAD 이하로 걸렀으므로 비운 버퍼에는 항상 들어간다.
+    private static void put(FileChannel out, ByteBuffer buffer, byte[] payload) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE + payload.length) {
+            flush(out, buffer);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+    }
+
+    private static void flush(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private int read(Path file, Consumer<Item> put, Runnable clear) throws IOException {
+        int count = 0;
+        long validEnd = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE))) {
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length <= 0 || length > MAX_PAYLOAD) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != checksum) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                apply(payload, put, clear);
+                validEnd += HEADER_SIZE + payload.length;
+                count++;
+            }
+        }
+        long size = Files.size(file);
+        if (validEnd < size) {
+            log.warn("[item-wal] 손상된 꼬리 레코드를 잘라냅니다. file={} validEnd={} size={}", file, validEnd, size);
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                out.truncate(validEnd);
+            }
+        }
+        return count;
+    }
+
+    private static void apply(byte[] payload, Consumer<Item> put, Runnable clear) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        byte op = in.get();
+        if (op == CLEAR) {
+            clear.run();
+            return;
+        }
+        if (op != PUT) {
+            throw new UncheckedIOException(new IOException("알 수 없는 로그 레코드입니다. op=" + op));
+        }
+        Item item = new Item();
+        item.setId(in.getLong());
+        int flags = in.get();
+        int price = in.getInt();
+        int quantity = in.getInt();
+        int nameLength = in.getInt();
+        if ((flags & HAS_NAME) != 0) {
+            item.setItemName(new String(payload, in.position(), nameLength, StandardCharsets.UTF_8));
+        }
+        if ((flags & HAS_PRICE) != 0) {
+            item.setPrice(price);
+        }
+        if ((flags & HAS_QUANTITY) != 0) {
+            item.setQuantity(quantity);
+        }
+        put.accept(item);
+    }
+
+    private static byte[] encodePut(Item item) {
+        byte[] name = item.getItemName() == null ? new byte[0] : item.getItemName().getBytes(StandardCharsets.UTF_8);
+        int flags = (item.getItemName() != null ? HAS_NAME : 0)
+                | (item.getPrice() != null ? HAS_PRICE : 0)
+                | (item.getQuantity() != null ? HAS_QUANTITY : 0);
+        int length = PUT_FIXED_SIZE + name.length;
+        if (length > MAX_PAYLOAD) {
+            throw new IllegalArgumentException("상품 이름이 너무 깁니다. length=" + length + ", max=" + MAX_PAYLOAD);
+        }
+        ByteBuffer out = ByteBuffer.allocate(length);
+        out.put(PUT);
+        out.putLong(item.getId());
+        out.put((byte) flags);
+        out.putInt(item.getPrice() == null ? 0 : item.getPrice());
+        out.putInt(item.getQuantity() == null ? 0 : item.getQuantity());
+        out.putInt(name.length);
+        out.put(name);
+        return out.array();
+    }
+
+    private static final class Entry {
+
+        private final byte[] payload;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Entry(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package hello.itemservice.domain.item;
+
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 상품 수가 수백만 건일 때 사용하는 오프힙 저장소. spring.profiles.active=offheap 으로 선택한다.
+ *
+ * 상품 한 건은 힙 밖(ByteBuffer.allocateDirect)의 고정 크기 레코드로 저장하고,
+ * id -> 레코드 번호는 long 키를 그대로 쓰는 오픈 어드레싱 해시 인덱스로 찾는다.
+ * Item 객체는 findById, findAll 결과를 실제로 읽을 때만 만들어지므로 GC 대상이 거의 생기지 않는다.
+ */
+@Primary
+@Profile("offheap")
+@Repository
+public class OffHeapItemRepository extends ItemRepository {
+
+    //레코드 구조: id(long) | flags(int) | price(int) | quantity(int) | nameLength(int) | nameAddress(long)
+    private static final int RECORD_SIZE = 32;
+    private static final int ID = 0;
+    private static final int FLAGS = 8;
+    private static final int PRICE = 12;
+    private static final int QUANTITY = 16;
+    private static final int NAME_LENGTH = 20;
+    private static final int NAME_ADDRESS = 24;
+
+    private static final int HAS_NAME = 1;
+    private static final int HAS_PRICE = 1 << 1;
+    private static final int HAS_QUANTITY = 1 << 2;
+
+    private static final int ROWS_PER_CHUNK_BITS = 14;
+    private static final int ROWS_PER_CHUNK = 1 << ROWS_PER_CHUNK_BITS;
+    private static final int NAME_CHUNK_SIZE = 1 << 20;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile Table table = new Table();
+
+    @Override
+    public Item save(Item item) {
+        lock.writeLock().lock();
+        try {
+            //레코드가 id 순서대로 쌓이도록 잠금 안에서 id를 발급한다.
+            item.setId(sequence.incrementAndGet());
+            table.insert(item);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return item;
+    }
+
+    @Override
+    public Item findById(Long id) {
+        if (id == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            int row = table.index.get(id);
+            return row < 0 ? null : table.read(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 호출 시점까지 저장된 상품을 id 순서로 보여준다. Item 은 get(i) 할 때 만들어진다.
+     */
+    @Override
+    public List<Item> findAll() {
+        Table snapshot = table;
+        int size;
+        lock.readLock().lock();
+        try {
+            size = snapshot.rowCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new LazyItemList(snapshot, size);
+    }
+
+    /**
+     * 레코드는 id 순서로 쌓이므로 cursor 다음 레코드를 이진 탐색으로 찾아 그 자리부터 읽는다.
+     */
+    @Override
+    public List<Item> findPage(Long cursor, int limit) {
+        lock.readLock().lock();
+        try {
+            Table snapshot = table;
+            int from = cursor == null ? 0 : snapshot.rowAfter(cursor);
+            int to = (int) Math.min((long) from + limit, snapshot.rowCount);
+            List<Item> result = new ArrayList<>(Math.max(to - from, 0));
+            for (int row = from; row < to; row++) {
+                result.add(snapshot.read(row));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void update(Long itemId, Item updateParam) {
+        lock.writeLock().lock();
+        try {
+            int row = table.index.get(itemId);
+            if (row >= 0) {
+                table.write(row, itemId, updateParam);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clearStore() {
+        lock.writeLock().lock();
+        try {
+            //이미 꺼내간 findAll() 결과가 깨지지 않도록 테이블을 통째로 교체한다. 이전 버퍼는 GC가 회수한다.
+            table = new Table();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private final class LazyItemList extends AbstractList<Item> {
+
+        private final Table snapshot;
+        private final int size;
+
+        LazyItemList(Table snapshot, int size) {
+            this.snapshot = snapshot;
+            this.size = size;
+        }
+
+        @Override
+        public Item get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+            }
+            lock.readLock().lock();
+            try {
+                return snapshot.read(index);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * 레코드 영역, 이름 영역, id 인덱스를 묶은 것. 잠금은 바깥 저장소가 담당한다.
+     */
+    private static final class Table {
+
+        private final List<ByteBuffer> records = new ArrayList<>();
+        private final List<ByteBuffer> names = new ArrayList<>();
+        private final LongIntIndex index = new LongIntIndex();
+        private int rowCount;
+
+        void insert(Item item) {
+            int row = rowCount;
+            if ((row & (ROWS_PER_CHUNK - 1)) == 0) {
+                records.add(ByteBuffer.allocateDirect(ROWS_PER_CHUNK * RECORD_SIZE));
+            }
+            write(row, item.getId(), item);
+            index.put(item.getId(), row);
+            rowCount++;
+        }
+
+        void write(int row, long id, Item item) {
+            ByteBuffer chunk = records.get(row >>> ROWS_PER_CHUNK_BITS);
+            int base = (row & (ROWS_PER_CHUNK - 1)) * RECORD_SIZE;
+
+            int flags = 0;
+            int nameLength = 0;
+            long nameAddress = 0;
+            if (item.getItemName() != null) {
+                //이름을 바꾸면 새 위치에 다시 쓴다. 이전 이름이 차지하던 공간은 재사용하지 않는다.
+                byte[] bytes = item.getItemName().getBytes(StandardCharsets.UTF_8);
+                nameAddress = appendName(bytes);
+                nameLength = bytes.length;
+                flags |= HAS_NAME;
+            }
+            if (item.getPrice() != null) {
+                chunk.putInt(base + PRICE, item.getPrice());
+                flags |= HAS_PRICE;
+            }
+            if (item.getQuantity() != null) {
+                chunk.putInt(base + QUANTITY, item.getQuantity());
+                flags |= HAS_QUANTITY;
+            }
+            chunk.putLong(base + ID, id);
+            chunk.putInt(base + FLAGS, flags);
+            chunk.putInt(base + NAME_LENGTH, nameLength);
+            chunk.putLong(base + NAME_ADDRESS, nameAddress);
+        }
+
+        //id가 cursor보다 큰 첫 레코드 번호. 없으면 rowCount
+        int rowAfter(long cursor) {
+            int low = 0;
+            int high = rowCount;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (idAt(mid) <= cursor) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private long idAt(int row) {
+            return records.get(row >>> ROWS_PER_CHUNK_BITS).getLong((row & (ROWS_PER_CHUNK - 1)) * RECORD_SIZE + ID);
+        }
+
+        Item read(int row) {
+            ByteBuffer chunk = records.get(row >>> ROWS_PER_CHUNK_BITS);
+            int base = (row & (ROWS_PER_CHUNK - 1)) * RECORD_SIZE;
+            int flags = chunk.getInt(base + FLAGS);
+
+            Item item = new Item();
+            item.setId(chunk.getLong(base + ID));
+            if ((flags & HAS_NAME) != 0) {
+                item.setItemName(readName(chunk.getLong(base + NAME_ADDRESS), chunk.getInt(base + NAME_LENGTH)));
+            }
+            if ((flags & HAS_PRICE) != 0) {
+                item.setPrice(chunk.getInt(base + PRICE));
+            }
+            if ((flags & HAS_QUANTITY) != 0) {
+                item.setQuantity(chunk.getInt(base + QUANTITY));
+            }
+            return item;
+        }
+
+        //이름 주소 = (청크 번호 << 32) | 청크 안의 위치
+        private long appendName(byte[] bytes) {
+            if (bytes.length > NAME_CHUNK_SIZE) {
+                throw new IllegalArgumentException("상품명이 너무 깁니다. length=" + bytes.length);
+            }
+            ByteBuffer chunk = names.isEmpty() ? null : names.get(names.size() - 1);
+            if (chunk == null || chunk.remaining() < bytes.length) {
+                chunk = ByteBuffer.allocateDirect(NAME_CHUNK_SIZE);
+                names.add(chunk);
+            }
+            int offset = chunk.position();
+            chunk.put(bytes);
+            return ((long) (names.size() - 1) << 32) | offset;
+        }
+
+        private String readName(long address, int length) {
+            //읽기는 여러 스레드가 동시에 하므로 position을 공유하지 않도록 duplicate()로 읽는다.
+            ByteBuffer chunk = names.get((int) (address >>> 32)).duplicate();
+            chunk.position((int) address);
+            byte[] bytes = new byte[length];
+            chunk.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * long 키 -> int 값 오픈 어드레싱(선형 탐사) 해시 인덱스. 키를 Long 으로 박싱하지 않는다.
+     * 상품 id는 1부터 시작하므로 0을 빈 칸 표시로 사용한다.
+     */
+    static final class LongIntIndex {
+
+        private static final long EMPTY = 0L;
+
+        private long[] keys = new long[1 << 10];
+        private int[] values = new int[1 << 10];
+        private int size;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) {
+                    return values[i];
+                }
+                if (k == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(long key, int value) {
+            if (key == EMPTY) {
+                throw new IllegalArgumentException("id는 0일 수 없습니다.");
+            }
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            if (insert(keys, values, key, value)) {
+                size++;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void resize() {
+            long[] newKeys = new long[keys.length * 2];
+            int[] newValues = new int[values.length * 2];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    insert(newKeys, newValues, keys[i], values[i]);
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+
+        private static boolean insert(long[] keys, int[] values, long key, int value) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return false;
+                }
+                if (keys[i] == EMPTY) {
+                    keys[i] = key;
+                    values[i] = value;
+                    return true;
+                }
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+    }
+}
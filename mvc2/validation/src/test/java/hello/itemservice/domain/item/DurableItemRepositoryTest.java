@@ -0,0 +1,113 @@
+package hello.itemservice.domain.item;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.*;
+
+class DurableItemRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    DurableItemRepository itemRepository;
+
+    @AfterEach
+    void afterEach() throws IOException {
+        itemRepository.close();
+        new ItemRepository().clearStore();
+    }
+
+    @Test
+    void recoverAfterRestart() throws IOException {
+        //given
+        itemRepository = start(1000);
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        Item itemB = itemRepository.save(new Item("itemB", 20000, 20));
+        itemRepository.update(itemA.getId(), new Item("itemA2", 15000, 5));
+
+        //when 재시작
+        itemRepository.close();
+        itemRepository = start(1000);
+
+        //then
+        Item findItem = itemRepository.findById(itemA.getId());
+        assertThat(itemRepository.findAll()).hasSize(2);
+        assertThat(findItem.getItemName()).isEqualTo("itemA2");
+        assertThat(findItem.getPrice()).isEqualTo(15000);
+        assertThat(findItem.getQuantity()).isEqualTo(5);
+        assertThat(itemRepository.save(new Item("itemC", 1000, 1)).getId()).isGreaterThan(itemB.getId());
+    }
+
+    @Test
+    void recoverFromSnapshot() throws IOException {
+        //given 스냅샷이 여러 번 만들어지도록 주기를 짧게 잡는다.
+        itemRepository = start(10);
+        Item last = null;
+        for (int i = 0; i < 105; i++) {
+            last = itemRepository.save(new Item("item" + i, i, i));
+        }
+
+        //when
+        itemRepository.close();
+        itemRepository = start(10);
+
+        //then
+        assertThat(Files.exists(dir.resolve(ItemWriteAheadLog.SNAPSHOT_FILE))).isTrue();
+        assertThat(itemRepository.findAll()).hasSize(105);
+        assertThat(itemRepository.findById(last.getId()).getItemName()).isEqualTo("item104");
+    }
+
+    @Test
+    void ignoreTornTail() throws IOException {
+        //given 마지막 레코드를 쓰다가 종료된 상황
+        itemRepository = start(1000);
+        itemRepository.save(new Item("itemA", 10000, 10));
+        itemRepository.close();
+        Path log = dir.resolve(ItemWriteAheadLog.LOG_FILE);
+        long validSize = Files.size(log);
+        Files.write(log, new byte[]{0, 0, 0, 30, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        //when
+        itemRepository = start(1000);
+
+        //then
+        assertThat(itemRepository.findAll()).hasSize(1);
+        assertThat(Files.size(log)).isEqualTo(validSize);
+    }
+
+    @Test
+    void rejectOversizedItem() throws IOException {
+        //given 로그 레코드 하나에 들어가지 않는 상품 이름
+        itemRepository = start(1000);
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        String longName = "가".repeat(ItemWriteAheadLog.MAX_PAYLOAD / 3 + 1);
+
+        //when then 메모리 저장소도 바꾸지 않고 거절한다.
+        assertThatThrownBy(() -> itemRepository.save(new Item(longName, 1000, 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> itemRepository.update(itemA.getId(), new Item(longName, 1000, 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(itemRepository.findAll()).hasSize(1);
+        assertThat(itemRepository.findById(itemA.getId()).getItemName()).isEqualTo("itemA");
+
+        //최대 크기 레코드는 재시작 후에도 읽힌다.
+        String maxName = "a".repeat(ItemWriteAheadLog.MAX_PAYLOAD - 22);
+        Item itemB = itemRepository.save(new Item(maxName, 1000, 1));
+        itemRepository.close();
+        itemRepository = start(1000);
+        assertThat(itemRepository.findById(itemB.getId()).getItemName()).isEqualTo(maxName);
+    }
+
+    private DurableItemRepository start(int snapshotInterval) throws IOException {
+        DurableItemRepository repository = new DurableItemRepository(dir.toString(), snapshotInterval);
+        repository.recover();
+        return repository;
+    }
+}
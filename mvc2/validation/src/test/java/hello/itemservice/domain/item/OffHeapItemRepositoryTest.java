@@ -0,0 +1,119 @@
+package hello.itemservice.domain.item;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class OffHeapItemRepositoryTest {
+
+    OffHeapItemRepository itemRepository = new OffHeapItemRepository();
+
+    @AfterEach
+    void afterEach() {
+        itemRepository.clearStore();
+    }
+
+    @Test
+    void save() {
+        //given
+        Item item = new Item("itemA", 10000, 10);
+
+        //when
+        Item savedItem = itemRepository.save(item);
+
+        //then 저장소는 읽을 때마다 새 Item을 만들어 주므로 필드 값으로 비교한다.
+        Item findItem = itemRepository.findById(item.getId());
+        assertThat(findItem).isEqualTo(savedItem);
+        assertThat(findItem).isNotSameAs(savedItem);
+    }
+
+    @Test
+    void saveNullFields() {
+        //given
+        Item item = new Item(null, null, null);
+
+        //when
+        itemRepository.save(item);
+
+        //then
+        Item findItem = itemRepository.findById(item.getId());
+        assertThat(findItem.getItemName()).isNull();
+        assertThat(findItem.getPrice()).isNull();
+        assertThat(findItem.getQuantity()).isNull();
+    }
+
+    @Test
+    void findAll() {
+        //given
+        Item item1 = new Item("item1", 10000, 10);
+        Item item2 = new Item("item2", 20000, 20);
+
+        itemRepository.save(item1);
+        itemRepository.save(item2);
+
+        //when
+        List<Item> result = itemRepository.findAll();
+
+        //then
+        assertThat(result.size()).isEqualTo(2);
+        assertThat(result).containsExactly(item1, item2);
+    }
+
+    @Test
+    void findAllManyItems() {
+        //given 레코드 청크와 인덱스 확장이 여러 번 일어나도록 충분히 저장한다.
+        int count = 50_000;
+        for (int i = 0; i < count; i++) {
+            itemRepository.save(new Item("상품" + i, i, i));
+        }
+
+        //when
+        List<Item> result = itemRepository.findAll();
+
+        //then
+        assertThat(result).hasSize(count);
+        assertThat(result.get(count - 1).getItemName()).isEqualTo("상품" + (count - 1));
+        assertThat(itemRepository.findById((long) count).getPrice()).isEqualTo(count - 1);
+        assertThat(itemRepository.findById((long) count + 1)).isNull();
+    }
+
+    @Test
+    void findPage() {
+        //given
+        Item item1 = itemRepository.save(new Item("item1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("item3", 30000, 30));
+
+        //when
+        List<Item> firstPage = itemRepository.findPage(null, 2);
+        List<Item> secondPage = itemRepository.findPage(firstPage.get(1).getId(), 2);
+
+        //then id 순서로 나눠서 조회된다.
+        assertThat(firstPage).containsExactly(item1, item2);
+        assertThat(secondPage).containsExactly(item3);
+        assertThat(itemRepository.findAllInBatches(2)).containsExactly(item1, item2, item3);
+    }
+
+    @Test
+    void updateItem() {
+        //given
+        Item item = new Item("item1", 10000, 10);
+
+        Item savedItem = itemRepository.save(item);
+        Long itemId = savedItem.getId();
+
+        //when
+        Item updateParam = new Item("item2", 20000, 30);
+        itemRepository.update(itemId, updateParam);
+
+        Item findItem = itemRepository.findById(itemId);
+
+        //then
+        assertThat(findItem.getItemName()).isEqualTo(updateParam.getItemName());
+        assertThat(findItem.getPrice()).isEqualTo(updateParam.getPrice());
+        assertThat(findItem.getQuantity()).isEqualTo(updateParam.getQuantity());
+    }
+}